@@ -0,0 +1,35 @@
+####################################################
+#This program does nothing but arithmetic.  It
+#counts to 1000 two hundred times and yields the
+#CPU after each count.  It is used to measure how
+#fast the simulation runs on more than one CPU.
+###################################################
+
+#Initialize the variables
+SET r4 0       #outer counter
+SET r3 1000    #inner limit
+
+#begin outer loop
+:outer
+SET r1 0       #inner counter
+SET r2 1       #increment amount
+
+#begin inner loop
+:inner
+ADD r1 r2 r1
+BNE r1 r3 inner #repeat 1000 times
+
+#yield the CPU to other processes
+SET r0 8       #YIELD sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+
+#end of outer loop
+ADD r4 r2 r4
+SET r0 200     #outer limit
+BNE r4 r0 outer #repeat 200 times
+
+#exit syscall
+SET  r0 0      #EXIT system call id
+PUSH r0        #push sys call id on stack
+TRAP           #exit the program
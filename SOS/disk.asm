@@ -0,0 +1,109 @@
+####################################################
+#This program writes to twenty scattered addresses
+#on the disk and reads each one back.  The disk
+#device should have id 2.  The addresses depend on
+#the process id so that processes running this
+#program at the same time keep the disk busy.  When
+#it is done it prints the number of words it checked.
+###################################################
+
+#Reserve the disk device
+SET r0 2       #device #2 (disk)
+PUSH r0        #push argument on stack
+SET r4 3       #OPEN sys call id
+PUSH r4        #push sys call id on stack
+TRAP           #open the device
+
+#Check for failure
+POP r4         #get return code from the system call
+SET r0 0       #Succes code
+BNE r0 r4 exit #exit program on error
+
+#Pick a starting address from the process id
+SET r0 2       #GETPID sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+POP r1         #address
+SET r0 1237
+MUL r1 r0 r1
+
+#Initialize the variables
+SET r2 0       #counter
+SET r0 0       #scratch
+
+#Main Loop
+:loop
+#move to the next address: (address * 57 + 1001) mod 12800
+SET r0 57
+MUL r1 r0 r1
+SET r0 1001
+ADD r1 r0 r1
+SET r0 12800   #the number of words on the disk
+DIV r4 r1 r0
+MUL r4 r0 r4
+SUB r1 r1 r4
+
+#Write the address to the disk
+SET r0 2       #device #2 (disk)
+PUSH r0        #push device number
+PUSH r1        #push address
+PUSH r1        #push value to send to device
+SET r0 6       #WRITE system call
+PUSH r0        #push system call id
+TRAP           #system call to write the value
+
+#Check for failure
+POP r4         #get return code from the system call
+SET r0 0       #Succes code
+BNE r0 r4 exit #exit program on error
+
+#Read it back
+SET r0 2       #device #2 (disk)
+PUSH r0        #push device number
+PUSH r1        #push address
+SET r0 5       #READ system call
+PUSH r0        #push system call id
+TRAP           #system call to read the value
+
+#Check for failure
+POP r4         #get return code from the system call
+SET r0 0       #Succes code
+BNE r0 r4 exit #exit program on error
+
+#Check the value
+POP r4         #the value read
+BNE r4 r1 dump #dump core if it isn't what was written
+
+#loop test
+SET r0 1
+ADD r2 r0 r2
+SET r0 20      #number of addresses to check
+BNE r2 r0 loop
+
+#close the disk device
+SET r4 2       #disk device id
+PUSH r4        #push device number 2 (disk)
+SET r4 4       #CLOSE sys call id
+PUSH r4        #push the sys call id onto the stack
+TRAP           #close the device
+POP r4         #ignore the return code
+
+#print the number of words checked
+PUSH r2        #push the count
+SET r0 1       #OUTPUT sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+
+#exit syscall
+SET  r4 0      #scratch
+:exit
+SET  r4 0      #EXIT system call id
+PUSH r4        #push sys call id on stack
+TRAP           #exit the program
+
+#core dump syscall
+SET  r4 0      #scratch
+:dump
+SET  r4 9      #COREDUMP system call id
+PUSH r4        #push sys call id on stack
+TRAP           #dump core and exit
@@ -0,0 +1,114 @@
+####################################################
+#This program writes 200 words to consecutive
+#addresses on the file device and then reads them
+#all back.  The file device should have id 2.  Each
+#process uses its own run of addresses (based on its
+#process id) so the words of a sector are used one
+#after the other.  When it is done it prints the
+#number of words it checked.
+###################################################
+
+#Reserve the file device
+SET r0 2       #device #2 (file)
+PUSH r0        #push argument on stack
+SET r4 3       #OPEN sys call id
+PUSH r4        #push sys call id on stack
+TRAP           #open the device
+
+#Check for failure
+POP r4         #get return code from the system call
+SET r0 0       #Succes code
+BNE r0 r4 exit #exit program on error
+
+#Start at (process id - 1000) * 256
+SET r0 2       #GETPID sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+POP r1         #first address
+SET r0 1000
+SUB r1 r1 r0
+SET r0 256
+MUL r1 r1 r0
+
+#Initialize the variables
+SET r2 0       #counter
+SET r0 0       #scratch
+
+#Write Loop
+:write
+ADD r3 r1 r2   #the address (which is also the value written)
+SET r0 2       #device #2 (file)
+PUSH r0        #push device number
+PUSH r3        #push address
+PUSH r3        #push value to send to device
+SET r0 6       #WRITE system call
+PUSH r0        #push system call id
+TRAP           #system call to write the value
+
+#Check for failure
+POP r4         #get return code from the system call
+SET r0 0       #Succes code
+BNE r0 r4 exit #exit program on error
+
+#loop test
+SET r0 1
+ADD r2 r0 r2
+SET r0 200     #number of words
+BNE r2 r0 write
+
+#Initialize the variables
+SET r2 0       #counter
+SET r0 0       #scratch
+
+#Read Loop
+:read
+ADD r3 r1 r2   #the address
+SET r0 2       #device #2 (file)
+PUSH r0        #push device number
+PUSH r3        #push address
+SET r0 5       #READ system call
+PUSH r0        #push system call id
+TRAP           #system call to read the value
+
+#Check for failure
+POP r4         #get return code from the system call
+SET r0 0       #Succes code
+BNE r0 r4 exit #exit program on error
+
+#Check the value
+POP r4         #the value read
+BNE r4 r3 dump #dump core if it isn't what was written
+
+#loop test
+SET r0 1
+ADD r2 r0 r2
+SET r0 200     #number of words
+BNE r2 r0 read
+
+#close the file device
+SET r4 2       #file device id
+PUSH r4        #push device number 2 (file)
+SET r4 4       #CLOSE sys call id
+PUSH r4        #push the sys call id onto the stack
+TRAP           #close the device
+POP r4         #ignore the return code
+
+#print the number of words checked
+PUSH r2        #push the count
+SET r0 1       #OUTPUT sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+
+#exit syscall
+SET  r4 0      #scratch
+:exit
+SET  r4 0      #EXIT system call id
+PUSH r4        #push sys call id on stack
+TRAP           #exit the program
+
+#core dump syscall
+SET  r4 0      #scratch
+:dump
+SET  r4 9      #COREDUMP system call id
+PUSH r4        #push sys call id on stack
+TRAP           #dump core and exit
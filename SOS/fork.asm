@@ -0,0 +1,32 @@
+####################################################
+#This program forks three times so that eight
+#processes end up running it.  Each of them prints
+#its process id and exits.
+###################################################
+
+#Initialize the variables
+SET r4 0       #number of forks so far
+SET r3 3       #number of forks to do
+SET r2 1       #increment amount
+
+#begin fork loop
+:fork
+SET r0 11      #FORK sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+POP r1         #0 in the child, the child's id in the parent
+ADD r4 r2 r4
+BNE r4 r3 fork #repeat 3 times
+
+#print this process' id
+SET r0 2       #GETPID sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+SET r0 1       #OUTPUT sys call id (prints the id on the stack)
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+
+#exit syscall
+SET  r0 0      #EXIT system call id
+PUSH r0        #push sys call id on stack
+TRAP           #exit the program
@@ -0,0 +1,78 @@
+####################################################
+#This program opens the keyboard, reads one keystroke
+#and closes it again, twenty times over.  The
+#keyboard can't be shared so when several copies of
+#this program run at once they take turns with it
+#(it yields the CPU while it has the keyboard open).
+#The keyboard device should have id 0.  When it is
+#done it prints the number of keystrokes it read.
+###################################################
+
+#Initialize the variables
+SET r1 0       #counter
+SET r2 1       #increment amount
+SET r3 20      #limit
+SET r0 0       #scratch
+
+#Main Loop
+:loop
+ADD r1 r2 r1
+
+#Reserve the keyboard device
+SET r0 0       #device #0 (keyboard)
+PUSH r0        #push argument on stack
+SET r4 3       #OPEN sys call id
+PUSH r4        #push sys call id on stack
+TRAP           #open the device
+
+#Check for failure
+POP r4         #get return code from the system call
+SET r0 0       #Succes code
+BNE r0 r4 exit #exit program on error
+
+#Read a keystroke from the keyboard
+SET r0 0       #device #0 (keyboard)
+PUSH r0        #push device number
+PUSH r0        #push address (arg not used by this device so any val will do)
+SET r0 5       #READ system call
+PUSH r0        #push system call id
+TRAP           #system call to read the value
+
+#Check for failure
+POP r4         #get return code from the system call
+SET r0 0       #Succes code
+BNE r0 r4 exit #exit program on error
+POP r4         #ignore the keystroke
+
+#yield the CPU while holding the keyboard
+SET r4 8       #YIELD sys call id
+PUSH r4        #push the sys call id onto the stack
+TRAP           #make the system call
+
+#close the keyboard device
+SET r4 0       #keyboard device id
+PUSH r4        #push device number 0 (keyboard)
+SET r4 4       #CLOSE sys call id
+PUSH r4        #push the sys call id onto the stack
+TRAP           #close the device
+
+#Check for failure
+POP r4         #get return code from the system call
+SET r0 0       #Succes code
+BNE r0 r4 exit #exit program on error
+
+#loop test
+BNE r1 r3 loop
+
+#print the number of keystrokes read
+PUSH r1        #push the count
+SET r0 1       #OUTPUT sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+
+#exit syscall
+SET  r4 0      #scratch
+:exit
+SET  r4 0      #EXIT system call id
+PUSH r4        #push sys call id on stack
+TRAP           #exit the program
@@ -0,0 +1,30 @@
+####################################################
+#This program counts to 20000 without yielding the
+#CPU and then prints its process id.  Sim.runPriorities
+#runs copies of it with different priorities, so the
+#order the ids are printed in shows which processes
+#the scheduler favored.
+###################################################
+
+#Initialize the variables
+SET r1 0       #counter
+SET r2 1       #increment amount
+SET r3 20000   #limit
+
+#begin loop
+:loop
+ADD r1 r2 r1
+BNE r1 r3 loop #repeat 20000 times
+
+#print this process' id
+SET r0 2       #GETPID sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+SET r0 1       #OUTPUT sys call id (prints the id on the stack)
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+
+#exit syscall
+SET  r0 0      #EXIT system call id
+PUSH r0        #push sys call id on stack
+TRAP           #exit the program
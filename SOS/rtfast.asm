@@ -0,0 +1,50 @@
+####################################################
+#This program asks to be run as a real-time process
+#(period 200, budget 80).  Each job counts to 18
+#and then yields the CPU to say it is done.  It
+#exits after 60 jobs.  Sim.runRealTime runs it next
+#to a best-effort process.
+###################################################
+
+#Ask to be released every 200 instructions with a
+#deadline at the end of the period and a budget of
+#80 instructions per job
+SET r0 200     #period
+PUSH r0
+SET r0 200     #relative deadline
+PUSH r0
+SET r0 80      #budget
+PUSH r0
+SET r0 10      #REALTIME sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+POP r0         #0 if admitted (a refused process runs as best-effort)
+
+#Initialize the variables
+SET r2 1       #increment amount
+SET r4 0       #job counter
+SET r3 60      #number of jobs
+
+#begin job loop
+:job
+SET r1 0       #work counter
+SET r0 18      #work limit
+
+#begin work loop
+:work
+ADD r1 r2 r1
+BNE r1 r0 work #repeat 18 times
+
+#this job is done so yield the CPU until the next release
+SET r0 8       #YIELD sys call id
+PUSH r0        #push the sys call id onto the stack
+TRAP           #make the system call
+
+#end of job loop
+ADD r4 r2 r4
+BNE r4 r3 job  #repeat 60 times
+
+#exit syscall
+SET  r0 0      #EXIT system call id
+PUSH r0        #push sys call id on stack
+TRAP           #exit the program
@@ -0,0 +1,28 @@
+####################################################
+#This program starts five new processes with the
+#EXEC system call and then exits.  The program each
+#one runs is chosen by the OS from the programs
+#registered with it.
+###################################################
+
+#Initialize the variables
+SET r1 0       #counter
+SET r2 1       #increment amount
+SET r3 5       #number of processes to start
+
+#begin loop
+:loop
+ADD r1 r2 r1
+
+#start a new process
+SET r4 7       #EXEC sys call id
+PUSH r4        #push the sys call id onto the stack
+TRAP           #make the system call
+
+#end of loop
+BNE r1 r3 loop #repeat 5 times
+
+#exit syscall
+SET  r4 0      #EXIT system call id
+PUSH r4        #push sys call id on stack
+TRAP           #exit the program
@@ -0,0 +1,277 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This class is the base of devices that work at their own pace instead of
+ * making the CPU wait.  A request is queued by {@link #startRead} or {@link
+ * #startWrite} and the device works on one request at a time.  When a request
+ * is done the device's {@link InterruptController} has the CPU raise an I/O
+ * completion interrupt so that the OS can wake up the process that was
+ * waiting for it.  In the meantime the CPU runs other processes.
+ *
+ * A subclass does the transfer itself in {@link #read} and {@link #write}
+ * (which can also be called directly if the OS wants to wait for the device)
+ * and says how long each request takes.  It may also change the order the
+ * queued requests are served in.
+ *
+ * @see Device
+ * @see InterruptController
+ */
+public abstract class AsyncDevice implements Device
+{
+    //======================================================================
+    //Inner Classes
+    //----------------------------------------------------------------------
+
+    /**
+     * Request
+     *
+     * a read or write that has been given to the device
+     */
+    public static class Request
+    {
+        /** the device the request was given to */
+        public AsyncDevice device;
+
+        /** true for a write, false for a read */
+        public boolean write;
+
+        /** the address to read from or write to */
+        public int addr;
+
+        /** the value to write -OR- (once a read is done) the value read */
+        public int data;
+
+        /** when the request was queued (in instructions) */
+        public long queued;
+
+        /** the process that is waiting for the request (or whatever else
+         *  the caller of startRead or startWrite wants back) -OR- null */
+        public Object owner;
+    }//class Request
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the OS assigned device ID
+     */
+    private int m_id = -999;
+
+    /**
+     * the controller used to interrupt the CPU -OR- null if requests must
+     * be made with read and write instead
+     */
+    private InterruptController m_IC = null;
+
+    /**
+     * the requests that have been queued but not started
+     */
+    protected LinkedList<Request> m_queue = new LinkedList<Request>();
+
+    /**
+     * the request the device is working on -OR- null if it is idle
+     */
+    private Request m_current = null;
+
+    /**
+     * the number of requests that have been finished and the total time
+     * between their being queued and finished (in instructions)
+     */
+    private long m_completed = 0;
+    private long m_totalLatency = 0;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * getId
+     *
+     * @return the device id of this device
+     */
+    public int getId()
+    {
+        return m_id;
+    }
+
+    /**
+     * setId
+     *
+     * sets the device id of this device
+     *
+     * @param id the new id
+     */
+    public void setId(int id)
+    {
+        m_id = id;
+    }
+
+    /**
+     * setInterruptController
+     *
+     * connects the device to a CPU
+     *
+     * @param ic the CPU's interrupt controller
+     */
+    public void setInterruptController(InterruptController ic)
+    {
+        m_IC = ic;
+    }
+
+    /**
+     * getInterruptController
+     *
+     * @return the controller used to interrupt the CPU -OR- null
+     */
+    public InterruptController getInterruptController()
+    {
+        return m_IC;
+    }
+
+    /**
+     * isAvailable
+     *
+     * this device is available if no requests are currently being processed
+     */
+    public boolean isAvailable()
+    {
+        return m_current == null;
+    }
+
+    /**
+     * startRead
+     *
+     * queues a read.  The value read is in the Request passed to the
+     * interrupt handler.
+     *
+     * @param addr  the address to read from
+     * @param owner handed back in the Request (e.g., the waiting process)
+     */
+    public void startRead(int addr, Object owner)
+    {
+        start(false, addr, 0, owner);
+    }
+
+    /**
+     * startWrite
+     *
+     * queues a write
+     *
+     * @param addr  the address to write to
+     * @param data  the value to write
+     * @param owner handed back in the Request (e.g., the waiting process)
+     */
+    public void startWrite(int addr, int data, Object owner)
+    {
+        start(true, addr, data, owner);
+    }
+
+    /**
+     * start
+     *
+     * queues a request and starts on it if the device is idle
+     */
+    private void start(boolean write, int addr, int data, Object owner)
+    {
+        Request r = new Request();
+        r.device = this;
+        r.write = write;
+        r.addr = addr;
+        r.data = data;
+        r.queued = m_IC.getTime();
+        r.owner = owner;
+        m_queue.add(r);
+        if (m_current == null)
+        {
+            startNext();
+        }
+    }//start
+
+    /**
+     * startNext
+     *
+     * starts on the next queued request (if there is one)
+     */
+    private void startNext()
+    {
+        m_current = nextRequest();
+        if (m_current != null)
+        {
+            m_IC.schedule(m_IC.getTime() + getServiceTime(m_current), this);
+        }
+    }//startNext
+
+    /**
+     * complete
+     *
+     * is called by the interrupt controller when the current request is
+     * due.  The transfer is done and the device starts on its next request.
+     *
+     * @return the finished request
+     */
+    Request complete()
+    {
+        Request r = m_current;
+        if (r.write)
+        {
+            write(r.addr, r.data);
+        }
+        else
+        {
+            r.data = read(r.addr);
+        }
+        m_completed++;
+        m_totalLatency += m_IC.getTime() - r.queued;
+
+        startNext();
+        return r;
+    }//complete
+
+    /**
+     * nextRequest
+     *
+     * removes the request to work on next from m_queue.  Requests are served
+     * in the order they arrive unless a subclass overrides this.
+     *
+     * @return the request -OR- null if the queue is empty
+     */
+    protected Request nextRequest()
+    {
+        return m_queue.poll();
+    }
+
+    /**
+     * getServiceTime
+     *
+     * is called when the device starts on a request
+     *
+     * @param r the request
+     * @return how long the request will take (in instructions)
+     */
+    protected abstract long getServiceTime(Request r);
+
+    /**
+     * getCompleted
+     *
+     * @return the number of requests that have been finished
+     */
+    public long getCompleted()
+    {
+        return m_completed;
+    }
+
+    /**
+     * getAverageLatency
+     *
+     * @return the average time between a request being queued and finished
+     *         (in instructions)
+     */
+    public long getAverageLatency()
+    {
+        return m_totalLatency / Math.max(1, m_completed);
+    }
+
+};//class AsyncDevice
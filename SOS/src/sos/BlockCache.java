@@ -0,0 +1,584 @@
+package sos;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This class implements the second tier of the CPU's execution engine.  The
+ * CPU counts how often it starts executing at each basic block head (the
+ * target of a branch or the instruction after a BRANCH, BNE, BLT or TRAP).
+ * Once a head becomes hot, the straight line code starting there is
+ * translated by a {@link BlockCompiler} into a {@link Block}: a JVM class that
+ * HotSpot compiles like any other method, so the CPU no longer looks up,
+ * decodes and dispatches each instruction or checks the PC against BASE and
+ * LIM after every step.
+ *
+ * Writes to RAM that land inside a translated block throw the block away so
+ * that self-modifying code (or a stack that grows over the program) falls
+ * back to the interpreter.  Writes may come from other CPUs' threads, so
+ * translating and discarding blocks are synchronized.  Looking up a block
+ * checks its volatile {@link Block#valid} flag instead, and a write that
+ * can't touch translated code is dismissed without the lock (see {@link
+ * #invalidate}).
+ *
+ * @see CPU
+ * @see BlockCompiler
+ * @see DecodeCache
+ */
+public class BlockCache implements RAM.CodeCache
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    /**
+     * the number of times a block head must be reached before it is
+     * translated
+     */
+    public static final int HOT_THRESHOLD = 16;
+
+    /**
+     * a block is only translated if it has at least this many instructions
+     * that run in the translated code for each one it hands back to the CPU
+     * (see {@link BlockCompiler#callsCPU}).  Otherwise the calls cost more
+     * than the interpreter's decoding and dispatch.
+     */
+    public static final int MIN_INLINE_RATIO = 2;
+
+    /**
+     * the number of times a block head that wasn't worth translating must be
+     * reached before it is looked at again
+     */
+    public static final int COLD_DELAY = 1024;
+
+    /**
+     * the maximum number of instructions in a single block
+     */
+    public static final int MAX_BLOCK_SIZE = 64;
+
+    /**
+     * the number of blocks (and hotness counters) the cache can hold
+     */
+    public static final int DEFAULT_SIZE = 1024;
+
+    /**
+     * the number of words covered by each bucket used to find the blocks that
+     * contain a written address
+     */
+    private static final int PAGE_SHIFT = 4;
+
+    /**
+     * the number of buckets used to find the blocks that contain a written
+     * address
+     */
+    private static final int NUM_PAGES = 1024;
+
+    //======================================================================
+    //Inner Classes
+    //----------------------------------------------------------------------
+
+    /**
+     * Block
+     *
+     * a translated basic block.  Each one is an instance of a class generated
+     * by {@link BlockCompiler}.
+     */
+    public static abstract class Block
+    {
+        /** physical address of the first instruction */
+        public int start;
+
+        /** the number of instructions in the block */
+        public int length;
+
+        /**
+         * set to false once any word of the block has been overwritten.
+         * This is volatile because the write may come from another core.
+         */
+        public volatile boolean valid = true;
+
+        /**
+         * run
+         *
+         * executes the block.  This has the same effect as running each of
+         * its instructions through the interpreter in {@link CPU#run}.
+         *
+         * @param cpu  the CPU
+         * @param regs the CPU's registers
+         * @return the number of instructions run that the CPU has not
+         *         counted yet -OR- -1 if the CPU must stop running
+         */
+        public abstract int run(CPU cpu, int[] regs);
+
+        /**
+         * exec
+         *
+         * is called by a translated block to run an instruction that uses
+         * RAM or the trap handler (see {@link CPU#execute})
+         */
+        protected static boolean exec(CPU cpu, int retired, int op, int arg1,
+                                      int arg2, int arg3)
+        {
+            return cpu.execute(retired, op, arg1, arg2, arg3);
+        }
+
+        /**
+         * @param addr a physical address
+         * @return true iff the address holds part of this block
+         */
+        public boolean contains(int addr)
+        {
+            return (addr >= start) && (addr < start + length * CPU.INSTRSIZE);
+        }
+    }//class Block
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * translated blocks indexed by (a hash of) their start address
+     */
+    private Block m_blocks[] = null;
+
+    /**
+     * the block head address each hotness counter belongs to
+     */
+    private int m_heatTags[] = null;
+
+    /**
+     * how many times each block head has been reached
+     */
+    private int m_heat[] = null;
+
+    /**
+     * used to turn an address into a table index (table size - 1)
+     */
+    private int m_mask = 0;
+
+    /**
+     * for each bucket of RAM words, the blocks that overlap it
+     */
+    private Vector<Vector<Block>> m_pages = null;
+
+    /**
+     * the number of blocks in each bucket of m_pages.  This lets a write to a
+     * word that holds no translated code be dismissed without taking the
+     * lock.
+     */
+    private AtomicIntegerArray m_pageCounts = new AtomicIntegerArray(NUM_PAGES);
+
+    /**
+     * set while a block is being translated.  Its pages are not counted in
+     * m_pageCounts until it is done, so until then a write anywhere must
+     * take the lock (and wait for the translation to finish).
+     */
+    private volatile boolean m_translating = false;
+
+    /**
+     * scratch space used when reading an instruction out of RAM
+     */
+    private int m_instr[] = new int[CPU.INSTRSIZE];
+
+    /**
+     * set when the CPU uses paging.  Pages that are next to each other in a
+     * process may be anywhere in RAM so a block must not cross a page
+     * boundary.
+     */
+    private boolean m_paged = false;
+
+    /**
+     * the number of blocks translated so far
+     */
+    private long m_translations = 0;
+
+    /**
+     * the number of blocks discarded because their code was overwritten
+     */
+    private long m_invalidations = 0;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * BlockCache ctor
+     *
+     * @param size the number of blocks.  This is rounded up to a power of
+     *             two.
+     */
+    public BlockCache(int size)
+    {
+        int numBlocks = 1;
+        while (numBlocks < size)
+        {
+            numBlocks <<= 1;
+        }
+        m_mask = numBlocks - 1;
+        m_blocks = new Block[numBlocks];
+        m_heat = new int[numBlocks];
+        m_heatTags = new int[numBlocks];
+        for(int i = 0; i < numBlocks; i++)
+        {
+            m_heatTags[i] = -1;
+        }
+
+        m_pages = new Vector<Vector<Block>>(NUM_PAGES);
+        for(int i = 0; i < NUM_PAGES; i++)
+        {
+            m_pages.add(new Vector<Block>());
+        }
+    }//BlockCache ctor
+
+    /**
+     * getTranslations
+     *
+     * @return the number of blocks that have been translated
+     */
+    public long getTranslations()
+    {
+        return m_translations;
+    }
+
+    /**
+     * getInvalidations
+     *
+     * @return the number of blocks discarded because of writes to RAM
+     */
+    public long getInvalidations()
+    {
+        return m_invalidations;
+    }
+
+    /**
+     * setPaged
+     *
+     * tells the cache whether the CPU uses paging (see {@link #m_paged}).
+     * Every block is thrown away when this changes.
+     *
+     * @param paged true if the CPU uses paging
+     */
+    public void setPaged(boolean paged)
+    {
+        if (paged != m_paged)
+        {
+            clear();
+            m_paged = paged;
+        }
+    }//setPaged
+
+    /**
+     * indexOf
+     *
+     * @param addr a physical address
+     * @return the table index used for a block starting at that address
+     */
+    private int indexOf(int addr)
+    {
+        return (addr >>> 2) & m_mask;
+    }
+
+    /**
+     * bucketOf
+     *
+     * @param addr a physical address
+     * @return the list of blocks that may contain that address
+     */
+    private Vector<Block> bucketOf(int addr)
+    {
+        return m_pages.get(pageOf(addr));
+    }
+
+    /**
+     * pageOf
+     *
+     * @param addr a physical address
+     * @return the index of the bucket for that address
+     */
+    private int pageOf(int addr)
+    {
+        return (addr >>> PAGE_SHIFT) & (NUM_PAGES - 1);
+    }
+
+    /**
+     * enter
+     *
+     * is called by the CPU each time it reaches a block head.  If the block
+     * starting there has already been translated it is returned.  Otherwise
+     * the head's hotness counter is updated and the block is translated once
+     * it becomes hot.
+     *
+     * @param addr the physical address of the block head
+     * @param ram  the RAM to read instructions from when translating
+     * @return the translated block -OR- null if the interpreter should be
+     *         used
+     */
+    public Block enter(int addr, RAM ram)
+    {
+        int i = indexOf(addr);
+        Block b = m_blocks[i];
+        if ((b != null) && (b.start == addr) && b.valid)
+        {
+            return b;
+        }
+
+        //Cold code: count it and leave it to the interpreter for now.  Only
+        //the CPU that owns the cache uses the counters so they aren't locked.
+        if (m_heatTags[i] != addr)
+        {
+            m_heatTags[i] = addr;
+            m_heat[i] = 0;
+        }
+        m_heat[i]++;
+        if (m_heat[i] < HOT_THRESHOLD)
+        {
+            return null;
+        }
+
+        return install(i, addr, ram);
+    }//enter
+
+    /**
+     * install
+     *
+     * translates a hot block and adds it to the cache (see {@link #enter})
+     *
+     * @param i    the table index for the block head
+     * @param addr the physical address of the block head
+     * @param ram  the RAM to read instructions from
+     * @return the translated block -OR- null if the interpreter should be
+     *         used
+     */
+    private synchronized Block install(int i, int addr, RAM ram)
+    {
+        //This must be set before any code is read (see invalidate)
+        m_translating = true;
+        Block b = translate(addr, ram);
+        m_heat[i] = 0;
+        if (b == null)
+        {
+            //Leave it to the interpreter for a good while before looking
+            //at it again
+            m_translating = false;
+            m_heat[i] = -COLD_DELAY;
+            return null;
+        }
+
+        if (m_blocks[i] != null)
+        {
+            discard(m_blocks[i]);
+        }
+        m_blocks[i] = b;
+        for(int a = b.start; a < b.start + b.length * CPU.INSTRSIZE;
+            a += (1 << PAGE_SHIFT))
+        {
+            addToBucket(a, b);
+        }
+        addToBucket(b.start + b.length * CPU.INSTRSIZE - 1, b);
+        m_translating = false;
+
+        return b;
+    }//install
+
+    /**
+     * addToBucket
+     *
+     * records that a block overlaps the bucket for a given address (if it has
+     * not already been recorded)
+     */
+    private void addToBucket(int addr, Block b)
+    {
+        Vector<Block> bucket = bucketOf(addr);
+        if (!bucket.contains(b))
+        {
+            bucket.add(b);
+            m_pageCounts.incrementAndGet(pageOf(addr));
+        }
+    }//addToBucket
+
+    /**
+     * translate
+     *
+     * reads the basic block starting at a given address and compiles it.  The
+     * block ends with
+     * the first BRANCH, BNE, BLT or TRAP instruction, just before the first
+     * illegal instruction, after MAX_BLOCK_SIZE instructions or (with paging)
+     * at the end of the page.
+     *
+     * @param addr the physical address of the block head
+     * @param ram  the RAM to read instructions from
+     * @return the new block -OR- null if the first instruction is illegal or
+     *         the block isn't worth translating (see MIN_INLINE_RATIO)
+     */
+    private Block translate(int addr, RAM ram)
+    {
+        int code[] = new int[MAX_BLOCK_SIZE * CPU.INSTRSIZE];
+        int length = 0;
+        int calls = 0;
+        while (length < MAX_BLOCK_SIZE)
+        {
+            int pc = addr + length * CPU.INSTRSIZE;
+            if (pc + CPU.INSTRSIZE > ram.getSize())
+            {
+                break;
+            }
+            if (m_paged && (length > 0) && ((pc & CPU.PAGE_MASK) == 0))
+            {
+                break;
+            }
+            ram.fetch(pc, m_instr);
+            if (!DecodeCache.isValid(m_instr))
+            {
+                break;
+            }
+
+            System.arraycopy(m_instr, 0, code, length * CPU.INSTRSIZE,
+                             CPU.INSTRSIZE);
+            length++;
+            if (BlockCompiler.callsCPU(m_instr[0]))
+            {
+                calls++;
+            }
+
+            if (endsBlock(m_instr[0]))
+            {
+                break;
+            }
+        }//while
+
+        if ((length == 0) || (length - calls < MIN_INLINE_RATIO * calls))
+        {
+            return null;
+        }
+
+        Block b = BlockCompiler.compile(code, length, "sos.Block_" + addr);
+        b.start = addr;
+        b.length = length;
+        m_translations++;
+
+        return b;
+    }//translate
+
+    /**
+     * endsBlock
+     *
+     * @param op an opcode
+     * @return true iff an instruction with this opcode ends a basic block
+     */
+    public static boolean endsBlock(int op)
+    {
+        return (op == CPU.BRANCH) || (op == CPU.BNE) || (op == CPU.BLT)
+            || (op == CPU.TRAP);
+    }
+
+    /**
+     * discard
+     *
+     * marks a block invalid and forgets about it
+     */
+    private void discard(Block b)
+    {
+        b.valid = false;
+        int i = indexOf(b.start);
+        if (m_blocks[i] == b)
+        {
+            m_blocks[i] = null;
+        }
+        for(int a = b.start; a < b.start + b.length * CPU.INSTRSIZE;
+            a += (1 << PAGE_SHIFT))
+        {
+            removeFromBucket(a, b);
+        }
+        removeFromBucket(b.start + b.length * CPU.INSTRSIZE - 1, b);
+    }//discard
+
+    /**
+     * removeFromBucket
+     *
+     * records that a block no longer overlaps the bucket for a given address
+     */
+    private void removeFromBucket(int addr, Block b)
+    {
+        if (bucketOf(addr).remove(b))
+        {
+            m_pageCounts.decrementAndGet(pageOf(addr));
+        }
+    }//removeFromBucket
+
+    /**
+     * invalidate
+     *
+     * discards every block that contains the given address.  This is called
+     * by the RAM whenever a word is written, which may be on another core.
+     * The lock is only taken when the word may hold translated code.
+     *
+     * A translation sets m_translating before it reads any code and only
+     * clears it after its block's pages are counted.  This method checks the
+     * flag after the word has been written, so either the translation reads
+     * the new word or the write waits for the lock and discards the block.
+     *
+     * @param addr the physical address that was written
+     */
+    public void invalidate(int addr)
+    {
+        if (!m_translating && (m_pageCounts.get(pageOf(addr)) == 0))
+        {
+            return;
+        }
+        invalidateSlow(addr);
+    }//invalidate
+
+    /**
+     * invalidateSlow
+     *
+     * discards every block that contains the given address (see {@link
+     * #invalidate})
+     *
+     * @param addr the physical address that was written
+     */
+    private synchronized void invalidateSlow(int addr)
+    {
+        Vector<Block> bucket = bucketOf(addr);
+        for(int i = bucket.size() - 1; i >= 0; i--)
+        {
+            //discard() may remove more than one entry from the bucket
+            if (i >= bucket.size())
+            {
+                continue;
+            }
+            Block b = bucket.get(i);
+            if (b.contains(addr))
+            {
+                discard(b);
+                m_invalidations++;
+            }
+        }
+    }//invalidateSlow
+
+    /**
+     * clear
+     *
+     * discards every block and hotness counter
+     */
+    public synchronized void clear()
+    {
+        for(int i = 0; i < m_blocks.length; i++)
+        {
+            if (m_blocks[i] != null)
+            {
+                m_blocks[i].valid = false;
+                m_blocks[i] = null;
+            }
+            m_heatTags[i] = -1;
+        }
+        for(Vector<Block> bucket : m_pages)
+        {
+            bucket.clear();
+        }
+        for(int i = 0; i < NUM_PAGES; i++)
+        {
+            m_pageCounts.set(i, 0);
+        }
+    }//clear
+
+};//class BlockCache
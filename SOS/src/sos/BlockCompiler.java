@@ -0,0 +1,841 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This class turns a basic block of SOS instructions into a JVM class so that
+ * HotSpot can compile it to native code like any other Java method.  Each
+ * class extends {@link BlockCache.Block} and its run method does exactly what
+ * the interpreter in {@link CPU#run} would do for the same instructions:
+ *
+ * - Instructions that only use registers (SET, ADD, SUB, MUL, DIV, COPY and
+ *   the branches) become the equivalent bytecode, with the operands built in
+ *   as constants.  Every register the block uses except the PC is kept in a
+ *   local variable, so HotSpot can keep it in a machine register.
+ * - Instructions that use RAM or the trap handler (LOAD, SAVE, CAS,
+ *   FETCH_ADD, PUSH, POP, TRAP and a DIV by zero) call {@link
+ *   BlockCache.Block#exec}, which hands them to the CPU.
+ *
+ * Adding INSTRSIZE to the PC after every instruction is put off until
+ * something could look at the PC (a call to the CPU, an instruction that uses
+ * the PC register or the end of the block).  Likewise the CPU's instruction
+ * count is only brought up to date when it calls the CPU or the block ends,
+ * and a register that has changed is only copied back to the register array
+ * then (and read back from it after the CPU returns).
+ *
+ * Every class is defined by a class loader of its own so that it can be
+ * unloaded once its block has been thrown away.  The class files use version
+ * 49 (Java 5), which is verified without the stack maps newer versions need.
+ *
+ * @see BlockCache
+ * @see CPU
+ */
+public class BlockCompiler
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    //These constants are the JVM opcodes used by the generated code
+    private static final int ICONST_M1     = 0x02;
+    private static final int ICONST_0      = 0x03;
+    private static final int BIPUSH        = 0x10;
+    private static final int SIPUSH        = 0x11;
+    private static final int LDC_W         = 0x13;
+    private static final int ALOAD_0       = 0x2a;
+    private static final int ALOAD_1       = 0x2b;
+    private static final int ILOAD         = 0x15;
+    private static final int ALOAD_2       = 0x2c;
+    private static final int IALOAD        = 0x2e;
+    private static final int ISTORE        = 0x36;
+    private static final int IASTORE       = 0x4f;
+    private static final int POP           = 0x57;
+    private static final int DUP2          = 0x5c;
+    private static final int IADD          = 0x60;
+    private static final int ISUB          = 0x64;
+    private static final int IMUL          = 0x68;
+    private static final int IDIV          = 0x6c;
+    private static final int IFNE          = 0x9a;
+    private static final int IF_ICMPEQ     = 0x9f;
+    private static final int IF_ICMPGE     = 0xa2;
+    private static final int IRETURN       = 0xac;
+    private static final int RETURN        = 0xb1;
+    private static final int GETFIELD      = 0xb4;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC  = 0xb8;
+
+    //These constants are the tags of the constant pool entries used
+    private static final int CONSTANT_UTF8        = 1;
+    private static final int CONSTANT_INTEGER     = 3;
+    private static final int CONSTANT_CLASS       = 7;
+    private static final int CONSTANT_FIELDREF    = 9;
+    private static final int CONSTANT_METHODREF   = 10;
+    private static final int CONSTANT_NAMEANDTYPE = 12;
+
+    /**
+     * the internal name of the class every translated block extends
+     */
+    private static final String SUPER = "sos/BlockCache$Block";
+
+    /**
+     * the deepest the operand stack gets in a run method (the six arguments
+     * of a call to exec)
+     */
+    private static final int MAX_STACK = 6;
+
+    /**
+     * the local variable that holds register 0 in a run method (locals 0-2
+     * are the block, the CPU and the register array)
+     */
+    private static final int FIRST_REG_LOCAL = 3;
+
+    //======================================================================
+    //Inner Classes
+    //----------------------------------------------------------------------
+
+    /**
+     * Loader
+     *
+     * defines a single translated block
+     */
+    private static class Loader extends ClassLoader
+    {
+        public Loader()
+        {
+            super(BlockCompiler.class.getClassLoader());
+        }
+
+        public Class<?> define(String name, byte[] b)
+        {
+            return defineClass(name, b, 0, b.length);
+        }
+    }//class Loader
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the constant pool of the class being generated
+     */
+    private ByteBuf m_pool = new ByteBuf();
+
+    /**
+     * the number of entries in m_pool (entry 0 is never used)
+     */
+    private int m_poolCount = 1;
+
+    /**
+     * the index of each constant pool entry already added (keyed by its
+     * contents)
+     */
+    private HashMap<String, Integer> m_poolIndex = new HashMap<String, Integer>();
+
+    /**
+     * the bytecode of the run method
+     */
+    private ByteBuf m_code = new ByteBuf();
+
+    /**
+     * the number of instructions whose INSTRSIZE has not been added to the PC
+     * yet
+     */
+    private int m_pending = 0;
+
+    /**
+     * the number of instructions the CPU has been told about
+     */
+    private int m_retired = 0;
+
+    /**
+     * the registers that are kept in local variables
+     */
+    private boolean m_cached[] = new boolean[CPU.NUMREG];
+
+    /**
+     * the cached registers whose local variable has been written since the
+     * register array was last read
+     */
+    private boolean m_dirty[] = new boolean[CPU.NUMREG];
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * compile
+     *
+     * translates a basic block into a new class and creates an instance of
+     * it.  The instructions must already have passed {@link
+     * DecodeCache#isValid} and only the last one may end the block (see
+     * {@link BlockCache#endsBlock}).
+     *
+     * @param code   the instructions (INSTRSIZE ints each)
+     * @param length the number of instructions
+     * @param name   the name of the new class
+     * @return the translated block (its start and length are not set)
+     */
+    public static BlockCache.Block compile(int[] code, int length, String name)
+    {
+        byte b[] = new BlockCompiler().generate(code, length, name);
+        try
+        {
+            Class<?> c = new Loader().define(name, b);
+            return (BlockCache.Block)c.getConstructor().newInstance();
+        }
+        catch(ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Could not create " + name, e);
+        }
+    }//compile
+
+    /**
+     * generate
+     *
+     * @return the class file for a translated block (see {@link #compile})
+     */
+    private byte[] generate(int[] code, int length, String name)
+    {
+        String internal = name.replace('.', '/');
+        int thisClass = classRef(internal);
+        int superClass = classRef(SUPER);
+        int superInit = memberRef(CONSTANT_METHODREF, SUPER, "<init>", "()V");
+
+        //Copy the registers the instructions use into locals
+        for(int i = 0; i < length; i++)
+        {
+            int c = i * CPU.INSTRSIZE;
+            cacheOperands(code[c], code[c + 1], code[c + 2], code[c + 3]);
+        }
+        reload();
+
+        for(int i = 0; i < length; i++)
+        {
+            int c = i * CPU.INSTRSIZE;
+            translate(i, code[c], code[c + 1], code[c + 2], code[c + 3]);
+        }
+
+        //The block ran off its end without a branch (it is at its
+        //maximum size or the next instruction is illegal or on another page)
+        if (!BlockCache.endsBlock(code[(length - 1) * CPU.INSTRSIZE]))
+        {
+            flushPC(0);
+            returnUncounted(length);
+        }
+
+        //Constructor: just call the superclass'
+        ByteBuf init = new ByteBuf();
+        init.u1(ALOAD_0);
+        init.u1(INVOKESPECIAL);
+        init.u2(superInit);
+        init.u1(RETURN);
+
+        int codeName = utf8("Code");
+        int initName = utf8("<init>");
+        int initType = utf8("()V");
+        int runName = utf8("run");
+        int runType = utf8("(Lsos/CPU;[I)I");
+
+        ByteBuf cf = new ByteBuf();
+        cf.u4(0xCAFEBABE);
+        cf.u2(0);                       // minor version
+        cf.u2(49);                      // major version (Java 5)
+        cf.u2(m_poolCount);
+        cf.bytes(m_pool);
+        cf.u2(0x0031);                  // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+        cf.u2(thisClass);
+        cf.u2(superClass);
+        cf.u2(0);                       // interfaces
+        cf.u2(0);                       // fields
+        cf.u2(2);                       // methods
+        method(cf, initName, initType, codeName, 1, 1, init);
+        method(cf, runName, runType, codeName, MAX_STACK,
+               FIRST_REG_LOCAL + CPU.NUMREG, m_code);
+        cf.u2(0);                       // attributes
+
+        return cf.toByteArray();
+    }//generate
+
+    /**
+     * method
+     *
+     * adds a public method with a Code attribute to a class file
+     */
+    private static void method(ByteBuf cf, int name, int type, int codeName,
+                               int maxStack, int maxLocals, ByteBuf code)
+    {
+        cf.u2(0x0001);                  // ACC_PUBLIC
+        cf.u2(name);
+        cf.u2(type);
+        cf.u2(1);                       // attributes
+        cf.u2(codeName);
+        cf.u4(12 + code.size());
+        cf.u2(maxStack);
+        cf.u2(maxLocals);
+        cf.u4(code.size());
+        cf.bytes(code);
+        cf.u2(0);                       // exception table
+        cf.u2(0);                       // attributes
+    }//method
+
+    /**
+     * translate
+     *
+     * generates the bytecode for a single instruction.  In the run method
+     * local 0 is the block, 1 is the CPU and 2 is the register array (see
+     * {@link #FIRST_REG_LOCAL}).
+     *
+     * @param i the instruction's position in the block
+     */
+    private void translate(int i, int op, int arg1, int arg2, int arg3)
+    {
+        int end;                 // where a branch offset goes
+        int pending, retired;    // saved while generating a side exit
+        boolean dirty[];
+        switch(op)
+        {
+            case CPU.SET:
+                beginRegisterOp(usesPC(arg1));
+                beginStore(arg1);
+                pushInt(arg2);
+                endStore(arg1);
+                break;
+            case CPU.ADD:
+            case CPU.SUB:
+            case CPU.MUL:
+                beginRegisterOp(usesPC(arg1) || usesPC(arg2) || usesPC(arg3));
+                beginStore(arg1);
+                loadRegister(arg2);
+                loadRegister(arg3);
+                m_code.u1((op == CPU.ADD) ? IADD : ((op == CPU.SUB) ? ISUB : IMUL));
+                endStore(arg1);
+                break;
+            case CPU.DIV:
+                //Let the CPU report a division by zero
+                loadRegister(arg3);
+                m_code.u1(IFNE);
+                end = m_code.size();
+                m_code.u2(0);
+                pending = m_pending;
+                retired = m_retired;
+                dirty = m_dirty.clone();
+                flushPC(0);
+                callExec(i, op, arg1, arg2, arg3);
+                m_code.u1(POP);
+                m_code.u1(ICONST_M1);
+                m_code.u1(IRETURN);
+                m_pending = pending;
+                m_retired = retired;
+                m_dirty = dirty;
+                m_code.patch(end, m_code.size() - end + 1);
+
+                beginRegisterOp(usesPC(arg1) || usesPC(arg2) || usesPC(arg3));
+                beginStore(arg1);
+                loadRegister(arg2);
+                loadRegister(arg3);
+                m_code.u1(IDIV);
+                endStore(arg1);
+                break;
+            case CPU.COPY:
+                beginRegisterOp(usesPC(arg1) || usesPC(arg2));
+                beginStore(arg1);
+                loadRegister(arg2);
+                endStore(arg1);
+                break;
+            case CPU.BRANCH:
+                setPC(arg1);
+                returnUncounted(i + 1);
+                break;
+            case CPU.BNE:
+            case CPU.BLT:
+                loadRegister(arg1);
+                loadRegister(arg2);
+                m_code.u1((op == CPU.BNE) ? IF_ICMPEQ : IF_ICMPGE);
+                end = m_code.size();
+                m_code.u2(0);
+                setPC(arg3);
+                returnUncounted(i + 1);
+                m_code.patch(end, m_code.size() - end + 1);
+                flushPC(1);
+                returnUncounted(i + 1);
+                break;
+            default:
+                //LOAD, SAVE, CAS, FETCH_ADD, PUSH, POP and TRAP: the PC
+                //must point at the instruction while the CPU runs it
+                flushPC(0);
+                callExec(i, op, arg1, arg2, arg3);
+                m_code.u1(IFNE);
+                m_code.u2(5);
+                m_code.u1(ICONST_M1);
+                m_code.u1(IRETURN);
+                m_pending = 1;
+
+                //TRAP always ends a block.  Otherwise leave the block if it
+                //was overwritten (e.g., by this instruction).
+                if (op == CPU.TRAP)
+                {
+                    flushPC(0);
+                    returnUncounted(i + 1);
+                    break;
+                }
+                reload();
+                m_code.u1(ALOAD_0);
+                m_code.u1(GETFIELD);
+                m_code.u2(memberRef(CONSTANT_FIELDREF, SUPER, "valid", "Z"));
+                m_code.u1(IFNE);
+                end = m_code.size();
+                m_code.u2(0);
+                flushPC(0);
+                returnUncounted(i + 1);
+                m_pending = 1;
+                m_code.patch(end, m_code.size() - end + 1);
+                break;
+        }//switch
+    }//translate
+
+    /**
+     * callsCPU
+     *
+     * @param op an opcode
+     * @return true iff a translated instruction with this opcode calls back
+     *         into the CPU (apart from a DIV by zero)
+     */
+    public static boolean callsCPU(int op)
+    {
+        switch(op)
+        {
+            case CPU.SET:
+            case CPU.ADD:
+            case CPU.SUB:
+            case CPU.MUL:
+            case CPU.DIV:
+            case CPU.COPY:
+            case CPU.BRANCH:
+            case CPU.BNE:
+            case CPU.BLT:
+                return false;
+            default:
+                return true;
+        }//switch
+    }//callsCPU
+
+    /**
+     * beginRegisterOp
+     *
+     * gets ready to generate an instruction that only uses registers
+     *
+     * @param usesPC true if the instruction reads or writes the PC (which must
+     *               then be up to date)
+     */
+    private void beginRegisterOp(boolean usesPC)
+    {
+        if (usesPC)
+        {
+            flushPC(0);
+        }
+        m_pending++;
+    }//beginRegisterOp
+
+    /**
+     * usesPC
+     *
+     * @param reg a register operand
+     * @return true iff it is the PC
+     */
+    private static boolean usesPC(int reg)
+    {
+        return reg == CPU.PC;
+    }
+
+    /**
+     * callExec
+     *
+     * generates a call to {@link BlockCache.Block#exec} for instruction i,
+     * which leaves its result on the stack.  The cached registers are
+     * written back first, so none of them is dirty afterwards (but the CPU
+     * may have changed them, see {@link #reload}).
+     */
+    private void callExec(int i, int op, int arg1, int arg2, int arg3)
+    {
+        writeBack();
+        Arrays.fill(m_dirty, false);
+        m_code.u1(ALOAD_1);
+        pushInt(i + 1 - m_retired);
+        pushInt(op);
+        pushInt(arg1);
+        pushInt(arg2);
+        pushInt(arg3);
+        m_code.u1(INVOKESTATIC);
+        m_code.u2(memberRef(CONSTANT_METHODREF, SUPER, "exec", "(Lsos/CPU;IIIII)Z"));
+        m_retired = i + 1;
+    }//callExec
+
+    /**
+     * flushPC
+     *
+     * generates code that adds INSTRSIZE to the PC for each pending
+     * instruction (plus extra)
+     *
+     * @param extra the number of instructions to add beyond those pending
+     */
+    private void flushPC(int extra)
+    {
+        int n = m_pending + extra;
+        m_pending = 0;
+        if (n == 0)
+        {
+            return;
+        }
+        m_code.u1(ALOAD_2);
+        pushInt(CPU.PC);
+        m_code.u1(DUP2);
+        m_code.u1(IALOAD);
+        pushInt(n * CPU.INSTRSIZE);
+        m_code.u1(IADD);
+        m_code.u1(IASTORE);
+    }//flushPC
+
+    /**
+     * setPC
+     *
+     * generates code that sets the PC (as a taken branch does)
+     */
+    private void setPC(int value)
+    {
+        m_code.u1(ALOAD_2);
+        pushInt(CPU.PC);
+        pushInt(value);
+        m_code.u1(IASTORE);
+    }//setPC
+
+    /**
+     * returnUncounted
+     *
+     * generates code that returns the number of instructions the block has
+     * run that the CPU hasn't been told about
+     *
+     * @param executed the number of instructions run by then
+     */
+    private void returnUncounted(int executed)
+    {
+        writeBack();
+        pushInt(executed - m_retired);
+        m_code.u1(IRETURN);
+    }//returnUncounted
+
+    /**
+     * cacheOperands
+     *
+     * records which of an instruction's operands are registers that should
+     * be kept in local variables (all but the PC, which {@link #flushPC}
+     * updates in the register array)
+     */
+    private void cacheOperands(int op, int arg1, int arg2, int arg3)
+    {
+        switch(op)
+        {
+            case CPU.ADD:
+            case CPU.SUB:
+            case CPU.MUL:
+            case CPU.DIV:
+                m_cached[arg3] = true;
+                //fall through
+            case CPU.COPY:
+            case CPU.BNE:
+            case CPU.BLT:
+                m_cached[arg2] = true;
+                //fall through
+            case CPU.SET:
+                m_cached[arg1] = true;
+                break;
+            default:
+                //the CPU reads and writes these operands itself
+                break;
+        }//switch
+        m_cached[CPU.PC] = false;
+    }//cacheOperands
+
+    /**
+     * reload
+     *
+     * generates code that copies every cached register from the register
+     * array into its local variable
+     */
+    private void reload()
+    {
+        for(int reg = 0; reg < CPU.NUMREG; reg++)
+        {
+            if (m_cached[reg])
+            {
+                m_code.u1(ALOAD_2);
+                pushInt(reg);
+                m_code.u1(IALOAD);
+                m_code.u1(ISTORE);
+                m_code.u1(FIRST_REG_LOCAL + reg);
+                m_dirty[reg] = false;
+            }
+        }
+    }//reload
+
+    /**
+     * writeBack
+     *
+     * generates code that copies every cached register that has changed back
+     * to the register array.  The registers stay dirty because the code that
+     * follows a return may be on another path.
+     */
+    private void writeBack()
+    {
+        for(int reg = 0; reg < CPU.NUMREG; reg++)
+        {
+            if (m_dirty[reg])
+            {
+                m_code.u1(ALOAD_2);
+                pushInt(reg);
+                m_code.u1(ILOAD);
+                m_code.u1(FIRST_REG_LOCAL + reg);
+                m_code.u1(IASTORE);
+            }
+        }
+    }//writeBack
+
+    /**
+     * loadRegister
+     *
+     * generates code that pushes the value of a register
+     */
+    private void loadRegister(int reg)
+    {
+        if (m_cached[reg])
+        {
+            m_code.u1(ILOAD);
+            m_code.u1(FIRST_REG_LOCAL + reg);
+            return;
+        }
+        m_code.u1(ALOAD_2);
+        pushInt(reg);
+        m_code.u1(IALOAD);
+    }//loadRegister
+
+    /**
+     * beginStore
+     *
+     * generates whatever must come before the new value of a register is
+     * pushed (see {@link #endStore})
+     */
+    private void beginStore(int reg)
+    {
+        if (!m_cached[reg])
+        {
+            m_code.u1(ALOAD_2);
+            pushInt(reg);
+        }
+    }//beginStore
+
+    /**
+     * endStore
+     *
+     * generates code that stores the value on top of the stack in a register
+     */
+    private void endStore(int reg)
+    {
+        if (m_cached[reg])
+        {
+            m_code.u1(ISTORE);
+            m_code.u1(FIRST_REG_LOCAL + reg);
+            m_dirty[reg] = true;
+            return;
+        }
+        m_code.u1(IASTORE);
+    }//endStore
+
+    /**
+     * pushInt
+     *
+     * generates the shortest instruction that pushes a constant
+     */
+    private void pushInt(int v)
+    {
+        if ((v >= -1) && (v <= 5))
+        {
+            m_code.u1(ICONST_0 + v);
+        }
+        else if ((v >= Byte.MIN_VALUE) && (v <= Byte.MAX_VALUE))
+        {
+            m_code.u1(BIPUSH);
+            m_code.u1(v);
+        }
+        else if ((v >= Short.MIN_VALUE) && (v <= Short.MAX_VALUE))
+        {
+            m_code.u1(SIPUSH);
+            m_code.u2(v);
+        }
+        else
+        {
+            m_code.u1(LDC_W);
+            m_code.u2(intConst(v));
+        }
+    }//pushInt
+
+    /**
+     * utf8
+     *
+     * @return the index of a CONSTANT_Utf8 entry (added if necessary).  Only
+     *         ASCII strings are used so no special encoding is needed.
+     */
+    private int utf8(String s)
+    {
+        Integer idx = m_poolIndex.get("U" + s);
+        if (idx == null)
+        {
+            m_pool.u1(CONSTANT_UTF8);
+            m_pool.u2(s.length());
+            for(int i = 0; i < s.length(); i++)
+            {
+                m_pool.u1(s.charAt(i));
+            }
+            idx = addEntry("U" + s);
+        }
+        return idx;
+    }//utf8
+
+    /**
+     * intConst
+     *
+     * @return the index of a CONSTANT_Integer entry (added if necessary)
+     */
+    private int intConst(int v)
+    {
+        Integer idx = m_poolIndex.get("I" + v);
+        if (idx == null)
+        {
+            m_pool.u1(CONSTANT_INTEGER);
+            m_pool.u4(v);
+            idx = addEntry("I" + v);
+        }
+        return idx;
+    }//intConst
+
+    /**
+     * classRef
+     *
+     * @return the index of a CONSTANT_Class entry (added if necessary)
+     */
+    private int classRef(String internalName)
+    {
+        Integer idx = m_poolIndex.get("C" + internalName);
+        if (idx == null)
+        {
+            int name = utf8(internalName);
+            m_pool.u1(CONSTANT_CLASS);
+            m_pool.u2(name);
+            idx = addEntry("C" + internalName);
+        }
+        return idx;
+    }//classRef
+
+    /**
+     * memberRef
+     *
+     * @return the index of a CONSTANT_Fieldref or CONSTANT_Methodref entry
+     *         (added if necessary)
+     */
+    private int memberRef(int tag, String owner, String name, String type)
+    {
+        String key = "M" + owner + "." + name + type;
+        Integer idx = m_poolIndex.get(key);
+        if (idx == null)
+        {
+            int cls = classRef(owner);
+            int nameIdx = utf8(name);
+            int typeIdx = utf8(type);
+            m_pool.u1(CONSTANT_NAMEANDTYPE);
+            m_pool.u2(nameIdx);
+            m_pool.u2(typeIdx);
+            int nat = addEntry("N" + name + type);
+            m_pool.u1(tag);
+            m_pool.u2(cls);
+            m_pool.u2(nat);
+            idx = addEntry(key);
+        }
+        return idx;
+    }//memberRef
+
+    /**
+     * addEntry
+     *
+     * records the constant pool entry just written to m_pool
+     *
+     * @return its index
+     */
+    private int addEntry(String key)
+    {
+        int idx = m_poolCount++;
+        m_poolIndex.put(key, idx);
+        return idx;
+    }//addEntry
+
+    /**
+     * ByteBuf
+     *
+     * a growable array of bytes written in the big-endian order used by
+     * class files
+     */
+    private static class ByteBuf
+    {
+        private byte m_buf[] = new byte[256];
+        private int m_size = 0;
+
+        public int size()
+        {
+            return m_size;
+        }
+
+        public void u1(int v)
+        {
+            if (m_size == m_buf.length)
+            {
+                m_buf = Arrays.copyOf(m_buf, 2 * m_buf.length);
+            }
+            m_buf[m_size++] = (byte)v;
+        }
+
+        public void u2(int v)
+        {
+            u1(v >>> 8);
+            u1(v);
+        }
+
+        public void u4(int v)
+        {
+            u2(v >>> 16);
+            u2(v);
+        }
+
+        public void bytes(ByteBuf b)
+        {
+            for(int i = 0; i < b.m_size; i++)
+            {
+                u1(b.m_buf[i]);
+            }
+        }
+
+        /**
+         * patch
+         *
+         * fills in the offset of a branch instruction.  The offset is
+         * relative to the branch opcode, which comes just before pos.
+         */
+        public void patch(int pos, int offset)
+        {
+            m_buf[pos] = (byte)(offset >>> 8);
+            m_buf[pos + 1] = (byte)offset;
+        }
+
+        public byte[] toByteArray()
+        {
+            return Arrays.copyOf(m_buf, m_size);
+        }
+    }//class ByteBuf
+
+};//class BlockCompiler
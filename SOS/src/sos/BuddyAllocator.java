@@ -0,0 +1,314 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This class manages RAM using the binary buddy system.  Memory is handed out
+ * in blocks whose sizes are powers of two (in units of MIN_BLOCK words).  A
+ * larger block is split in half as needed to satisfy a request and, when a
+ * block is freed, it is merged with its "buddy" (the other half of the block
+ * it was split from) if the buddy is free too.  Since a block's buddy can be
+ * found with a single XOR, and there is a separate free list for each block
+ * size, both allocating and freeing take O(log n) time no matter how many
+ * blocks are in use.
+ *
+ * The price is internal fragmentation: a request is rounded up to the next
+ * power of two, and the words wasted this way are tracked.
+ *
+ * @see SOS
+ */
+public class BuddyAllocator
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    /**
+     * log2 of the size of the smallest block (in words)
+     */
+    public static final int MIN_ORDER = 4;
+
+    /**
+     * the size of the smallest block (in words)
+     */
+    public static final int MIN_BLOCK = 1 << MIN_ORDER;
+
+    /**
+     * marks the end of a free list (and units that don't start a block)
+     */
+    private static final int NONE = -1;
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the number of MIN_BLOCK units being managed
+     */
+    private int m_units = 0;
+
+    /**
+     * the first unit of the first free block of each order
+     */
+    private int m_heads[] = null;
+
+    /**
+     * for a unit that starts a free block, the next/previous free block of
+     * the same order
+     */
+    private int m_next[] = null;
+    private int m_prev[] = null;
+
+    /**
+     * for a unit that starts a free block, the block's order.  NONE otherwise.
+     */
+    private byte m_freeOrder[] = null;
+
+    /**
+     * for a unit that starts an allocated block, the block's order.  NONE
+     * otherwise.
+     */
+    private byte m_allocOrder[] = null;
+
+    /**
+     * the number of words in every block that has ever been allocated
+     */
+    private long m_allocatedWords = 0;
+
+    /**
+     * the number of words that were requested for every block that has ever
+     * been allocated
+     */
+    private long m_requestedWords = 0;
+
+    /**
+     * the number of words in all free blocks
+     */
+    private long m_freeWords = 0;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * BuddyAllocator ctor
+     *
+     * divides the memory into the largest possible free blocks.  Any words
+     * past the last full MIN_BLOCK are never used.
+     *
+     * @param size the number of words to manage (starting at address 0)
+     */
+    public BuddyAllocator(int size)
+    {
+        m_units = size >> MIN_ORDER;
+        int maxOrder = 0;
+        while ((2L << maxOrder) <= m_units)
+        {
+            maxOrder++;
+        }
+
+        m_heads = new int[maxOrder + 1];
+        Arrays.fill(m_heads, NONE);
+        m_next = new int[m_units];
+        m_prev = new int[m_units];
+        m_freeOrder = new byte[m_units];
+        m_allocOrder = new byte[m_units];
+        Arrays.fill(m_freeOrder, (byte)NONE);
+        Arrays.fill(m_allocOrder, (byte)NONE);
+
+        //Each block is a multiple of all the smaller powers of two so it is
+        //properly aligned, and its buddy is never a free block of the same
+        //order
+        int unit = 0;
+        for(int order = maxOrder; order >= 0; order--)
+        {
+            if (m_units - unit >= (1 << order))
+            {
+                push(unit, order);
+                unit += 1 << order;
+            }
+        }
+    }//BuddyAllocator ctor
+
+    /**
+     * push
+     *
+     * adds a block to the free list for its order
+     */
+    private void push(int unit, int order)
+    {
+        m_freeOrder[unit] = (byte)order;
+        m_prev[unit] = NONE;
+        m_next[unit] = m_heads[order];
+        if (m_heads[order] != NONE)
+        {
+            m_prev[m_heads[order]] = unit;
+        }
+        m_heads[order] = unit;
+        m_freeWords += (long)MIN_BLOCK << order;
+    }//push
+
+    /**
+     * remove
+     *
+     * takes a block off of the free list for its order
+     */
+    private void remove(int unit)
+    {
+        int order = m_freeOrder[unit];
+        if (m_prev[unit] != NONE)
+        {
+            m_next[m_prev[unit]] = m_next[unit];
+        }
+        else
+        {
+            m_heads[order] = m_next[unit];
+        }
+        if (m_next[unit] != NONE)
+        {
+            m_prev[m_next[unit]] = m_prev[unit];
+        }
+        m_freeOrder[unit] = (byte)NONE;
+        m_freeWords -= (long)MIN_BLOCK << order;
+    }//remove
+
+    /**
+     * alloc
+     *
+     * allocates a block of at least the given size
+     *
+     * @param size the number of words needed
+     * @return the address of the block -OR- -1 if there is no free block that
+     *         is large enough
+     */
+    public int alloc(int size)
+    {
+        //Find the order of the smallest block that will hold the request
+        int units = (size + MIN_BLOCK - 1) >> MIN_ORDER;
+        int order = 0;
+        while ((1 << order) < units)
+        {
+            order++;
+        }
+
+        //Find the smallest free block at least that big
+        int k = order;
+        while ((k < m_heads.length) && (m_heads[k] == NONE))
+        {
+            k++;
+        }
+        if (k >= m_heads.length)
+        {
+            return -1;
+        }
+
+        //Split it in half until it is the right size
+        int unit = m_heads[k];
+        remove(unit);
+        while (k > order)
+        {
+            k--;
+            push(unit + (1 << k), k);
+        }
+
+        m_allocOrder[unit] = (byte)order;
+        m_allocatedWords += MIN_BLOCK << order;
+        m_requestedWords += size;
+
+        return unit << MIN_ORDER;
+    }//alloc
+
+    /**
+     * free
+     *
+     * returns a block that was allocated by {@link #alloc} and merges it with
+     * its buddy for as long as the buddy is free
+     *
+     * @param addr the address of the block
+     */
+    public void free(int addr)
+    {
+        int unit = addr >> MIN_ORDER;
+        int order = m_allocOrder[unit];
+        if (order == NONE)
+        {
+            return;         // not allocated
+        }
+        m_allocOrder[unit] = (byte)NONE;
+
+        while (order < m_heads.length - 1)
+        {
+            int buddy = unit ^ (1 << order);
+            if ((buddy >= m_units) || (m_freeOrder[buddy] != order))
+            {
+                break;
+            }
+            remove(buddy);
+            unit = Math.min(unit, buddy);
+            order++;
+        }
+        push(unit, order);
+    }//free
+
+    /**
+     * getFreeMemory
+     *
+     * @return the total number of words in all free blocks
+     */
+    public int getFreeMemory()
+    {
+        return (int)m_freeWords;
+    }
+
+    /**
+     * getLargestFreeBlock
+     *
+     * @return the number of words in the largest free block
+     */
+    public int getLargestFreeBlock()
+    {
+        for(int order = m_heads.length - 1; order >= 0; order--)
+        {
+            if (m_heads[order] != NONE)
+            {
+                return MIN_BLOCK << order;
+            }
+        }
+        return 0;
+    }//getLargestFreeBlock
+
+    /**
+     * getFreeBlockCount
+     *
+     * @return the number of free blocks
+     */
+    public int getFreeBlockCount()
+    {
+        int count = 0;
+        for(int order = 0; order < m_heads.length; order++)
+        {
+            for(int u = m_heads[order]; u != NONE; u = m_next[u])
+            {
+                count++;
+            }
+        }
+        return count;
+    }//getFreeBlockCount
+
+    /**
+     * getInternalFragmentation
+     *
+     * @return the percentage of all the words ever allocated that were not
+     *         actually requested (i.e., wasted by rounding up to a power of
+     *         two)
+     */
+    public int getInternalFragmentation()
+    {
+        if (m_allocatedWords == 0)
+        {
+            return 0;
+        }
+        return (int)(100 - (100 * m_requestedWords / m_allocatedWords));
+    }//getInternalFragmentation
+
+};//class BuddyAllocator
@@ -0,0 +1,198 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This scheduler tries to give every process a fair share of the CPU in the
+ * way the Linux "completely fair scheduler" does.  Each process has a
+ * virtual runtime: the number of instructions it has run, scaled down by its
+ * weight (which comes from its priority).  The Ready processes are kept in a
+ * balanced tree ordered by virtual runtime and the one that has had the
+ * least time so far always runs next.
+ *
+ * Quanta are sized so that every Ready process gets a turn within
+ * TARGET_LATENCY instructions, in proportion to its weight.
+ *
+ * @see Scheduler
+ * @see Program#setPriority
+ */
+public class CFSScheduler implements Scheduler
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    /**
+     * the weight of a process with priority 0.  Each point of priority
+     * multiplies this by 1.25.
+     */
+    public static final int NICE_0_WEIGHT = 1024;
+
+    /**
+     * the number of instructions in which every Ready process should get a
+     * turn (used unless {@link #setQuantum} is called)
+     */
+    public static final int TARGET_LATENCY = 2000;
+
+    /**
+     * the shortest quantum given to any process
+     */
+    public static final int MIN_GRANULARITY = 100;
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the Ready processes ordered by virtual runtime
+     */
+    private TreeSet<SOS.ProcessControlBlock> m_ready = null;
+
+    /**
+     * the total weight of the processes in m_ready
+     */
+    private long m_totalWeight = 0;
+
+    /**
+     * the smallest virtual runtime seen so far.  A process that starts
+     * running (or has been Blocked for a long time) starts from here so that
+     * it can't monopolize the CPU to catch up.
+     */
+    private long m_minVruntime = 0;
+
+    /**
+     * the period in which every Ready process should get a turn
+     */
+    private int m_latency = TARGET_LATENCY;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * the constructor creates the (empty) tree
+     */
+    public CFSScheduler()
+    {
+        m_ready = new TreeSet<SOS.ProcessControlBlock>(
+            new Comparator<SOS.ProcessControlBlock>()
+            {
+                public int compare(SOS.ProcessControlBlock a,
+                                   SOS.ProcessControlBlock b)
+                {
+                    if (a.getVruntime() != b.getVruntime())
+                    {
+                        return (a.getVruntime() < b.getVruntime()) ? -1 : 1;
+                    }
+                    return a.getProcessId() - b.getProcessId();
+                }
+            });
+    }//ctor
+
+    /**
+     * getWeight
+     *
+     * @param pi a process
+     * @return the weight of the process
+     */
+    public static int getWeight(SOS.ProcessControlBlock pi)
+    {
+        int prio = Math.max(-19, Math.min(pi.getPriority(), 20));
+        return (int)(NICE_0_WEIGHT * Math.pow(1.25, prio));
+    }//getWeight
+
+    /**
+     * add
+     *
+     * charges the process for the time it just ran and puts it in the tree
+     *
+     * @see Scheduler#add
+     */
+    public void add(SOS.ProcessControlBlock pi)
+    {
+        long vruntime = pi.getVruntime()
+            + pi.getLastBurst() * NICE_0_WEIGHT / getWeight(pi);
+        pi.setVruntime(Math.max(vruntime, m_minVruntime - m_latency));
+
+        m_ready.add(pi);
+        m_totalWeight += getWeight(pi);
+    }//add
+
+    /**
+     * remove
+     *
+     * @see Scheduler#remove
+     */
+    public void remove(SOS.ProcessControlBlock pi)
+    {
+        if (m_ready.remove(pi))
+        {
+            m_totalWeight -= getWeight(pi);
+        }
+    }//remove
+
+    /**
+     * next
+     *
+     * @see Scheduler#next
+     */
+    public SOS.ProcessControlBlock next()
+    {
+        SOS.ProcessControlBlock pi = m_ready.pollFirst();
+        if (pi != null)
+        {
+            m_totalWeight -= getWeight(pi);
+            m_minVruntime = Math.max(m_minVruntime, pi.getVruntime());
+        }
+        return pi;
+    }//next
+
+    /**
+     * getQuantum
+     *
+     * @return the process' share of the target latency
+     * @see Scheduler#getQuantum
+     */
+    public int getQuantum(SOS.ProcessControlBlock pi)
+    {
+        if (m_latency <= 0)
+        {
+            return 0;
+        }
+        long weight = getWeight(pi);
+        long share = m_latency * weight / (m_totalWeight + weight);
+        return (int)Math.max(MIN_GRANULARITY, share);
+    }//getQuantum
+
+    /**
+     * setQuantum
+     *
+     * @param instructions the new target latency
+     * @see Scheduler#setQuantum
+     */
+    public void setQuantum(int instructions)
+    {
+        m_latency = instructions;
+    }
+
+    /**
+     * size
+     *
+     * @see Scheduler#size
+     */
+    public int size()
+    {
+        return m_ready.size();
+    }
+
+    /**
+     * getName
+     *
+     * @see Scheduler#getName
+     */
+    public String getName()
+    {
+        return "CFS";
+    }
+
+};//class CFSScheduler
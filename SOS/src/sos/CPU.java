@@ -36,6 +36,8 @@ public class CPU
     public static final int PUSH   = 10;   // save value to stack
     public static final int LOAD   = 11;   // load value from heap
     public static final int SAVE   = 12;   // save value to heap
+    public static final int CAS    = 13;   // atomic compare and swap
+    public static final int FETCH_ADD = 14; // atomic fetch and add
     public static final int TRAP   = 15;   // system call
     
     //These constants define the indexes to each register
@@ -55,6 +57,24 @@ public class CPU
     public static final int INSTRSIZE = 4;  // number of ints in a single instr +
                                             // args.  (Set to a fixed value for simplicity.)
 
+    //These constants define the size of a page (a multiple of INSTRSIZE so
+    //an instruction never straddles two pages)
+    public static final int PAGE_SHIFT = 6;
+    public static final int PAGE_SIZE  = 1 << PAGE_SHIFT;  // words per page
+    public static final int PAGE_MASK  = PAGE_SIZE - 1;
+
+    //These constants define the layout of a page table entry.  The frame
+    //number is stored above the flag bits.
+    public static final int PTE_VALID = 1;       // the page is in RAM
+    public static final int PTE_WRITE = 2;       // the page may be written
+    public static final int PTE_REF   = 4;       // the page has been used
+    public static final int PTE_DIRTY = 8;       // the page has been written
+    public static final int PTE_FRAME_SHIFT = 4; // where the frame number is
+
+    //These constants define the shape of the TLB
+    public static final int TLB_SETS = 8;    // number of sets (a power of two)
+    public static final int TLB_WAYS = 4;    // number of entries in each set
+
     //======================================================================
     //Member variables
     //----------------------------------------------------------------------
@@ -75,6 +95,85 @@ public class CPU
      **/
     private RAM m_RAM = null;
 
+    /**
+     * Instructions that have already been fetched and decoded
+     *
+     * @see DecodeCache
+     **/
+    private DecodeCache m_decodeCache = null;
+
+    /**
+     * Translated basic blocks (only used when tiered execution is enabled)
+     *
+     * @see BlockCache
+     **/
+    private BlockCache m_blockCache = null;
+
+    /**
+     * specifies whether hot basic blocks should be translated and run by
+     * {@link #runBlock} instead of the interpreter
+     **/
+    private boolean m_tiered = false;
+
+    /**
+     * set by {@link #halt} to make {@link #run} return after a trap
+     **/
+    private boolean m_halted = false;
+
+    /**
+     * the number of instructions this CPU has executed
+     **/
+    private long m_instrCount = 0;
+
+    /**
+     * the value of m_instrCount at which the timer interrupt fires next
+     * (Long.MAX_VALUE if the timer is off)
+     **/
+    private long m_quantumEnd = Long.MAX_VALUE;
+
+    /**
+     * raises an interrupt when a device finishes a request
+     **/
+    private InterruptController m_IC = null;
+
+    /**
+     * the value of m_instrCount at which the timer or the interrupt
+     * controller needs attention next (the earlier of the two)
+     **/
+    private long m_nextEvent = Long.MAX_VALUE;
+
+    /**
+     * the page table of the running process (indexed by page number) -OR-
+     * null if logical addresses are simply offsets from BASE
+     **/
+    private int m_pageTable[] = null;
+
+    /**
+     * set once a page table has been installed.  From then on translated
+     * blocks never cross a page boundary.
+     **/
+    private boolean m_paging = false;
+
+    /**
+     * the TLB: for each entry the page number it holds (-1 if empty) and a
+     * copy of that page's page table entry.  Entry i belongs to set
+     * i / TLB_WAYS.
+     **/
+    private int m_tlbTags[] = new int[TLB_SETS * TLB_WAYS];
+    private int m_tlbPTEs[] = new int[TLB_SETS * TLB_WAYS];
+
+    /**
+     * for each TLB set, the entry (way) that will be replaced next
+     **/
+    private int m_tlbVictim[] = new int[TLB_SETS];
+
+    /**
+     * the number of translations found in the TLB and the number that
+     * needed the page table
+     **/
+    private long m_tlbHits = 0;
+    private long m_tlbMisses = 0;
+
     //======================================================================
     //Callback Interface
     //----------------------------------------------------------------------
@@ -90,6 +189,10 @@ public class CPU
         void interruptDivideByZero();
         void interruptIllegalInstruction(int[] instr);
         void systemCall();
+        void interruptClock();
+        void interruptPageFault(int addr, boolean write);
+        void interruptIOReadComplete(AsyncDevice.Request req);
+        void interruptIOWriteComplete(AsyncDevice.Request req);
     };//interface TrapHandler
 
     
@@ -117,6 +220,10 @@ public class CPU
             m_registers[i] = 0;
         }
         m_RAM = ram;
+        m_decodeCache = new DecodeCache(DecodeCache.DEFAULT_SIZE);
+        m_RAM.registerCodeCache(m_decodeCache);
+        m_IC = new InterruptController(this);
+        flushTLB();
 
     }//CPU ctor 
 
@@ -180,6 +287,234 @@ public class CPU
         return m_registers;
     }
 
+    /**
+     * getDecodeCache
+     *
+     * @return the cache of decoded instructions used by this CPU
+     */
+    public DecodeCache getDecodeCache()
+    {
+        return m_decodeCache;
+    }
+
+    /**
+     * getInstructionCount
+     *
+     * @return the number of instructions this CPU has executed
+     */
+    public long getInstructionCount()
+    {
+        return m_instrCount;
+    }
+
+    /**
+     * isTiered
+     *
+     * @return true if hot basic blocks are being translated
+     */
+    public boolean isTiered()
+    {
+        return m_tiered;
+    }
+
+    /**
+     * setTiered
+     *
+     * turns tiered execution on or off.  When it is on, basic blocks that are
+     * run often are translated by a {@link BlockCache} and executed a whole
+     * block at a time.  Cold code is always run by the interpreter.
+     *
+     * @param tiered true to enable tiered execution
+     */
+    public void setTiered(boolean tiered)
+    {
+        if (tiered && (m_blockCache == null))
+        {
+            m_blockCache = new BlockCache(BlockCache.DEFAULT_SIZE);
+            m_blockCache.setPaged(m_paging);
+            m_RAM.registerCodeCache(m_blockCache);
+        }
+        else if (!tiered && (m_blockCache != null))
+        {
+            m_blockCache.clear();
+        }
+        m_tiered = tiered;
+    }//setTiered
+
+    /**
+     * getBlockCache
+     *
+     * @return the translated blocks used by this CPU -OR- null if tiered
+     *         execution has never been enabled
+     */
+    public BlockCache getBlockCache()
+    {
+        return m_blockCache;
+    }
+
+    /**
+     * setPageTable
+     *
+     * installs the page table of the process that is about to run.  With a
+     * page table, BASE should be 0 and LIM the last logical address of the
+     * process: every address that passes the BASE/LIM check is then looked
+     * up in the page table (via the TLB) to find where it is in RAM.
+     *
+     * The TLB is flushed whenever the page table changes.
+     *
+     * @param table the page table -OR- null to use BASE and LIM alone
+     */
+    public void setPageTable(int[] table)
+    {
+        if (table == m_pageTable)
+        {
+            return;
+        }
+        m_pageTable = table;
+        flushTLB();
+
+        if ((table != null) && !m_paging)
+        {
+            m_paging = true;
+            if (m_blockCache != null)
+            {
+                m_blockCache.setPaged(true);
+            }
+        }
+    }//setPageTable
+
+    /**
+     * getPageTable
+     *
+     * @return the page table in use -OR- null
+     */
+    public int[] getPageTable()
+    {
+        return m_pageTable;
+    }
+
+    /**
+     * flushTLB
+     *
+     * empties the TLB.  The trap handler must call this (or {@link
+     * #invalidatePage}) after changing an entry of the page table in use.
+     */
+    public void flushTLB()
+    {
+        Arrays.fill(m_tlbTags, -1);
+    }
+
+    /**
+     * invalidatePage
+     *
+     * removes a single page from the TLB
+     *
+     * @param page the page number
+     */
+    public void invalidatePage(int page)
+    {
+        int set = (page & (TLB_SETS - 1)) * TLB_WAYS;
+        for(int i = set; i < set + TLB_WAYS; i++)
+        {
+            if (m_tlbTags[i] == page)
+            {
+                m_tlbTags[i] = -1;
+            }
+        }
+    }//invalidatePage
+
+    /**
+     * getTLBHits
+     *
+     * @return the number of translations that were found in the TLB
+     */
+    public long getTLBHits()
+    {
+        return m_tlbHits;
+    }
+
+    /**
+     * getTLBMisses
+     *
+     * @return the number of translations that had to read the page table
+     */
+    public long getTLBMisses()
+    {
+        return m_tlbMisses;
+    }
+
+    /**
+     * halt
+     *
+     * is called by the trap handler to make {@link #run} return once the
+     * current trap has been handled.
+     */
+    public void halt()
+    {
+        m_halted = true;
+    }
+
+    /**
+     * startQuantum
+     *
+     * sets the timer so that a clock interrupt is raised after the given
+     * number of instructions have been executed.  This replaces any time
+     * left on the timer.
+     *
+     * @param instructions the length of the quantum (0 or less turns the
+     *                     timer off)
+     */
+    public void startQuantum(int instructions)
+    {
+        if (instructions > 0)
+        {
+            m_quantumEnd = m_instrCount + instructions;
+        }
+        else
+        {
+            m_quantumEnd = Long.MAX_VALUE;
+        }
+        m_nextEvent = Math.min(m_quantumEnd, m_IC.getNextTime());
+    }//startQuantum
+
+    /**
+     * endQuantum
+     *
+     * makes the timer interrupt fire before the next instruction is executed
+     */
+    public void endQuantum()
+    {
+        m_quantumEnd = m_instrCount;
+        m_nextEvent = m_quantumEnd;
+    }//endQuantum
+
+    /**
+     * getInterruptController
+     *
+     * @return the interrupt controller that devices use to interrupt this
+     *         CPU
+     */
+    public InterruptController getInterruptController()
+    {
+        return m_IC;
+    }
+
+    /**
+     * eventScheduled
+     *
+     * is called by the interrupt controller when a device asks for an
+     * interrupt so that the CPU checks for it in time
+     *
+     * @param time when the interrupt is due (in instructions)
+     */
+    void eventScheduled(long time)
+    {
+        if (time < m_nextEvent)
+        {
+            m_nextEvent = time;
+        }
+    }//eventScheduled
+
     /**
      * setPC
      *
@@ -289,6 +624,12 @@ public class CPU
                 case SAVE:
                     System.out.println("SAVE R" + instr[1] + " --> @R" + instr[2]);
                     break;
+                case CAS:
+                    System.out.println("CAS R" + instr[1] + " <-- @R" + instr[2] + " (if = R" + instr[1] + " then @R" + instr[2] + " = R" + instr[3] + ")");
+                    break;
+                case FETCH_ADD:
+                    System.out.println("FETCH_ADD R" + instr[1] + " <-- @R" + instr[2] + " (@R" + instr[2] + " += R" + instr[3] + ")");
+                    break;
                 case TRAP:
                     System.out.print("TRAP ");
                     break;
@@ -313,31 +654,151 @@ public class CPU
         return (addr >= m_registers[BASE] && addr <= m_registers[LIM]);
     }
 
+    /**
+     * translate
+     *
+     * finds where a logical address (that has already passed {@link
+     * #validMemory}) is in RAM.  Without a page table the two are the same.
+     * Otherwise the TLB is searched and the page table is only read (which
+     * takes as long as a RAM access) on a miss.  A page that isn't in RAM, or
+     * a write to a read-only page, causes a page fault.  The trap handler
+     * must fix the page table before it returns.
+     *
+     * @param addr  the address
+     * @param write true if the address is about to be written
+     * @return the physical address -OR- -1 if the page fault could not be
+     *         handled (the trap handler has already been told)
+     */
+    private int translate(int addr, boolean write)
+    {
+        if (m_pageTable == null)
+        {
+            return addr;
+        }
+
+        int page = addr >>> PAGE_SHIFT;
+        int set = (page & (TLB_SETS - 1)) * TLB_WAYS;
+        for(int i = set; i < set + TLB_WAYS; i++)
+        {
+            if (m_tlbTags[i] == page)
+            {
+                //The first write to a clean page goes to the page table so
+                //that its dirty bit gets set.  So does a write to a page
+                //that was dirty when it became read-only (e.g., shared).
+                int pte = m_tlbPTEs[i];
+                if (!write || ((pte & (PTE_DIRTY | PTE_WRITE)) == (PTE_DIRTY | PTE_WRITE)))
+                {
+                    m_tlbHits++;
+                    return ((pte >>> PTE_FRAME_SHIFT) << PAGE_SHIFT)
+                        | (addr & PAGE_MASK);
+                }
+                m_tlbTags[i] = -1;
+                break;
+            }
+        }
+
+        //Walk the page table
+        m_tlbMisses++;
+        m_RAM.getClock().advance(m_RAM.getLatency());
+        int pte = m_pageTable[page];
+        if (!allows(pte, write))
+        {
+            m_TH.interruptPageFault(addr, write);
+            if (m_halted || (m_pageTable == null)) {
+                return -1;
+            }
+            pte = m_pageTable[page];
+            if (!allows(pte, write))
+            {
+                m_TH.interruptIllegalMemoryAccess(addr);
+                return -1;
+            }
+        }
+        pte |= PTE_REF | (write ? PTE_DIRTY : 0);
+        m_pageTable[page] = pte;
+
+        //Replace the entries in each set round-robin
+        int way = set + m_tlbVictim[set / TLB_WAYS];
+        m_tlbVictim[set / TLB_WAYS] = (m_tlbVictim[set / TLB_WAYS] + 1) % TLB_WAYS;
+        m_tlbTags[way] = page;
+        m_tlbPTEs[way] = pte;
+
+        return ((pte >>> PTE_FRAME_SHIFT) << PAGE_SHIFT) | (addr & PAGE_MASK);
+    }//translate
+
+    /**
+     * allows
+     *
+     * @param pte   a page table entry
+     * @param write true if the page is about to be written
+     * @return true iff the access can go ahead without a page fault
+     */
+    private static boolean allows(int pte, boolean write)
+    {
+        return ((pte & PTE_VALID) != 0) && (!write || ((pte & PTE_WRITE) != 0));
+    }
+
     /**
      * pushStack
      *
      * Pushes a value to the stack.
      *
      * @param value the value to push to the stack.
+     * @return false if the value could not be pushed (the trap handler has
+     *         already been told)
      */
-    public void pushStack(int value) {
+    public boolean pushStack(int value) {
         if (!validMemory(m_registers[SP] + m_registers[BASE])) {
             //Stack overflow!
             //This was probably deliberate because we had to overwrite the
             //program with stack memory to do this.
         	System.out.println("push");
             m_TH.interruptIllegalMemoryAccess(m_registers[SP] + m_registers[BASE]);
+            return false;
+        }
+        int addr = translate(m_registers[SP] + m_registers[BASE], true);
+        if (addr < 0) {
+            return false;
         }
-        m_RAM.write(m_registers[SP] + m_registers[BASE], value);
+        m_RAM.write(addr, value);
         m_registers[SP]--;
+        return true;
     }
 
     /**
      * popStack
      *
-     * Pops a value from the stack.
+     * Pops a value from the stack into a register.
      *
-     * @return The value poped from the stack.
+     * @param reg the register to put the value in
+     * @return false if no value could be popped (the trap handler has
+     *         already been told)
+     */
+    public boolean popStack(int reg) {
+        m_registers[SP]++;
+        
+        if (!validMemory(m_registers[SP] + m_registers[BASE])) {
+            //Stack underflow!
+        	System.out.println("pop");
+            m_TH.interruptIllegalMemoryAccess(m_registers[SP] + m_registers[BASE]);
+            return false;
+        }
+        int addr = translate(m_registers[SP] + m_registers[BASE], false);
+        if (addr < 0) {
+            return false;
+        }
+        m_registers[reg] = m_RAM.read(addr);
+        return true;
+    }
+
+    /**
+     * popStack
+     *
+     * Pops a value from the stack.  This is meant for the trap handler,
+     * which is told about a failure itself.
+     *
+     * @return The value poped from the stack -OR- 0 if no value could be
+     *         popped
      */
     public int popStack() {
         m_registers[SP]++;
@@ -346,8 +807,13 @@ public class CPU
             //Stack underflow!
         	System.out.println("pop");
             m_TH.interruptIllegalMemoryAccess(m_registers[SP] + m_registers[BASE]);
+            return 0;
+        }
+        int addr = translate(m_registers[SP] + m_registers[BASE], false);
+        if (addr < 0) {
+            return 0;
         }
-        return m_RAM.read(m_registers[SP] + m_registers[BASE]);
+        return m_RAM.read(addr);
     }
 
     /**
@@ -357,88 +823,179 @@ public class CPU
      */
     public void run()
     {
+        int entries[] = m_decodeCache.getEntries();
+        boolean atHead = true;      // is the PC at the start of a basic block?
+        m_halted = false;
        
         while (true) {
 
-            //Fetch next instruction
-            int instr[] = m_RAM.fetch(m_registers[BASE] + m_registers[PC]);
+            //Interrupts are raised between instructions.  Like a TRAP, the
+            //PC is incremented after an interrupt is handled so that
+            //processes switched out by an interrupt and by a system call can
+            //be resumed the same way.
+            if (m_instrCount >= m_nextEvent) {
+                m_registers[PC] -= INSTRSIZE;
+                if (!handleInterrupts()) {
+                    return;
+                }
+                m_registers[PC] += INSTRSIZE;
+                atHead = true;
+            }
+
+            int vpc = m_registers[BASE] + m_registers[PC];
+            int pc = translate(vpc, false);
+            if (pc < 0) {
+                return;
+            }
+
+            //Hot code is run a whole basic block at a time (as long as no
+            //interrupt is due in the middle of it).  With paging a block
+            //never crosses into another page.
+            if (atHead && m_tiered && !m_verbose) {
+                BlockCache.Block b = m_blockCache.enter(pc, m_RAM);
+                if ((b != null)
+                    && (m_instrCount + b.length <= m_nextEvent)
+                    && validMemory(vpc + (b.length - 1) * INSTRSIZE)) {
+                    if (!runBlock(b)) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+
+            //Fetch next instruction (only decoding it if it isn't cached)
+            int e = m_decodeCache.lookup(pc);
+            if (e < 0) {
+                e = m_decodeCache.decode(pc, m_RAM);
+            }
+            int op   = entries[e + DecodeCache.OP];
+            int arg1 = entries[e + DecodeCache.ARG1];
+            int arg2 = entries[e + DecodeCache.ARG2];
+            int arg3 = entries[e + DecodeCache.ARG3];
+            m_instrCount++;
+            atHead = false;
 
             //Debug information if enabled
             if (m_verbose) {
                 System.out.println(".");
                 regDump();
-                printInstr(instr);
+                printInstr(m_RAM.fetch(pc));
             }
 
             //Determine action to take for instruction
             int addr;
-            switch(instr[0]) {
+            switch(op) {
                 case SET:
-                    m_registers[instr[1]] = instr[2];
+                    m_registers[arg1] = arg2;
                     break;
                 case ADD:
-                    m_registers[instr[1]] = m_registers[instr[2]] +
-                                            m_registers[instr[3]];
+                    m_registers[arg1] = m_registers[arg2] +
+                                        m_registers[arg3];
                     break;
                 case SUB:
-                    m_registers[instr[1]] = m_registers[instr[2]] -
-                                            m_registers[instr[3]];
+                    m_registers[arg1] = m_registers[arg2] -
+                                        m_registers[arg3];
                     break;
                 case MUL:
-                    m_registers[instr[1]] = m_registers[instr[2]] *
-                                            m_registers[instr[3]];
+                    m_registers[arg1] = m_registers[arg2] *
+                                        m_registers[arg3];
                     break;
                 case DIV:
-                    if (m_registers[instr[3]] == 0) {
+                    if (m_registers[arg3] == 0) {
                         m_TH.interruptDivideByZero();
                         return;
                     }
-                    m_registers[instr[1]] = m_registers[instr[2]] /
-                                            m_registers[instr[3]];
+                    m_registers[arg1] = m_registers[arg2] /
+                                        m_registers[arg3];
                     break;
                 case COPY:
-                    m_registers[instr[1]] = m_registers[instr[2]];
+                    m_registers[arg1] = m_registers[arg2];
                     break;
                 case BRANCH:
-                    m_registers[PC] = instr[1] - 4;
+                    m_registers[PC] = arg1 - 4;
+                    atHead = true;
                     break;
                 case BNE:
-                    if (m_registers[instr[1]] != m_registers[instr[2]]) {
-                        m_registers[PC] = instr[3] - 4;
+                    if (m_registers[arg1] != m_registers[arg2]) {
+                        m_registers[PC] = arg3 - 4;
                     }
+                    atHead = true;
                     break;
                 case BLT:
-                    if (m_registers[instr[1]] < m_registers[instr[2]]) {
-                        m_registers[PC] = instr[3] - 4;
+                    if (m_registers[arg1] < m_registers[arg2]) {
+                        m_registers[PC] = arg3 - 4;
                     }
+                    atHead = true;
                     break;
                 case POP:
-                    m_registers[instr[1]] = popStack();
+                    if (!popStack(arg1)) {
+                        return;
+                    }
                     break;
                 case PUSH:
-                    pushStack(m_registers[instr[1]]);
+                    if (!pushStack(m_registers[arg1])) {
+                        return;
+                    }
                     break;
                 case LOAD:
-                    addr = m_registers[instr[2]] + m_registers[BASE];
+                    addr = m_registers[arg2] + m_registers[BASE];
                     if (!validMemory(addr)) {
                         m_TH.interruptIllegalMemoryAccess(addr);
                         return;
                     }
-                    m_registers[instr[1]] = m_RAM.read(addr);
+                    addr = translate(addr, false);
+                    if (addr < 0) {
+                        return;
+                    }
+                    m_registers[arg1] = m_RAM.read(addr);
                     break;
                 case SAVE:
-                    addr = m_registers[instr[2]] + m_registers[BASE];
+                    addr = m_registers[arg2] + m_registers[BASE];
+                    if (!validMemory(addr)) {
+                        m_TH.interruptIllegalMemoryAccess(addr);
+                        return;
+                    }
+                    addr = translate(addr, true);
+                    if (addr < 0) {
+                        return;
+                    }
+                    m_RAM.write(addr, m_registers[arg1]);
+                    break;
+                case CAS:
+                    addr = m_registers[arg2] + m_registers[BASE];
                     if (!validMemory(addr)) {
                         m_TH.interruptIllegalMemoryAccess(addr);
                         return;
                     }
-                    m_RAM.write(addr, m_registers[instr[1]]);
+                    addr = translate(addr, true);
+                    if (addr < 0) {
+                        return;
+                    }
+                    m_registers[arg1] = m_RAM.compareAndSwap(addr,
+                            m_registers[arg1], m_registers[arg3]);
+                    break;
+                case FETCH_ADD:
+                    addr = m_registers[arg2] + m_registers[BASE];
+                    if (!validMemory(addr)) {
+                        m_TH.interruptIllegalMemoryAccess(addr);
+                        return;
+                    }
+                    addr = translate(addr, true);
+                    if (addr < 0) {
+                        return;
+                    }
+                    m_registers[arg1] = m_RAM.fetchAndAdd(addr,
+                            m_registers[arg3]);
                     break;
                 case TRAP:
                     m_TH.systemCall();
+                    if (m_halted) {
+                        return;
+                    }
+                    atHead = true;
                     break;
                 default: // This is bad. Why did this happen to me?
-                    m_TH.interruptIllegalInstruction(instr);
+                    m_TH.interruptIllegalInstruction(m_RAM.fetch(pc));
                     return;
             }//switch
 
@@ -453,5 +1010,200 @@ public class CPU
         }
 
     }//run
+
+    /**
+     * runBlock
+     *
+     * executes a basic block that has been compiled to a JVM class (see
+     * {@link BlockCompiler}).  This has the same effect as running each of its
+     * instructions through the interpreter in {@link #run} but skips the
+     * decoding and the PC bounds check after every instruction.  The
+     * caller is responsible for making sure the entire block lies within BASE
+     * and LIM.
+     *
+     * @param b the block to run
+     * @return false if the CPU must stop running (see {@link #run})
+     */
+    private boolean runBlock(BlockCache.Block b)
+    {
+        int uncounted = b.run(this, m_registers);
+        if (uncounted < 0) {
+            return false;
+        }
+        m_instrCount += uncounted;
+        return checkPC();
+    }//runBlock
+
+    /**
+     * execute
+     *
+     * is called by a translated block (see {@link BlockCompiler}) to run an
+     * instruction that uses RAM or the trap handler: LOAD, SAVE, CAS,
+     * FETCH_ADD, PUSH, POP, TRAP or a DIV by zero.  The PC must point at the
+     * instruction.  Moving the PC on afterwards is left to the block.
+     *
+     * @param retired the number of instructions the block has run (including
+     *                this one) that have not been counted yet
+     * @return false if the CPU must stop running (see {@link #run})
+     */
+    boolean execute(int retired, int op, int arg1, int arg2, int arg3)
+    {
+        m_instrCount += retired;
+
+        int addr;
+        switch(op) {
+            case DIV:
+                m_TH.interruptDivideByZero();
+                return false;
+            case POP:
+                return popStack(arg1);
+            case PUSH:
+                return pushStack(m_registers[arg1]);
+            case LOAD:
+                addr = dataAddress(arg2, false);
+                if (addr < 0) {
+                    return false;
+                }
+                m_registers[arg1] = m_RAM.read(addr);
+                return true;
+            case SAVE:
+                addr = dataAddress(arg2, true);
+                if (addr < 0) {
+                    return false;
+                }
+                m_RAM.write(addr, m_registers[arg1]);
+                return true;
+            case CAS:
+                addr = dataAddress(arg2, true);
+                if (addr < 0) {
+                    return false;
+                }
+                m_registers[arg1] = m_RAM.compareAndSwap(addr,
+                        m_registers[arg1], m_registers[arg3]);
+                return true;
+            case FETCH_ADD:
+                addr = dataAddress(arg2, true);
+                if (addr < 0) {
+                    return false;
+                }
+                m_registers[arg1] = m_RAM.fetchAndAdd(addr, m_registers[arg3]);
+                return true;
+            case TRAP:
+                m_TH.systemCall();
+                return !m_halted;
+            default:
+                m_TH.interruptIllegalInstruction(new int[] { op, arg1, arg2, arg3 });
+                return false;
+        }//switch
+    }//execute
+
+    /**
+     * dataAddress
+     *
+     * finds where in RAM the word a LOAD, SAVE, CAS or FETCH_ADD uses is
+     *
+     * @param reg   the register holding its logical address
+     * @param write true if the word is about to be written
+     * @return the physical address -OR- -1 if the address is outside BASE
+     *         and LIM or its page fault could not be handled (the trap
+     *         handler has already been told)
+     */
+    private int dataAddress(int reg, boolean write)
+    {
+        int addr = m_registers[reg] + m_registers[BASE];
+        if (!validMemory(addr)) {
+            m_TH.interruptIllegalMemoryAccess(addr);
+            return -1;
+        }
+        return translate(addr, write);
+    }//dataAddress
+
+    /**
+     * handleInterrupts
+     *
+     * raises an I/O completion interrupt for each device request that is
+     * done and then the timer interrupt if the quantum is over.  The trap
+     * handler is expected to start a new quantum after a timer interrupt.
+     *
+     * @return false if the CPU was halted by a trap handler
+     */
+    private boolean handleInterrupts()
+    {
+        if (!raiseIOInterrupts()) {
+            return false;
+        }
+
+        if (m_instrCount >= m_quantumEnd) {
+            m_quantumEnd = Long.MAX_VALUE;
+            m_TH.interruptClock();
+            if (m_halted) {
+                return false;
+            }
+        }
+
+        m_nextEvent = Math.min(m_quantumEnd, m_IC.getNextTime());
+        return true;
+    }//handleInterrupts
+
+    /**
+     * raiseIOInterrupts
+     *
+     * raises an I/O completion interrupt for each device request that is
+     * done
+     *
+     * @return false if the CPU was halted by a trap handler
+     */
+    private boolean raiseIOInterrupts()
+    {
+        AsyncDevice.Request r;
+        while ((r = m_IC.poll(m_instrCount)) != null) {
+            if (r.write) {
+                m_TH.interruptIOWriteComplete(r);
+            } else {
+                m_TH.interruptIOReadComplete(r);
+            }
+            if (m_halted) {
+                return false;
+            }
+        }
+        return true;
+    }//raiseIOInterrupts
+
+    /**
+     * idle
+     *
+     * is called by the OS when no process can run until a device finishes a
+     * request.  Rather than running instructions the CPU moves its
+     * instruction count ahead to when the next request is done and raises
+     * the I/O completion interrupts that are then due.
+     *
+     * @return the number of instructions the CPU was idle for
+     */
+    public long idle()
+    {
+        long start = m_instrCount;
+        if (m_IC.isBusy()) {
+            m_instrCount = Math.max(m_instrCount, m_IC.getNextTime());
+            raiseIOInterrupts();
+        }
+        m_nextEvent = Math.min(m_quantumEnd, m_IC.getNextTime());
+        return m_instrCount - start;
+    }//idle
+
+    /**
+     * checkPC
+     *
+     * makes sure the PC is within BASE and LIM after a block has run
+     *
+     * @return false if the CPU must stop running because it isn't
+     */
+    private boolean checkPC()
+    {
+        if (!validMemory(m_registers[BASE] + m_registers[PC])) {
+            m_TH.interruptIllegalMemoryAccess(m_registers[BASE] + m_registers[PC]);
+            return false;
+        }
+        return true;
+    }//checkPC
     
 };//class CPU
@@ -0,0 +1,103 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This policy (also known as second chance) sweeps a "clock hand" around the
+ * frames.  A page whose referenced bit is set has the bit cleared and is
+ * passed over; the first page found with the bit clear is evicted.
+ *
+ * @see ReplacementPolicy
+ */
+public class ClockReplacement implements ReplacementPolicy
+{
+    /**
+     * which frames are in use
+     */
+    private boolean m_inUse[] = null;
+
+    /**
+     * the number of frames in use
+     */
+    private int m_count = 0;
+
+    /**
+     * the next frame the hand will look at
+     */
+    private int m_hand = 0;
+
+    /**
+     * ClockReplacement ctor
+     *
+     * @param numFrames the number of frames in RAM
+     */
+    public ClockReplacement(int numFrames)
+    {
+        m_inUse = new boolean[numFrames];
+    }
+
+    /**
+     * add
+     *
+     * @see ReplacementPolicy#add
+     */
+    public void add(int frame, long now)
+    {
+        if (!m_inUse[frame])
+        {
+            m_inUse[frame] = true;
+            m_count++;
+        }
+    }//add
+
+    /**
+     * remove
+     *
+     * @see ReplacementPolicy#remove
+     */
+    public void remove(int frame)
+    {
+        if (m_inUse[frame])
+        {
+            m_inUse[frame] = false;
+            m_count--;
+        }
+    }//remove
+
+    /**
+     * victim
+     *
+     * @see ReplacementPolicy#victim
+     */
+    public int victim(FrameTable frames, long now)
+    {
+        if (m_count == 0)
+        {
+            return -1;
+        }
+
+        //Every page has its bit cleared on the first lap so this ends
+        //during the second one at the latest
+        while (true)
+        {
+            int frame = m_hand;
+            m_hand = (m_hand + 1) % m_inUse.length;
+            if (m_inUse[frame] && !frames.testAndClearReferenced(frame))
+            {
+                remove(frame);
+                return frame;
+            }
+        }
+    }//victim
+
+    /**
+     * getName
+     *
+     * @see ReplacementPolicy#getName
+     */
+    public String getName()
+    {
+        return "Clock";
+    }
+
+};//class ClockReplacement
@@ -0,0 +1,281 @@
+package sos;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * This class stores the simulated RAM so that it can be shared by CPUs
+ * running in different threads.  Reading a single word has acquire semantics
+ * and writing one has release semantics, so a value written by one core is
+ * seen by another once that core reads it (just like real hardware with a
+ * coherent cache) without any locking.
+ *
+ * Multi-word operations (e.g., fetching an instruction) lock the stripes of
+ * memory they touch so that they never see half of another multi-word
+ * operation.  Each stripe has its own lock so cores working in different
+ * parts of RAM don't wait for each other.  Single word reads and writes do
+ * not take the locks.
+ *
+ * @see MemoryBackend
+ * @see RAM
+ */
+public class ConcurrentMemory implements MemoryBackend
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    /**
+     * log2 of the number of words covered by each stripe
+     */
+    public static final int STRIPE_SHIFT = 6;
+
+    /**
+     * the default number of locks (a power of two)
+     */
+    public static final int DEFAULT_LOCKS = 64;
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * This array contains the simulated RAM itself
+     **/
+    private AtomicIntegerArray m_mem = null;
+
+    /**
+     * the locks for the stripes.  Stripe i uses lock (i & m_mask).
+     */
+    private ReentrantLock m_locks[] = null;
+
+    /**
+     * used to turn a stripe number into a lock index (number of locks - 1)
+     */
+    private int m_mask = 0;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * ConcurrentMemory ctor
+     *
+     * @param size number of integers ("words") in ram
+     */
+    public ConcurrentMemory(int size)
+    {
+        this(size, DEFAULT_LOCKS);
+    }//ctor
+
+    /**
+     * ConcurrentMemory ctor
+     *
+     * @param size     number of integers ("words") in ram
+     * @param numLocks the number of locks used for multi-word operations.
+     *                 This is rounded up to a power of two.  1 makes every
+     *                 multi-word operation wait for every other one.
+     */
+    public ConcurrentMemory(int size, int numLocks)
+    {
+        m_mem = new AtomicIntegerArray(size);
+
+        int n = 1;
+        while (n < numLocks)
+        {
+            n <<= 1;
+        }
+        m_mask = n - 1;
+        m_locks = new ReentrantLock[n];
+        for(int i = 0; i < n; i++)
+        {
+            m_locks[i] = new ReentrantLock();
+        }
+    }//ctor
+
+    /**
+     * getSize
+     *
+     * @return the number of integers ("words") this backend holds
+     */
+    public long getSize()
+    {
+        return m_mem.length();
+    }
+
+    /**
+     * get
+     *
+     * @param addr the location to retrieve from
+     * @return the value at the given location
+     */
+    public int get(long addr)
+    {
+        return m_mem.get((int)addr);
+    }
+
+    /**
+     * put
+     *
+     * @param addr the location to write to
+     * @param val  the value to write
+     */
+    public void put(long addr, int val)
+    {
+        m_mem.lazySet((int)addr, val);
+    }
+
+    /**
+     * get
+     *
+     * copies a run of consecutive words out of memory
+     */
+    public void get(long addr, int[] dest, int off, int len)
+    {
+        int a = (int)addr;
+        lock(a, len);
+        try
+        {
+            for(int i = 0; i < len; i++)
+            {
+                dest[off + i] = m_mem.get(a + i);
+            }
+        }
+        finally
+        {
+            unlock(a, len);
+        }
+    }//get
+
+    /**
+     * put
+     *
+     * copies a run of consecutive words into memory
+     */
+    public void put(long addr, int[] src, int off, int len)
+    {
+        int a = (int)addr;
+        lock(a, len);
+        try
+        {
+            for(int i = 0; i < len; i++)
+            {
+                m_mem.lazySet(a + i, src[off + i]);
+            }
+        }
+        finally
+        {
+            unlock(a, len);
+        }
+    }//put
+
+    /**
+     * compareAndSwap
+     *
+     * atomically replaces the value at a location if it holds the expected
+     * value
+     */
+    public int compareAndSwap(long addr, int expect, int update)
+    {
+        while (true)
+        {
+            int old = m_mem.get((int)addr);
+            if ((old != expect) || m_mem.compareAndSet((int)addr, old, update))
+            {
+                return old;
+            }
+        }
+    }//compareAndSwap
+
+    /**
+     * getAndAdd
+     *
+     * atomically adds to the value at a location
+     */
+    public int getAndAdd(long addr, int delta)
+    {
+        return m_mem.getAndAdd((int)addr, delta);
+    }
+
+    /**
+     * covers
+     *
+     * @param lock the index of a lock
+     * @param addr the first word of a run
+     * @param len  the number of words in the run
+     * @return true iff the lock guards any stripe in the run
+     */
+    private boolean covers(int lock, int addr, int len)
+    {
+        int first = addr >>> STRIPE_SHIFT;
+        int last = (addr + len - 1) >>> STRIPE_SHIFT;
+        return ((lock - first) & m_mask) <= last - first;
+    }
+
+    /**
+     * lock
+     *
+     * locks every stripe of a run of words.  When there is more than one the
+     * locks are always taken in the same order so that two operations can't
+     * deadlock.
+     *
+     * @param addr the first word of the run
+     * @param len  the number of words in the run
+     */
+    private void lock(int addr, int len)
+    {
+        if (len <= 0)
+        {
+            return;
+        }
+
+        //Most runs (e.g., an instruction) fit in a single stripe
+        int first = addr >>> STRIPE_SHIFT;
+        if (first == (addr + len - 1) >>> STRIPE_SHIFT)
+        {
+            m_locks[first & m_mask].lock();
+            return;
+        }
+
+        for(int i = 0; i < m_locks.length; i++)
+        {
+            if (covers(i, addr, len))
+            {
+                m_locks[i].lock();
+            }
+        }
+    }//lock
+
+    /**
+     * unlock
+     *
+     * releases the locks taken by {@link #lock}
+     *
+     * @param addr the first word of the run
+     * @param len  the number of words in the run
+     */
+    private void unlock(int addr, int len)
+    {
+        if (len <= 0)
+        {
+            return;
+        }
+
+        int first = addr >>> STRIPE_SHIFT;
+        if (first == (addr + len - 1) >>> STRIPE_SHIFT)
+        {
+            m_locks[first & m_mask].unlock();
+            return;
+        }
+
+        for(int i = m_locks.length - 1; i >= 0; i--)
+        {
+            if (covers(i, addr, len))
+            {
+                m_locks[i].unlock();
+            }
+        }
+    }//unlock
+
+};//class ConcurrentMemory
@@ -14,6 +14,17 @@ public class ConsoleDevice implements Device
 {
     private int m_id = -999;           // the OS assigned device ID
 
+    /**
+     * where the lines written to the console are collected -OR- null to
+     * print each one as it is written
+     */
+    private OutputBuffer m_output = null;
+
+    /**
+     * the start of each line written to the console
+     */
+    private static final byte[] PREFIX = OutputBuffer.toBytes("CONSOLE: ");
+
     /**
      * getId
      *
@@ -35,6 +46,19 @@ public class ConsoleDevice implements Device
     {
         m_id = id;
     }
+
+    /**
+     * setOutputBuffer
+     *
+     * makes the console collect its output in a buffer instead of printing
+     * each value as it is written
+     *
+     * @param output the buffer -OR- null to print each value
+     */
+    public void setOutputBuffer(OutputBuffer output)
+    {
+        m_output = output;
+    }
     
     /**
      * isSharable
@@ -102,6 +126,11 @@ public class ConsoleDevice implements Device
      */
     public void write(int addr /*not used*/, int data)
     {
+        if (m_output != null)
+        {
+            m_output.println(PREFIX, data);
+            return;
+        }
         System.out.println("CONSOLE: " + data);
     }
     
@@ -0,0 +1,308 @@
+package sos;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This class caches instructions that the CPU has already fetched and
+ * decoded.  Each entry is keyed by the physical address of the instruction
+ * and holds its opcode and operands after they have been validated, so the
+ * CPU does not have to copy the instruction out of RAM (or check its register
+ * operands) every time it executes it.
+ *
+ * The cache is direct mapped.  The RAM notifies the cache whenever a word is
+ * written so that any entry decoded from that word is thrown away.  With more
+ * than one core the write may come from another thread, so the tags are kept
+ * in an atomic array.  Only the CPU that owns the cache decodes into it, and
+ * it sets an entry's tag before reading the instruction from RAM: a write
+ * from another core either comes before that read or finds the tag and
+ * clears it.  That way neither {@link #lookup} nor a write to a word that
+ * isn't cached takes a lock.
+ *
+ * @see CPU
+ * @see RAM
+ */
+public class DecodeCache implements RAM.CodeCache
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    //These constants define the layout of a single entry in m_entries
+    public static final int OP     = 0;    // opcode (or ILLEGAL)
+    public static final int ARG1   = 1;    // first operand
+    public static final int ARG2   = 2;    // second operand
+    public static final int ARG3   = 3;    // third operand
+    public static final int STRIDE = 4;    // number of ints in an entry
+
+    /**
+     * the opcode stored in an entry whose instruction failed validation
+     */
+    public static final int ILLEGAL = -1;
+
+    /**
+     * the tag of an entry that does not hold an instruction
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * the number of entries used by {@link CPU} unless told otherwise
+     */
+    public static final int DEFAULT_SIZE = 4096;
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * all of the entries stored back to back (see STRIDE)
+     */
+    private int m_entries[] = null;
+
+    /**
+     * the physical address of the instruction held by each entry (or EMPTY).
+     * An entry is only used once its tag has been set, so its other fields
+     * are always written first.
+     */
+    private AtomicIntegerArray m_tags = null;
+
+    /**
+     * used to turn an address into an entry number (number of entries - 1)
+     */
+    private int m_mask = 0;
+
+    /**
+     * scratch space used when reading an instruction out of RAM
+     */
+    private int m_instr[] = new int[CPU.INSTRSIZE];
+
+    /**
+     * the number of instructions that have been decoded (cache misses)
+     */
+    private long m_misses = 0;
+
+    /**
+     * the number of entries thrown away because their words were written
+     */
+    private long m_invalidations = 0;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * DecodeCache ctor
+     *
+     * @param size the number of entries.  This is rounded up to a power of
+     *             two.
+     */
+    public DecodeCache(int size)
+    {
+        int numEntries = 1;
+        while (numEntries < size)
+        {
+            numEntries <<= 1;
+        }
+        m_mask = numEntries - 1;
+        m_entries = new int[numEntries * STRIDE];
+        m_tags = new AtomicIntegerArray(numEntries);
+        for(int i = 0; i < numEntries; i++)
+        {
+            m_tags.set(i, EMPTY);
+        }
+    }//DecodeCache ctor
+
+    /**
+     * getEntries
+     *
+     * @return the array holding every entry.  An offset returned by {@link
+     *         #lookup} or {@link #decode} indexes into this array.
+     */
+    public int[] getEntries()
+    {
+        return m_entries;
+    }
+
+    /**
+     * getMisses
+     *
+     * @return the number of instructions that have been decoded
+     */
+    public long getMisses()
+    {
+        return m_misses;
+    }
+
+    /**
+     * getInvalidations
+     *
+     * @return the number of entries discarded because of writes to RAM
+     */
+    public long getInvalidations()
+    {
+        return m_invalidations;
+    }
+
+    /**
+     * indexOf
+     *
+     * @param addr a physical address
+     * @return the number of the only entry that may hold that address
+     */
+    private int indexOf(int addr)
+    {
+        //Instructions are INSTRSIZE words apart so drop the low bits to keep
+        //consecutive instructions in consecutive entries
+        return (addr >>> 2) & m_mask;
+    }
+
+    /**
+     * lookup
+     *
+     * @param addr the physical address of an instruction
+     * @return the offset of the entry for that instruction in {@link
+     *         #getEntries} -OR- -1 if it is not cached
+     */
+    public int lookup(int addr)
+    {
+        int i = indexOf(addr);
+        if (m_tags.get(i) == addr)
+        {
+            return i * STRIDE;
+        }
+        return -1;
+    }//lookup
+
+    /**
+     * decode
+     *
+     * reads the instruction at a given address from RAM, validates it and
+     * stores it in the cache (replacing whatever was in its entry).  An
+     * unknown opcode or an operand that is not a valid register index causes
+     * the entry's opcode to be set to {@link #ILLEGAL}.
+     *
+     * @param addr the physical address of the instruction
+     * @param ram  the RAM to read the instruction from
+     * @return the offset of the new entry in {@link #getEntries}
+     */
+    public int decode(int addr, RAM ram)
+    {
+        //The tag is set first so that a write to the instruction from
+        //another core is either seen by the fetch or clears the new entry
+        //(see the class comment)
+        int i = indexOf(addr);
+        int e = i * STRIDE;
+        m_tags.set(i, addr);
+        ram.fetch(addr, m_instr);
+        m_misses++;
+
+        m_entries[e + OP]   = isValid(m_instr) ? m_instr[0] : ILLEGAL;
+        m_entries[e + ARG1] = m_instr[1];
+        m_entries[e + ARG2] = m_instr[2];
+        m_entries[e + ARG3] = m_instr[3];
+
+        return e;
+    }//decode
+
+    /**
+     * invalidate
+     *
+     * discards any entry that was decoded from the word at a given address.
+     * This is called by the RAM whenever a word is written.
+     *
+     * @param addr the physical address that was written
+     */
+    public void invalidate(int addr)
+    {
+        //The word may belong to any of the INSTRSIZE instructions that
+        //start at or just before it
+        for(int start = addr - CPU.INSTRSIZE + 1; start <= addr; start++)
+        {
+            int i = indexOf(start);
+            if (m_tags.get(i) == start)
+            {
+                discard(i, start);
+            }
+        }
+    }//invalidate
+
+    /**
+     * discard
+     *
+     * empties an entry if it still holds the given instruction
+     *
+     * @param i    the entry number
+     * @param addr the physical address of the instruction
+     */
+    private synchronized void discard(int i, int addr)
+    {
+        if (m_tags.compareAndSet(i, addr, EMPTY))
+        {
+            m_invalidations++;
+        }
+    }//discard
+
+    /**
+     * clear
+     *
+     * discards every entry in the cache
+     */
+    public void clear()
+    {
+        for(int i = 0; i < m_tags.length(); i++)
+        {
+            m_tags.set(i, EMPTY);
+        }
+    }//clear
+
+    /**
+     * isRegister
+     *
+     * @param r an instruction operand
+     * @return true iff the operand is a valid register index
+     */
+    private static boolean isRegister(int r)
+    {
+        return (r >= 0) && (r < CPU.NUMREG);
+    }
+
+    /**
+     * isValid
+     *
+     * determines whether an instruction has a known opcode and whether each
+     * of its register operands names an actual register.
+     *
+     * @param instr the instruction to check
+     * @return true iff the CPU can safely execute the instruction
+     */
+    public static boolean isValid(int[] instr)
+    {
+        switch(instr[0])
+        {
+            case CPU.SET:
+            case CPU.POP:
+            case CPU.PUSH:
+                return isRegister(instr[1]);
+            case CPU.ADD:
+            case CPU.SUB:
+            case CPU.MUL:
+            case CPU.DIV:
+            case CPU.CAS:
+            case CPU.FETCH_ADD:
+                return isRegister(instr[1]) && isRegister(instr[2])
+                    && isRegister(instr[3]);
+            case CPU.COPY:
+            case CPU.BNE:
+            case CPU.BLT:
+            case CPU.LOAD:
+            case CPU.SAVE:
+                return isRegister(instr[1]) && isRegister(instr[2]);
+            case CPU.BRANCH:
+            case CPU.TRAP:
+                return true;
+            default:
+                return false;
+        }//switch
+    }//isValid
+
+};//class DecodeCache
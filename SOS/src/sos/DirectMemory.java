@@ -0,0 +1,197 @@
+package sos;
+
+import java.util.*;
+import java.nio.*;
+
+/**
+ * This class stores the simulated RAM outside of the Java heap in direct
+ * buffers so that very large memories cost neither heap space nor garbage
+ * collection time.  Memory is split into chunks of CHUNK_WORDS words (a
+ * single buffer cannot exceed 2^31 bytes) and each chunk is only allocated
+ * the first time it is written.  Reading a chunk that has never been written
+ * returns zero, so a large memory does not need to be cleared up front.
+ *
+ * @see MemoryBackend
+ * @see RAM
+ */
+public class DirectMemory implements MemoryBackend
+{
+    /**
+     * log2 of the number of words in a chunk
+     */
+    public static final int CHUNK_SHIFT = 24;
+
+    /**
+     * the number of words in a chunk (64MB worth)
+     */
+    public static final long CHUNK_WORDS = 1L << CHUNK_SHIFT;
+
+    /**
+     * used to find a word's position within its chunk
+     */
+    private static final long CHUNK_MASK = CHUNK_WORDS - 1;
+
+    /**
+     * The size of the memory (expressed as a number of integers)
+     **/
+    private long m_size = 0;
+
+    /**
+     * The chunks of memory.  A chunk is null until it is first written.
+     **/
+    private IntBuffer m_chunks[] = null;
+
+    /**
+     * the constructor does nothing special (no memory is allocated yet)
+     *
+     * @param size number of integers ("words") in ram
+     */
+    public DirectMemory(long size)
+    {
+        m_size = size;
+        m_chunks = new IntBuffer[(int)((size + CHUNK_WORDS - 1) >>> CHUNK_SHIFT)];
+    }//ctor
+
+    /**
+     * chunkSize
+     *
+     * @param chunk the index of a chunk
+     * @return the number of words in that chunk (the last one may be short)
+     */
+    protected int chunkSize(int chunk)
+    {
+        return (int)Math.min(CHUNK_WORDS, m_size - ((long)chunk << CHUNK_SHIFT));
+    }
+
+    /**
+     * createChunk
+     *
+     * allocates the storage for a chunk
+     *
+     * @param chunk the index of the chunk
+     * @return the storage for the chunk
+     */
+    protected IntBuffer createChunk(int chunk)
+    {
+        return ByteBuffer.allocateDirect(chunkSize(chunk) * 4)
+            .order(ByteOrder.nativeOrder()).asIntBuffer();
+    }//createChunk
+
+    /**
+     * getChunk
+     *
+     * @param chunk the index of a chunk
+     * @param create if true the chunk is allocated if it doesn't exist yet
+     * @return the storage for the chunk -OR- null if it hasn't been created
+     */
+    protected IntBuffer getChunk(int chunk, boolean create)
+    {
+        IntBuffer buf = m_chunks[chunk];
+        if ((buf == null) && create)
+        {
+            buf = createChunk(chunk);
+            m_chunks[chunk] = buf;
+        }
+        return buf;
+    }//getChunk
+
+    /**
+     * getSize
+     *
+     * @return the number of integers ("words") this backend holds
+     */
+    public long getSize()
+    {
+        return m_size;
+    }
+
+    /**
+     * get
+     *
+     * @param addr the location to retrieve from
+     * @return the value at the given location
+     */
+    public int get(long addr)
+    {
+        if ((addr < 0) || (addr >= m_size))
+        {
+            throw new IndexOutOfBoundsException("address " + addr);
+        }
+        IntBuffer buf = getChunk((int)(addr >>> CHUNK_SHIFT), false);
+        if (buf == null)
+        {
+            return 0;
+        }
+        return buf.get((int)(addr & CHUNK_MASK));
+    }//get
+
+    /**
+     * put
+     *
+     * @param addr the location to write to
+     * @param val  the value to write
+     */
+    public void put(long addr, int val)
+    {
+        if ((addr < 0) || (addr >= m_size))
+        {
+            throw new IndexOutOfBoundsException("address " + addr);
+        }
+        getChunk((int)(addr >>> CHUNK_SHIFT), true).put((int)(addr & CHUNK_MASK), val);
+    }//put
+
+    /**
+     * get
+     *
+     * copies a run of consecutive words out of memory
+     */
+    public void get(long addr, int[] dest, int off, int len)
+    {
+        for(int i = 0; i < len; i++)
+        {
+            dest[off + i] = get(addr + i);
+        }
+    }//get
+
+    /**
+     * put
+     *
+     * copies a run of consecutive words into memory
+     */
+    public void put(long addr, int[] src, int off, int len)
+    {
+        for(int i = 0; i < len; i++)
+        {
+            put(addr + i, src[off + i]);
+        }
+    }//put
+
+    /**
+     * compareAndSwap
+     *
+     * replaces the value at a location if it holds the expected value.  This
+     * backend is only used by one CPU so nothing more is needed.
+     */
+    public int compareAndSwap(long addr, int expect, int update)
+    {
+        int old = get(addr);
+        if (old == expect)
+        {
+            put(addr, update);
+        }
+        return old;
+    }//compareAndSwap
+
+    /**
+     * getAndAdd
+     *
+     * adds to the value at a location
+     */
+    public int getAndAdd(long addr, int delta)
+    {
+        int old = get(addr);
+        put(addr, old + delta);
+        return old;
+    }//getAndAdd
+
+};//class DirectMemory
@@ -0,0 +1,362 @@
+package sos;
+
+/**
+ * This class simulates a sharable, readable and writeable disk.  The disk
+ * has one surface with a single track per cylinder.  Each track is divided
+ * into sectors and a word's address decides which cylinder and sector it is
+ * in.  Before a request can be served the arm must seek to the word's
+ * cylinder and then wait for its sector to rotate under the head, so the
+ * order the queued requests are served in matters.  The disk can serve them
+ * in the order they arrived (FCFS), closest cylinder first (SSTF), sweeping
+ * back and forth across the disk (SCAN) or sweeping in one direction and
+ * jumping back to the lowest request (C-LOOK).
+ *
+ * Times are measured in instructions (see {@link InterruptController}).
+ *
+ * @see AsyncDevice
+ */
+public class DiskDevice extends AsyncDevice
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    //These constants select the order queued requests are served in
+    public static final int FCFS   = 0; /* first come, first served */
+    public static final int SSTF   = 1; /* shortest seek time first */
+    public static final int SCAN   = 2; /* elevator (to the edge and back) */
+    public static final int C_LOOK = 3; /* one direction, then jump back */
+
+    /**
+     * the names of the scheduling algorithms (indexed by the constants
+     * above)
+     */
+    private static final String NAMES[] = { "FCFS", "SSTF", "SCAN", "C-LOOK" };
+
+    //These constants define the geometry of the disk
+    public static final int DEFAULT_CYLINDERS = 200;
+    public static final int SECTORS_PER_TRACK = 16;
+    public static final int WORDS_PER_SECTOR  = 4;
+    public static final int WORDS_PER_CYLINDER = SECTORS_PER_TRACK
+                                                 * WORDS_PER_SECTOR;
+
+    //These constants define how long the disk takes to do things (in
+    //instructions).  A seek costs SEEK_START plus SEEK_PER_CYLINDER for each
+    //cylinder the arm moves.  A sector passes under the head every
+    //SECTOR_TIME and is transferred while it does.
+    public static final int SEEK_START        = 100;
+    public static final int SEEK_PER_CYLINDER = 5;
+    public static final int SECTOR_TIME       = 20;
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the contents of the disk
+     */
+    private int m_data[] = null;
+
+    /**
+     * the number of cylinders
+     */
+    private int m_cylinders = 0;
+
+    /**
+     * the scheduling algorithm (one of the constants above)
+     */
+    private int m_policy = FCFS;
+
+    /**
+     * the cylinder the arm is over
+     */
+    private int m_head = 0;
+
+    /**
+     * the direction the arm is sweeping in (1 = up, -1 = down).  Only used
+     * by SCAN.
+     */
+    private int m_direction = 1;
+
+    /**
+     * the number of cylinders the arm must move to reach the request chosen
+     * by the last call to {@link #nextRequest}
+     */
+    private int m_travel = 0;
+
+    /**
+     * the number of requests served and the total number of cylinders the
+     * arm moved and instructions spent waiting for sectors to rotate under
+     * the head while serving them
+     */
+    private long m_served = 0;
+    private long m_totalSeek = 0;
+    private long m_totalRotation = 0;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * DiskDevice ctor
+     *
+     * creates a disk with DEFAULT_CYLINDERS cylinders
+     *
+     * @param policy the order queued requests are served in (e.g., SCAN)
+     */
+    public DiskDevice(int policy)
+    {
+        this(DEFAULT_CYLINDERS, policy);
+    }//ctor
+
+    /**
+     * DiskDevice ctor
+     *
+     * @param cylinders the number of cylinders
+     * @param policy    the order queued requests are served in (e.g., SCAN)
+     */
+    public DiskDevice(int cylinders, int policy)
+    {
+        m_cylinders = cylinders;
+        m_policy = policy;
+        m_data = new int[cylinders * WORDS_PER_CYLINDER];
+    }//ctor
+
+    /**
+     * getSize
+     *
+     * @return the number of words the disk holds
+     */
+    public int getSize()
+    {
+        return m_data.length;
+    }
+
+    /**
+     * getPolicyName
+     *
+     * @return the name of the scheduling algorithm
+     */
+    public String getPolicyName()
+    {
+        return NAMES[m_policy];
+    }
+
+    /**
+     * isSharable
+     *
+     * any number of processes may use the disk at once
+     */
+    public boolean isSharable()
+    {
+        return true;
+    }
+
+    /**
+     * isReadable
+     *
+     * the disk can be read from
+     */
+    public boolean isReadable()
+    {
+        return true;
+    }
+
+    /**
+     * isWriteable
+     *
+     * the disk can be written to
+     */
+    public boolean isWriteable()
+    {
+        return true;
+    }
+
+    /**
+     * read
+     *
+     * @param addr the address of a word on the disk
+     * @return the word -OR- 0 if the address is not on the disk
+     */
+    public int read(int addr)
+    {
+        if ((addr < 0) || (addr >= m_data.length))
+        {
+            return 0;
+        }
+        return m_data[addr];
+    }//read
+
+    /**
+     * write
+     *
+     * stores a word.  Writes to addresses that are not on the disk are
+     * ignored.
+     *
+     * @param addr the address of a word on the disk
+     * @param data the value to store
+     */
+    public void write(int addr, int data)
+    {
+        if ((addr >= 0) && (addr < m_data.length))
+        {
+            m_data[addr] = data;
+        }
+    }//write
+
+    /**
+     * cylinderOf
+     *
+     * @param addr an address (which may not be on the disk)
+     * @return the cylinder the arm moves to for that address
+     */
+    private int cylinderOf(int addr)
+    {
+        int cyl = addr / WORDS_PER_CYLINDER;
+        return Math.max(0, Math.min(m_cylinders - 1, cyl));
+    }
+
+    /**
+     * nearest
+     *
+     * finds the queued request whose cylinder is closest to a position in a
+     * given direction.  Ties go to the request that arrived first.
+     *
+     * @param from the cylinder to measure from
+     * @param dir  1 to only look at cylinders at or above from, -1 to only
+     *             look at ones at or below it, 0 to look at all of them
+     * @return the request -OR- null if there is none in that direction
+     */
+    private Request nearest(int from, int dir)
+    {
+        Request best = null;
+        int bestDist = Integer.MAX_VALUE;
+        for(Request r : m_queue)
+        {
+            int dist = cylinderOf(r.addr) - from;
+            if (dist * dir < 0)
+            {
+                continue;
+            }
+            dist = Math.abs(dist);
+            if (dist < bestDist)
+            {
+                best = r;
+                bestDist = dist;
+            }
+        }
+        return best;
+    }//nearest
+
+    /**
+     * nextRequest
+     *
+     * chooses the next request using the scheduling algorithm and works
+     * out how far the arm has to move to reach it
+     */
+    protected Request nextRequest()
+    {
+        if (m_queue.isEmpty())
+        {
+            return null;
+        }
+
+        Request r = null;
+        m_travel = 0;
+        switch (m_policy)
+        {
+            case SSTF:
+                r = nearest(m_head, 0);
+                break;
+
+            case SCAN:
+                r = nearest(m_head, m_direction);
+                if (r == null)
+                {
+                    //Finish the sweep at the edge of the disk and turn back
+                    int edge = (m_direction > 0) ? m_cylinders - 1 : 0;
+                    m_travel = Math.abs(edge - m_head);
+                    m_head = edge;
+                    m_direction = -m_direction;
+                    r = nearest(m_head, m_direction);
+                }
+                break;
+
+            case C_LOOK:
+                r = nearest(m_head, 1);
+                if (r == null)
+                {
+                    //Jump back to the lowest request and sweep up again
+                    r = nearest(0, 1);
+                }
+                break;
+
+            default:
+                r = m_queue.peek();
+                break;
+        }//switch
+
+        m_queue.remove(r);
+        int cyl = cylinderOf(r.addr);
+        m_travel += Math.abs(cyl - m_head);
+        m_head = cyl;
+
+        return r;
+    }//nextRequest
+
+    /**
+     * getServiceTime
+     *
+     * the time to seek to the request's cylinder, wait for its sector to
+     * come around and then transfer it
+     */
+    protected long getServiceTime(Request r)
+    {
+        long seek = 0;
+        if (m_travel > 0)
+        {
+            seek = SEEK_START + (long)SEEK_PER_CYLINDER * m_travel;
+        }
+
+        //The disk never stops spinning so the sector under the head depends
+        //only on the time
+        long now = getInterruptController().getTime() + seek;
+        int under = (int)((now / SECTOR_TIME) % SECTORS_PER_TRACK);
+        int sector = (Math.max(0, r.addr) / WORDS_PER_SECTOR) % SECTORS_PER_TRACK;
+        long rotation = ((sector - under + SECTORS_PER_TRACK) % SECTORS_PER_TRACK)
+                        * (long)SECTOR_TIME;
+
+        m_served++;
+        m_totalSeek += m_travel;
+        m_totalRotation += rotation;
+
+        return seek + rotation + SECTOR_TIME;
+    }//getServiceTime
+
+    /**
+     * getAverageSeekDistance
+     *
+     * @return the average number of cylinders the arm moved for each request
+     */
+    public double getAverageSeekDistance()
+    {
+        return (double)m_totalSeek / Math.max(1, m_served);
+    }
+
+    /**
+     * printStatistics
+     *
+     * outputs how well the scheduling algorithm did
+     */
+    public void printStatistics()
+    {
+        System.out.println("Disk (" + getPolicyName() + "): " + m_served
+                           + " requests, average seek distance "
+                           + String.format("%.1f", getAverageSeekDistance())
+                           + " cylinders, average rotational delay "
+                           + (m_totalRotation / Math.max(1, m_served))
+                           + " instructions, average latency "
+                           + getAverageLatency() + " instructions");
+    }//printStatistics
+
+};//class DiskDevice
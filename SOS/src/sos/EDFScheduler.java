@@ -0,0 +1,416 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This scheduler adds an earliest-deadline-first real-time class on top of
+ * another (best-effort) scheduler.  A process joins the real-time class via
+ * {@link SOS#SYSCALL_REALTIME} by declaring a period, a relative deadline and
+ * a budget (the most instructions it needs per period).  From then on it is
+ * released once per period and, while it has an unfinished job, it always
+ * runs ahead of every best-effort process.  Among the real-time processes the
+ * one whose current job has the earliest deadline runs first.  A job ends
+ * when the process yields or uses up its budget.
+ *
+ * A running process (real-time or not) is stopped when the next job is
+ * released so that the earliest deadline is always the one being worked on.
+ * A process is only admitted if the total density (budget divided by the
+ * shorter of its deadline and period) of all the real-time processes stays
+ * at or below MAX_DENSITY.  That is enough for every job that stays within
+ * its budget to meet its deadline (apart from the time the OS itself
+ * takes, which isn't counted) and leaves some of the CPU for the
+ * best-effort processes.
+ *
+ * Time is measured in instructions executed by the CPU.
+ *
+ * @see Scheduler
+ * @see SOS
+ */
+public class EDFScheduler implements Scheduler
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    /**
+     * the largest total density allowed for the real-time processes
+     */
+    public static final double MAX_DENSITY = 0.9;
+
+    //======================================================================
+    //Inner Classes
+    //----------------------------------------------------------------------
+
+    /**
+     * Task
+     *
+     * the real-time parameters and state of a process
+     */
+    public static class Task
+    {
+        /** the number of instructions between releases */
+        public int period;
+
+        /** the number of instructions after its release a job must finish */
+        public int deadline;
+
+        /** the number of instructions each job may run */
+        public int budget;
+
+        /** when the current job was (or will be) released */
+        public long release;
+
+        /** when the current job must be finished */
+        public long absDeadline;
+
+        /** the number of instructions the current job has run */
+        public long used = 0;
+
+        /** set when the process yields to signal that its job is done */
+        public boolean finished = false;
+
+        /** the number of jobs completed so far */
+        public long jobs = 0;
+
+        /** the number of jobs that finished after their deadline */
+        public long misses = 0;
+
+        /**
+         * @return the fraction of the CPU this task may need
+         */
+        public double getDensity()
+        {
+            return (double)budget / Math.min(deadline, period);
+        }
+    }//class Task
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the CPU whose instruction count is the clock
+     */
+    private CPU m_CPU = null;
+
+    /**
+     * schedules the processes that are not real-time
+     */
+    private Scheduler m_bestEffort = null;
+
+    /**
+     * real-time processes whose job has been released, earliest deadline
+     * first
+     */
+    private PriorityQueue<SOS.ProcessControlBlock> m_ready = null;
+
+    /**
+     * real-time processes waiting for their next release, earliest release
+     * first
+     */
+    private PriorityQueue<SOS.ProcessControlBlock> m_waiting = null;
+
+    /**
+     * the total density of the admitted processes
+     */
+    private double m_density = 0;
+
+    /**
+     * the number of processes refused admission
+     */
+    private int m_rejections = 0;
+
+    /**
+     * the number of jobs completed and the number of deadlines missed by
+     * processes that have exited
+     */
+    private long m_jobs = 0;
+    private long m_misses = 0;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * EDFScheduler ctor
+     *
+     * @param cpu        the CPU whose instruction count is used as the clock
+     * @param bestEffort the scheduler used for processes that are not
+     *                   real-time
+     */
+    public EDFScheduler(CPU cpu, Scheduler bestEffort)
+    {
+        m_CPU = cpu;
+        m_bestEffort = bestEffort;
+        m_ready = new PriorityQueue<SOS.ProcessControlBlock>(11,
+            new Comparator<SOS.ProcessControlBlock>()
+            {
+                public int compare(SOS.ProcessControlBlock a,
+                                   SOS.ProcessControlBlock b)
+                {
+                    return Long.signum(a.getRealTimeTask().absDeadline
+                                       - b.getRealTimeTask().absDeadline);
+                }
+            });
+        m_waiting = new PriorityQueue<SOS.ProcessControlBlock>(11,
+            new Comparator<SOS.ProcessControlBlock>()
+            {
+                public int compare(SOS.ProcessControlBlock a,
+                                   SOS.ProcessControlBlock b)
+                {
+                    return Long.signum(a.getRealTimeTask().release
+                                       - b.getRealTimeTask().release);
+                }
+            });
+    }//EDFScheduler ctor
+
+    /**
+     * admit
+     *
+     * makes a process real-time if that won't make the real-time processes
+     * unschedulable.  Its first job is released immediately and is only
+     * charged for the instructions run after this call.
+     *
+     * @param pi       the process (which must be Running)
+     * @param period   the number of instructions between releases
+     * @param deadline the number of instructions after a release that the
+     *                 job must finish by
+     * @param budget   the number of instructions each job may run
+     * @return true if the process was admitted
+     */
+    public boolean admit(SOS.ProcessControlBlock pi, int period, int deadline,
+                         int budget)
+    {
+        if ((period <= 0) || (deadline <= 0) || (budget <= 0)
+            || (pi.getRealTimeTask() != null))
+        {
+            m_rejections++;
+            return false;
+        }
+
+        Task t = new Task();
+        t.period = period;
+        t.deadline = deadline;
+        t.budget = budget;
+        if (m_density + t.getDensity() > MAX_DENSITY)
+        {
+            m_rejections++;
+            return false;
+        }
+        m_density += t.getDensity();
+
+        t.release = m_CPU.getInstructionCount();
+        t.absDeadline = t.release + deadline;
+
+        //The process' current burst started before it was admitted.  That
+        //part of the burst will be added to used when the process leaves the
+        //CPU so take it off now.
+        t.used = pi.getBurstStart() - t.release;
+        pi.setRealTimeTask(t);
+        return true;
+    }//admit
+
+    /**
+     * leave
+     *
+     * is called when a process exits so that its share of the CPU is
+     * available to others
+     *
+     * @param pi the process
+     */
+    public void leave(SOS.ProcessControlBlock pi)
+    {
+        Task t = pi.getRealTimeTask();
+        if (t == null)
+        {
+            return;
+        }
+        remove(pi);
+        m_density -= t.getDensity();
+        m_jobs += t.jobs;
+        m_misses += t.misses;
+        SOS.debugPrintln("Real-time process " + pi.getProcessId() + " completed "
+                         + t.jobs + " jobs and missed " + t.misses
+                         + " deadlines");
+    }//leave
+
+    /**
+     * endJob
+     *
+     * records that a process' current job is over and schedules its next
+     * release
+     */
+    private void endJob(Task t)
+    {
+        t.jobs++;
+        if (m_CPU.getInstructionCount() > t.absDeadline)
+        {
+            t.misses++;
+        }
+        t.release += t.period;
+        t.absDeadline = t.release + t.deadline;
+        t.used = 0;
+        t.finished = false;
+    }//endJob
+
+    /**
+     * add
+     *
+     * @see Scheduler#add
+     */
+    public void add(SOS.ProcessControlBlock pi)
+    {
+        Task t = pi.getRealTimeTask();
+        if (t == null)
+        {
+            m_bestEffort.add(pi);
+            return;
+        }
+
+        t.used += pi.getLastBurst();
+        if (t.finished || (t.used >= t.budget))
+        {
+            endJob(t);
+            m_waiting.add(pi);
+        }
+        else
+        {
+            m_ready.add(pi);
+        }
+    }//add
+
+    /**
+     * remove
+     *
+     * @see Scheduler#remove
+     */
+    public void remove(SOS.ProcessControlBlock pi)
+    {
+        if (pi.getRealTimeTask() == null)
+        {
+            m_bestEffort.remove(pi);
+        }
+        else if (!m_ready.remove(pi))
+        {
+            m_waiting.remove(pi);
+        }
+    }//remove
+
+    /**
+     * next
+     *
+     * @see Scheduler#next
+     */
+    public SOS.ProcessControlBlock next()
+    {
+        //Release every job whose time has come
+        long now = m_CPU.getInstructionCount();
+        while ((m_waiting.size() > 0)
+               && (m_waiting.peek().getRealTimeTask().release <= now))
+        {
+            m_ready.add(m_waiting.poll());
+        }
+
+        if (m_ready.size() > 0)
+        {
+            return m_ready.poll();
+        }
+        SOS.ProcessControlBlock pi = m_bestEffort.next();
+        if (pi == null)
+        {
+            //Nothing else to do so start the next job early
+            pi = m_waiting.poll();
+        }
+        return pi;
+    }//next
+
+    /**
+     * untilRelease
+     *
+     * @return the number of instructions until the next job is released
+     *         (at least 1) -OR- Long.MAX_VALUE if no process is waiting for
+     *         a release
+     */
+    private long untilRelease()
+    {
+        if (m_waiting.size() == 0)
+        {
+            return Long.MAX_VALUE;
+        }
+        long until = m_waiting.peek().getRealTimeTask().release
+            - m_CPU.getInstructionCount();
+        return Math.max(1, until);
+    }//untilRelease
+
+    /**
+     * getQuantum
+     *
+     * @return the rest of the budget for a real-time process or the
+     *         best-effort scheduler's quantum for any other process.  Either
+     *         way the process is stopped when the next job is released so
+     *         that {@link #next} can pick the earliest deadline again.
+     * @see Scheduler#getQuantum
+     */
+    public int getQuantum(SOS.ProcessControlBlock pi)
+    {
+        long untilRelease = untilRelease();
+
+        Task t = pi.getRealTimeTask();
+        if (t != null)
+        {
+            return (int)Math.min(Math.max(1, t.budget - t.used), untilRelease);
+        }
+
+        int quantum = m_bestEffort.getQuantum(pi);
+        if ((quantum <= 0) || (untilRelease < quantum))
+        {
+            quantum = (int)Math.min(untilRelease, Integer.MAX_VALUE);
+        }
+        return quantum;
+    }//getQuantum
+
+    /**
+     * setQuantum
+     *
+     * sets the quantum of the best-effort scheduler
+     *
+     * @see Scheduler#setQuantum
+     */
+    public void setQuantum(int instructions)
+    {
+        m_bestEffort.setQuantum(instructions);
+    }
+
+    /**
+     * size
+     *
+     * @see Scheduler#size
+     */
+    public int size()
+    {
+        return m_ready.size() + m_waiting.size() + m_bestEffort.size();
+    }
+
+    /**
+     * getName
+     *
+     * @see Scheduler#getName
+     */
+    public String getName()
+    {
+        return "EDF + " + m_bestEffort.getName();
+    }
+
+    /**
+     * printStatistics
+     *
+     * outputs the real-time class' totals
+     */
+    public void printStatistics()
+    {
+        System.out.println("Real-time: " + m_jobs + " jobs completed, "
+                           + m_misses + " deadlines missed, " + m_rejections
+                           + " processes refused admission");
+    }//printStatistics
+
+};//class EDFScheduler
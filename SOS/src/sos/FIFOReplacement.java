@@ -0,0 +1,59 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This policy evicts the page that has been in RAM the longest, no matter
+ * how recently it was used.
+ *
+ * @see ReplacementPolicy
+ */
+public class FIFOReplacement implements ReplacementPolicy
+{
+    /**
+     * the frames in use, in the order their pages were loaded
+     */
+    private LinkedList<Integer> m_frames = new LinkedList<Integer>();
+
+    /**
+     * add
+     *
+     * @see ReplacementPolicy#add
+     */
+    public void add(int frame, long now)
+    {
+        m_frames.addLast(frame);
+    }
+
+    /**
+     * remove
+     *
+     * @see ReplacementPolicy#remove
+     */
+    public void remove(int frame)
+    {
+        m_frames.remove(Integer.valueOf(frame));
+    }
+
+    /**
+     * victim
+     *
+     * @see ReplacementPolicy#victim
+     */
+    public int victim(FrameTable frames, long now)
+    {
+        Integer frame = m_frames.pollFirst();
+        return (frame == null) ? -1 : frame;
+    }
+
+    /**
+     * getName
+     *
+     * @see ReplacementPolicy#getName
+     */
+    public String getName()
+    {
+        return "FIFO";
+    }
+
+};//class FIFOReplacement
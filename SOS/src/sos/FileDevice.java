@@ -0,0 +1,468 @@
+package sos;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * This class simulates a sharable, readable and writeable block device whose
+ * contents are kept in a file on the host, so simulated programs can work
+ * with more data than the simulated RAM holds and the data is still there
+ * the next time the simulation runs.
+ *
+ * Each word lives at offset (4 * address) in the file.  The file is read and
+ * written a sector ({@link #SECTOR_WORDS} words) at a time through a cache
+ * of sectors.  Any sector can be kept in any entry of the cache and when it
+ * is full the least recently used sector is replaced, so a program that
+ * works through nearby addresses needs one host system call per sector
+ * rather than one per word (widely scattered addresses get little benefit).
+ * A sector that has been written is dirty until it is written back to the
+ * file, which happens when it is replaced, when {@link #flush} is called and
+ * (depending on the flush interval given to the constructor) after every so
+ * many writes.
+ *
+ * @see SwapFile
+ */
+public class FileDevice implements Device, Flushable, Closeable
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    /**
+     * the number of words in a sector
+     */
+    public static final int SECTOR_WORDS = 128;
+
+    /**
+     * the number of bytes in a sector
+     */
+    public static final int SECTOR_BYTES = SECTOR_WORDS * 4;
+
+    /**
+     * the default number of sectors in the cache
+     */
+    public static final int DEFAULT_CACHE_SECTORS = 64;
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the OS assigned device ID
+     */
+    private int m_id = -999;
+
+    /**
+     * the name of the file
+     */
+    private String m_fileName = null;
+
+    /**
+     * the file
+     **/
+    private RandomAccessFile m_file = null;
+
+    /**
+     * the file's channel (used for all reads and writes)
+     **/
+    private FileChannel m_channel = null;
+
+    /**
+     * the cached sectors
+     */
+    private int m_sectors[][] = null;
+
+    /**
+     * the number of the sector in each entry of the cache -OR- -1
+     */
+    private long m_tags[] = null;
+
+    /**
+     * whether each entry of the cache has been written since it was read
+     * from (or last written to) the file
+     */
+    private boolean m_dirty[] = null;
+
+    /**
+     * when each entry of the cache was last used (counted in accesses) -OR-
+     * 0 if it is empty
+     */
+    private long m_lastUse[] = null;
+
+    /**
+     * the number of times the cache has been accessed
+     */
+    private long m_accesses = 0;
+
+    /**
+     * the entry used by the last access (which is checked first)
+     */
+    private int m_last = 0;
+
+    /**
+     * the number of writes after which every dirty sector is written to the
+     * file -OR- 0 to leave them until they are evicted or flushed
+     */
+    private int m_flushInterval = 0;
+
+    /**
+     * the number of writes since the last flush
+     */
+    private int m_writesSinceFlush = 0;
+
+    /**
+     * used to move a sector between an int[] and the file
+     */
+    private ByteBuffer m_buffer = ByteBuffer.allocateDirect(SECTOR_BYTES);
+
+    /**
+     * the number of words read and written by the OS and the number of
+     * sectors read from and written to the file
+     */
+    private long m_wordReads = 0;
+    private long m_wordWrites = 0;
+    private long m_sectorReads = 0;
+    private long m_sectorWrites = 0;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * FileDevice ctor
+     *
+     * opens (or creates) the file with a cache of DEFAULT_CACHE_SECTORS
+     * sectors that are only written back when they are evicted or flushed
+     *
+     * @param fileName the name of the file
+     * @throws IOException if the file can not be opened
+     */
+    public FileDevice(String fileName) throws IOException
+    {
+        this(fileName, DEFAULT_CACHE_SECTORS, 0);
+    }//ctor
+
+    /**
+     * FileDevice ctor
+     *
+     * opens (or creates) the file.  Its contents are kept.
+     *
+     * @param fileName      the name of the file
+     * @param cacheSectors  the number of sectors to cache
+     * @param flushInterval the number of writes after which dirty sectors
+     *                      are written to the file (1 writes every change
+     *                      through at once) -OR- 0 to only write them when
+     *                      they are evicted or flushed
+     * @throws IOException if the file can not be opened
+     */
+    public FileDevice(String fileName, int cacheSectors, int flushInterval)
+        throws IOException
+    {
+        m_fileName = fileName;
+        m_file = new RandomAccessFile(fileName, "rw");
+        m_channel = m_file.getChannel();
+        m_flushInterval = flushInterval;
+
+        m_sectors = new int[cacheSectors][SECTOR_WORDS];
+        m_tags = new long[cacheSectors];
+        m_dirty = new boolean[cacheSectors];
+        m_lastUse = new long[cacheSectors];
+        Arrays.fill(m_tags, -1);
+    }//ctor
+
+    /**
+     * getId
+     *
+     * @return the device id of this device
+     */
+    public int getId()
+    {
+        return m_id;
+    }
+
+    /**
+     * setId
+     *
+     * sets the device id of this device
+     *
+     * @param id the new id
+     */
+    public void setId(int id)
+    {
+        m_id = id;
+    }
+
+    /**
+     * isSharable
+     *
+     * any number of processes may use the file at once
+     */
+    public boolean isSharable()
+    {
+        return true;
+    }
+
+    /**
+     * isAvailable
+     *
+     * the file is always available
+     */
+    public boolean isAvailable()
+    {
+        return true;
+    }
+
+    /**
+     * isReadable
+     *
+     * the file can be read from
+     */
+    public boolean isReadable()
+    {
+        return true;
+    }
+
+    /**
+     * isWriteable
+     *
+     * the file can be written to
+     */
+    public boolean isWriteable()
+    {
+        return true;
+    }
+
+    /**
+     * read
+     *
+     * @param addr the address of a word in the file
+     * @return the word -OR- 0 if the address is negative or has never been
+     *         written
+     */
+    public int read(int addr)
+    {
+        if (addr < 0)
+        {
+            return 0;
+        }
+        m_wordReads++;
+        int i = cache(addr / SECTOR_WORDS);
+        return m_sectors[i][addr % SECTOR_WORDS];
+    }//read
+
+    /**
+     * write
+     *
+     * stores a word.  Writes to negative addresses are ignored.
+     *
+     * @param addr the address of a word in the file
+     * @param data the value to store
+     */
+    public void write(int addr, int data)
+    {
+        if (addr < 0)
+        {
+            return;
+        }
+        m_wordWrites++;
+        int i = cache(addr / SECTOR_WORDS);
+        m_sectors[i][addr % SECTOR_WORDS] = data;
+        m_dirty[i] = true;
+
+        m_writesSinceFlush++;
+        if ((m_flushInterval > 0) && (m_writesSinceFlush >= m_flushInterval))
+        {
+            writeBack();
+        }
+    }//write
+
+    /**
+     * cache
+     *
+     * makes sure a sector is in the cache.  If it isn't it replaces the
+     * least recently used sector, which is written back first (if it is
+     * dirty).
+     *
+     * @param sector the number of the sector
+     * @return the index of the sector in the cache
+     */
+    private int cache(long sector)
+    {
+        m_accesses++;
+        if (m_tags[m_last] == sector)
+        {
+            m_lastUse[m_last] = m_accesses;
+            return m_last;
+        }
+
+        //Look for the sector while keeping track of the entry used longest
+        //ago (an empty entry is never used)
+        int i = 0;
+        for(int j = 0; j < m_tags.length; j++)
+        {
+            if (m_tags[j] == sector)
+            {
+                m_lastUse[j] = m_accesses;
+                m_last = j;
+                return j;
+            }
+            if (m_lastUse[j] < m_lastUse[i])
+            {
+                i = j;
+            }
+        }
+
+        try
+        {
+            if (m_dirty[i])
+            {
+                writeSector(i);
+            }
+            readSector(sector, i);
+        }
+        catch(IOException e)
+        {
+            System.out.println("ERROR: Could not access " + m_fileName + " ("
+                               + e + ")");
+            System.exit(0);
+        }
+        m_lastUse[i] = m_accesses;
+        m_last = i;
+        return i;
+    }//cache
+
+    /**
+     * readSector
+     *
+     * fills an entry of the cache from the file.  The part of the sector
+     * that is past the end of the file is filled with zeros.
+     *
+     * @param sector the number of the sector
+     * @param i      the index of the entry
+     * @throws IOException if the file can not be read
+     */
+    private void readSector(long sector, int i) throws IOException
+    {
+        m_buffer.clear();
+        long pos = sector * SECTOR_BYTES;
+        while (m_buffer.hasRemaining())
+        {
+            int n = m_channel.read(m_buffer, pos);
+            if (n < 0)
+            {
+                break;
+            }
+            pos += n;
+        }
+        while (m_buffer.hasRemaining())
+        {
+            m_buffer.put((byte)0);
+        }
+        m_buffer.flip();
+        m_buffer.asIntBuffer().get(m_sectors[i]);
+
+        m_tags[i] = sector;
+        m_dirty[i] = false;
+        m_sectorReads++;
+    }//readSector
+
+    /**
+     * writeSector
+     *
+     * writes an entry of the cache to the file
+     *
+     * @param i the index of the entry
+     * @throws IOException if the file can not be written
+     */
+    private void writeSector(int i) throws IOException
+    {
+        m_buffer.clear();
+        m_buffer.asIntBuffer().put(m_sectors[i]);
+        long pos = m_tags[i] * SECTOR_BYTES;
+        while (m_buffer.hasRemaining())
+        {
+            pos += m_channel.write(m_buffer, pos);
+        }
+        m_dirty[i] = false;
+        m_sectorWrites++;
+    }//writeSector
+
+    /**
+     * writeDirty
+     *
+     * writes every dirty sector to the file
+     *
+     * @throws IOException if the file can not be written
+     */
+    private void writeDirty() throws IOException
+    {
+        for(int i = 0; i < m_tags.length; i++)
+        {
+            if (m_dirty[i])
+            {
+                writeSector(i);
+            }
+        }
+        m_writesSinceFlush = 0;
+    }//writeDirty
+
+    /**
+     * writeBack
+     *
+     * is called every m_flushInterval writes.  The dirty sectors are handed
+     * to the host but it isn't asked to store them right away.
+     */
+    private void writeBack()
+    {
+        try
+        {
+            writeDirty();
+        }
+        catch(IOException e)
+        {
+            System.out.println("ERROR: Could not write to " + m_fileName
+                               + " (" + e + ")");
+            System.exit(0);
+        }
+    }//writeBack
+
+    /**
+     * flush
+     *
+     * writes every dirty sector to the file and asks the host to store the
+     * file's contents
+     */
+    public void flush() throws IOException
+    {
+        writeDirty();
+        m_channel.force(false);
+    }//flush
+
+    /**
+     * close
+     *
+     * flushes and closes the file
+     */
+    public void close() throws IOException
+    {
+        flush();
+        m_file.close();
+    }//close
+
+    /**
+     * printStatistics
+     *
+     * outputs how many host file operations the cache saved
+     */
+    public void printStatistics()
+    {
+        System.out.println("File device (" + m_fileName + "): " + m_wordReads
+                           + " words read, " + m_wordWrites
+                           + " words written, " + m_sectorReads
+                           + " sectors read from the file, " + m_sectorWrites
+                           + " written to it");
+    }//printStatistics
+
+};//class FileDevice
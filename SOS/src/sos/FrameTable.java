@@ -0,0 +1,246 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This class keeps track of which page frames of RAM are free when the SOS
+ * uses paging.  RAM is divided into frames of {@link CPU#PAGE_SIZE} words and
+ * any free frame can hold any page, so there is no external fragmentation
+ * and a process' pages don't have to be next to each other.
+ *
+ * For each frame in use it also remembers which pages of which page tables
+ * map it so that a {@link ReplacementPolicy} can look at (and clear) their
+ * referenced bits and the SOS can find the pages to evict.  A frame is mapped
+ * by more than one page when processes share it (e.g., the text of a program
+ * that several processes are running).
+ *
+ * @see SOS
+ * @see CPU#setPageTable
+ */
+public class FrameTable
+{
+    //======================================================================
+    //Inner Classes
+    //----------------------------------------------------------------------
+
+    /**
+     * Mapping
+     *
+     * a page that maps a frame.  The mappings of each frame form a linked
+     * list.
+     */
+    public static class Mapping
+    {
+        /** the page table the page belongs to */
+        public int[] table;
+
+        /** the page number */
+        public int page;
+
+        /** the next mapping of the same frame -OR- null */
+        public Mapping next;
+    }//class Mapping
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the number of frames being managed
+     */
+    private int m_numFrames = 0;
+
+    /**
+     * the numbers of the free frames (used as a stack)
+     */
+    private int m_free[] = null;
+
+    /**
+     * the number of entries of m_free in use
+     */
+    private int m_numFree = 0;
+
+    /**
+     * for each frame in use, the pages that map it
+     */
+    private Mapping m_mappings[] = null;
+
+    /**
+     * the number of pages that map each frame
+     */
+    private int m_mapCounts[] = null;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * FrameTable ctor
+     *
+     * marks every frame free.  Any words past the last full frame are never
+     * used.
+     *
+     * @param size the number of words to manage (starting at address 0)
+     */
+    public FrameTable(int size)
+    {
+        m_numFrames = size >> CPU.PAGE_SHIFT;
+        m_free = new int[m_numFrames];
+        m_mappings = new Mapping[m_numFrames];
+        m_mapCounts = new int[m_numFrames];
+
+        //Push the frames in reverse so the lowest ones are handed out first
+        for(int f = m_numFrames - 1; f >= 0; f--)
+        {
+            m_free[m_numFree++] = f;
+        }
+    }//FrameTable ctor
+
+    /**
+     * alloc
+     *
+     * @return the number of a free frame (which is no longer free) -OR- -1 if
+     *         every frame is in use
+     */
+    public int alloc()
+    {
+        if (m_numFree == 0)
+        {
+            return -1;
+        }
+        return m_free[--m_numFree];
+    }//alloc
+
+    /**
+     * free
+     *
+     * returns a frame that was allocated by {@link #alloc} and forgets its
+     * mappings
+     *
+     * @param frame the number of the frame
+     */
+    public void free(int frame)
+    {
+        m_mappings[frame] = null;
+        m_mapCounts[frame] = 0;
+        m_free[m_numFree++] = frame;
+    }//free
+
+    /**
+     * map
+     *
+     * records that a page maps a frame
+     *
+     * @param frame the number of the frame
+     * @param table the page table the page belongs to
+     * @param page  the page number
+     */
+    public void map(int frame, int[] table, int page)
+    {
+        Mapping m = new Mapping();
+        m.table = table;
+        m.page = page;
+        m.next = m_mappings[frame];
+        m_mappings[frame] = m;
+        m_mapCounts[frame]++;
+    }//map
+
+    /**
+     * unmap
+     *
+     * records that a page no longer maps a frame.  The frame is not freed.
+     *
+     * @param frame the number of the frame
+     * @param table the page table the page belongs to
+     * @param page  the page number
+     * @return the number of pages that still map the frame
+     */
+    public int unmap(int frame, int[] table, int page)
+    {
+        Mapping prev = null;
+        for(Mapping m = m_mappings[frame]; m != null; m = m.next)
+        {
+            if ((m.table == table) && (m.page == page))
+            {
+                if (prev == null)
+                {
+                    m_mappings[frame] = m.next;
+                }
+                else
+                {
+                    prev.next = m.next;
+                }
+                m_mapCounts[frame]--;
+                break;
+            }
+            prev = m;
+        }//for
+
+        return m_mapCounts[frame];
+    }//unmap
+
+    /**
+     * getMappings
+     *
+     * @param frame the number of a frame in use
+     * @return the first of the pages that map the frame (see {@link
+     *         Mapping#next}) -OR- null if none do
+     */
+    public Mapping getMappings(int frame)
+    {
+        return m_mappings[frame];
+    }
+
+    /**
+     * getMapCount
+     *
+     * @param frame the number of a frame
+     * @return the number of pages that map the frame
+     */
+    public int getMapCount(int frame)
+    {
+        return m_mapCounts[frame];
+    }
+
+    /**
+     * testAndClearReferenced
+     *
+     * clears the referenced bits of the pages that map a frame.  The caller
+     * must flush the TLB afterwards so that the next use sets them again.
+     *
+     * @param frame the number of a frame in use
+     * @return true iff any of the pages had been used since the bits were
+     *         last cleared
+     */
+    public boolean testAndClearReferenced(int frame)
+    {
+        boolean ref = false;
+        for(Mapping m = m_mappings[frame]; m != null; m = m.next)
+        {
+            ref |= (m.table[m.page] & CPU.PTE_REF) != 0;
+            m.table[m.page] &= ~CPU.PTE_REF;
+        }
+        return ref;
+    }//testAndClearReferenced
+
+    /**
+     * getNumFrames
+     *
+     * @return the number of frames being managed
+     */
+    public int getNumFrames()
+    {
+        return m_numFrames;
+    }
+
+    /**
+     * getFreeFrames
+     *
+     * @return the number of frames that are free
+     */
+    public int getFreeFrames()
+    {
+        return m_numFree;
+    }
+
+};//class FrameTable
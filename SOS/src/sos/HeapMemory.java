@@ -0,0 +1,110 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This class stores the simulated RAM in an ordinary int array on the Java
+ * heap.  It is the fastest backend for small memories but is limited to
+ * 2^31 words.
+ *
+ * @see MemoryBackend
+ * @see RAM
+ */
+public class HeapMemory implements MemoryBackend
+{
+    /**
+     * This array contains the simulated RAM itself (Java zeroes it for us)
+     **/
+    private int m_mem[] = null;
+
+    /**
+     * the constructor does nothing special
+     *
+     * @param size number of integers ("words") in ram
+     */
+    public HeapMemory(int size)
+    {
+        m_mem = new int[size];
+    }//ctor
+
+    /**
+     * getSize
+     *
+     * @return the number of integers ("words") this backend holds
+     */
+    public long getSize()
+    {
+        return m_mem.length;
+    }
+
+    /**
+     * get
+     *
+     * @param addr the location to retrieve from
+     * @return the value at the given location
+     */
+    public int get(long addr)
+    {
+        return m_mem[(int)addr];
+    }
+
+    /**
+     * put
+     *
+     * @param addr the location to write to
+     * @param val  the value to write
+     */
+    public void put(long addr, int val)
+    {
+        m_mem[(int)addr] = val;
+    }
+
+    /**
+     * get
+     *
+     * copies a run of consecutive words out of memory
+     */
+    public void get(long addr, int[] dest, int off, int len)
+    {
+        System.arraycopy(m_mem, (int)addr, dest, off, len);
+    }
+
+    /**
+     * put
+     *
+     * copies a run of consecutive words into memory
+     */
+    public void put(long addr, int[] src, int off, int len)
+    {
+        System.arraycopy(src, off, m_mem, (int)addr, len);
+    }
+
+    /**
+     * compareAndSwap
+     *
+     * replaces the value at a location if it holds the expected value.  This
+     * backend is only used by one CPU so nothing more is needed.
+     */
+    public int compareAndSwap(long addr, int expect, int update)
+    {
+        int old = get(addr);
+        if (old == expect)
+        {
+            put(addr, update);
+        }
+        return old;
+    }//compareAndSwap
+
+    /**
+     * getAndAdd
+     *
+     * adds to the value at a location
+     */
+    public int getAndAdd(long addr, int delta)
+    {
+        int old = get(addr);
+        put(addr, old + delta);
+        return old;
+    }//getAndAdd
+
+};//class HeapMemory
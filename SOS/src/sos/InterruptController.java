@@ -0,0 +1,157 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This class is the part of a simulated CPU that {@link AsyncDevice}s use to
+ * tell it that they have finished a request.  Each device asks for an
+ * interrupt at the time (measured in instructions executed by the CPU) when
+ * its current request will be done.  The CPU checks for due interrupts
+ * between instructions and raises an I/O completion interrupt for each one.
+ *
+ * @see CPU
+ * @see AsyncDevice
+ */
+public class InterruptController
+{
+    //======================================================================
+    //Inner Classes
+    //----------------------------------------------------------------------
+
+    /**
+     * Event
+     *
+     * an interrupt that a device has asked for
+     */
+    private static class Event implements Comparable<Event>
+    {
+        /** when the interrupt is due (in instructions) */
+        public long time;
+
+        /** the order the events were scheduled in (breaks ties) */
+        public long seq;
+
+        /** the device that will have finished its request */
+        public AsyncDevice device;
+
+        /**
+         * compareTo
+         *
+         * orders events by due time and then by the order they were
+         * scheduled in
+         */
+        public int compareTo(Event other)
+        {
+            if (time != other.time)
+            {
+                return (time < other.time) ? -1 : 1;
+            }
+            return (seq < other.seq) ? -1 : ((seq == other.seq) ? 0 : 1);
+        }
+    }//class Event
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the CPU this controller interrupts
+     */
+    private CPU m_CPU = null;
+
+    /**
+     * the interrupts that have not been raised yet, earliest first
+     */
+    private PriorityQueue<Event> m_events = new PriorityQueue<Event>();
+
+    /**
+     * the number of events that have been scheduled
+     */
+    private long m_seq = 0;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * InterruptController ctor
+     *
+     * @param cpu the CPU this controller interrupts
+     */
+    public InterruptController(CPU cpu)
+    {
+        m_CPU = cpu;
+    }
+
+    /**
+     * getTime
+     *
+     * @return the current time (the number of instructions the CPU has
+     *         executed)
+     */
+    public long getTime()
+    {
+        return m_CPU.getInstructionCount();
+    }
+
+    /**
+     * schedule
+     *
+     * asks for an interrupt once a device's current request is done
+     *
+     * @param time   when the request will be done (in instructions)
+     * @param device the device
+     */
+    public void schedule(long time, AsyncDevice device)
+    {
+        Event e = new Event();
+        e.time = time;
+        e.seq = m_seq++;
+        e.device = device;
+        m_events.add(e);
+        m_CPU.eventScheduled(time);
+    }//schedule
+
+    /**
+     * getNextTime
+     *
+     * @return when the next interrupt is due -OR- Long.MAX_VALUE if no
+     *         device is busy
+     */
+    public long getNextTime()
+    {
+        Event e = m_events.peek();
+        return (e == null) ? Long.MAX_VALUE : e.time;
+    }
+
+    /**
+     * isBusy
+     *
+     * @return true if any device has a request in progress
+     */
+    public boolean isBusy()
+    {
+        return !m_events.isEmpty();
+    }
+
+    /**
+     * poll
+     *
+     * finishes the earliest request that is due.  The device starts on its
+     * next request (if it has one).
+     *
+     * @param now the current time (in instructions)
+     * @return the request that was finished -OR- null if none is due
+     */
+    public AsyncDevice.Request poll(long now)
+    {
+        Event e = m_events.peek();
+        if ((e == null) || (e.time > now))
+        {
+            return null;
+        }
+        m_events.poll();
+        return e.device.complete();
+    }//poll
+
+};//class InterruptController
@@ -2,32 +2,15 @@ package sos;
 /**
  * Simulates a non-sharable, read-only device.
  * When read from, it generates a different number every time.
+ * A read takes a while (someone has to press a key) so the OS can run other
+ * processes until the device interrupts.
  * @author Micah, Nathan
  *
  */
-public class KeyboardDevice implements Device {
+public class KeyboardDevice extends AsyncDevice {
 	
-	//generates a random number to be the device id
-	private int m_id = (int) (Math.random()*100);
-	/**
-	 * getId
-	 * getter method for m_id, the device id
-	 * @return - m_id
-	 */
-	public int getId() {
-		return m_id;
-	}
-
-    /**
-     * setId
-     *
-     * sets the device id of this device
-     *
-     * @param id the new id
-     */
-	public void setId(int id) {
-		m_id = id;
-	}
+	//the number of instructions the CPU runs while waiting for a keypress
+	public static final int LATENCY = 1000;
 
 	/**
 	 * returns whether or not the device is sharable or not.
@@ -37,14 +20,6 @@ public class KeyboardDevice implements Device {
 		return false;
 	}
 
-	/**
-	 * returns whether or not the device is available or not.
-	 * @return true all the time for now.
-	 */
-	public boolean isAvailable() {
-		return true;
-	}
-
 	/**
 	 * returns whether or not the device can be read from.
 	 * @return true all the time for now.
@@ -86,4 +61,12 @@ public class KeyboardDevice implements Device {
 		return;
 	}
 
+	/**
+	 * returns how long a request takes.
+	 * @return LATENCY, for every request
+	 */
+	protected long getServiceTime(Request r) {
+		return LATENCY;
+	}
+
 }
@@ -0,0 +1,103 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This policy approximates least recently used replacement by "aging".  Each
+ * frame has a counter.  Whenever a victim is needed every counter is shifted
+ * right and the page's referenced bit (which is then cleared) is shifted in
+ * at the top.  The page with the smallest counter is the one that has gone
+ * unused for the longest and it is evicted.
+ *
+ * @see ReplacementPolicy
+ */
+public class LRUReplacement implements ReplacementPolicy
+{
+    /**
+     * which frames are in use
+     */
+    private boolean m_inUse[] = null;
+
+    /**
+     * the aging counter of each frame
+     */
+    private int m_age[] = null;
+
+    /**
+     * LRUReplacement ctor
+     *
+     * @param numFrames the number of frames in RAM
+     */
+    public LRUReplacement(int numFrames)
+    {
+        m_inUse = new boolean[numFrames];
+        m_age = new int[numFrames];
+    }
+
+    /**
+     * add
+     *
+     * @see ReplacementPolicy#add
+     */
+    public void add(int frame, long now)
+    {
+        m_inUse[frame] = true;
+        m_age[frame] = 0;
+    }
+
+    /**
+     * remove
+     *
+     * @see ReplacementPolicy#remove
+     */
+    public void remove(int frame)
+    {
+        m_inUse[frame] = false;
+    }
+
+    /**
+     * victim
+     *
+     * @see ReplacementPolicy#victim
+     */
+    public int victim(FrameTable frames, long now)
+    {
+        int victim = -1;
+        for(int frame = 0; frame < m_inUse.length; frame++)
+        {
+            if (!m_inUse[frame])
+            {
+                continue;
+            }
+            m_age[frame] >>>= 1;
+            if (frames.testAndClearReferenced(frame))
+            {
+                m_age[frame] |= Integer.MIN_VALUE;
+            }
+
+            //Compare the counters as unsigned numbers
+            if ((victim < 0)
+                || ((m_age[frame] ^ Integer.MIN_VALUE) < (m_age[victim] ^ Integer.MIN_VALUE)))
+            {
+                victim = frame;
+            }
+        }//for
+
+        if (victim >= 0)
+        {
+            remove(victim);
+        }
+        return victim;
+    }//victim
+
+    /**
+     * getName
+     *
+     * @see ReplacementPolicy#getName
+     */
+    public String getName()
+    {
+        return "LRU approximation";
+    }
+
+};//class LRUReplacement
@@ -0,0 +1,154 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This scheduler holds a lottery to choose the next process.  Each Ready
+ * process holds one ticket plus one more for each point of priority, so over
+ * time every process gets a share of the CPU in proportion to its tickets.
+ *
+ * @see Scheduler
+ * @see Program#setPriority
+ */
+public class LotteryScheduler implements Scheduler
+{
+    /**
+     * the quantum used unless {@link #setQuantum} is called
+     */
+    public static final int DEFAULT_QUANTUM = 500;
+
+    /**
+     * the Ready processes in no particular order.  Each process' sched index
+     * holds its position in this list.
+     */
+    private Vector<SOS.ProcessControlBlock> m_ready = new Vector<SOS.ProcessControlBlock>();
+
+    /**
+     * the number of tickets held by all the Ready processes
+     */
+    private long m_totalTickets = 0;
+
+    /**
+     * used to draw the winning ticket
+     */
+    private Random m_rand = new Random();
+
+    /**
+     * the number of instructions a process may run before it is preempted
+     */
+    private int m_quantum = DEFAULT_QUANTUM;
+
+    /**
+     * getTickets
+     *
+     * @param pi a process
+     * @return the number of tickets the process holds
+     */
+    private static int getTickets(SOS.ProcessControlBlock pi)
+    {
+        return 1 + Math.max(0, pi.getPriority());
+    }
+
+    /**
+     * add
+     *
+     * @see Scheduler#add
+     */
+    public void add(SOS.ProcessControlBlock pi)
+    {
+        pi.setSchedIndex(m_ready.size());
+        m_ready.add(pi);
+        m_totalTickets += getTickets(pi);
+    }//add
+
+    /**
+     * remove
+     *
+     * @see Scheduler#remove
+     */
+    public void remove(SOS.ProcessControlBlock pi)
+    {
+        int i = pi.getSchedIndex();
+        if ((i < 0) || (i >= m_ready.size()) || (m_ready.get(i) != pi))
+        {
+            return;         // not Ready
+        }
+        SOS.ProcessControlBlock last = m_ready.remove(m_ready.size() - 1);
+        if (last != pi)
+        {
+            m_ready.set(i, last);
+            last.setSchedIndex(i);
+        }
+        pi.setSchedIndex(-1);
+        m_totalTickets -= getTickets(pi);
+    }//remove
+
+    /**
+     * next
+     *
+     * @see Scheduler#next
+     */
+    public SOS.ProcessControlBlock next()
+    {
+        if (m_ready.size() == 0)
+        {
+            return null;
+        }
+
+        //Find the holder of the winning ticket
+        long winner = (long)(m_rand.nextDouble() * m_totalTickets);
+        SOS.ProcessControlBlock pi = m_ready.lastElement();
+        for(SOS.ProcessControlBlock cand : m_ready)
+        {
+            winner -= getTickets(cand);
+            if (winner < 0)
+            {
+                pi = cand;
+                break;
+            }
+        }
+        remove(pi);
+        return pi;
+    }//next
+
+    /**
+     * getQuantum
+     *
+     * @see Scheduler#getQuantum
+     */
+    public int getQuantum(SOS.ProcessControlBlock pi)
+    {
+        return m_quantum;
+    }
+
+    /**
+     * setQuantum
+     *
+     * @see Scheduler#setQuantum
+     */
+    public void setQuantum(int instructions)
+    {
+        m_quantum = instructions;
+    }
+
+    /**
+     * size
+     *
+     * @see Scheduler#size
+     */
+    public int size()
+    {
+        return m_ready.size();
+    }
+
+    /**
+     * getName
+     *
+     * @see Scheduler#getName
+     */
+    public String getName()
+    {
+        return "Lottery";
+    }
+
+};//class LotteryScheduler
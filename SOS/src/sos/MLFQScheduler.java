@@ -0,0 +1,197 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This scheduler implements a multi-level feedback queue.  A new process
+ * starts in the top (highest priority) queue.  Each queue has a quantum four
+ * times as long as the one above it.  Each time a process leaves the CPU, it
+ * moves down a queue if it used up its whole quantum, so CPU-bound processes
+ * sink (and run less often but for longer) while processes that yield
+ * quickly stay on top.  The first process in the highest non-empty queue always runs
+ * next.  Every so often all processes are moved back to the top queue so
+ * that nothing starves.
+ *
+ * @see Scheduler
+ */
+public class MLFQScheduler implements Scheduler
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    /**
+     * the quantum of the top queue used unless {@link #setQuantum} is called
+     */
+    public static final int DEFAULT_QUANTUM = 200;
+
+    /**
+     * the number of queues
+     */
+    public static final int NUM_LEVELS = 3;
+
+    /**
+     * the number of processes chosen between each move back to the top
+     */
+    public static final int BOOST_INTERVAL = 1000;
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the Ready processes in each queue, oldest first.  Each process' sched
+     * index holds the number of its queue.
+     */
+    private Vector<LinkedList<SOS.ProcessControlBlock>> m_levels = null;
+
+    /**
+     * the number of processes chosen since the last boost
+     */
+    private int m_sinceBoost = 0;
+
+    /**
+     * the number of Ready processes
+     */
+    private int m_size = 0;
+
+    /**
+     * the quantum of the top queue
+     */
+    private int m_quantum = DEFAULT_QUANTUM;
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * the constructor creates the (empty) queues
+     */
+    public MLFQScheduler()
+    {
+        m_levels = new Vector<LinkedList<SOS.ProcessControlBlock>>(NUM_LEVELS);
+        for(int i = 0; i < NUM_LEVELS; i++)
+        {
+            m_levels.add(new LinkedList<SOS.ProcessControlBlock>());
+        }
+    }//ctor
+
+    /**
+     * add
+     *
+     * @see Scheduler#add
+     */
+    public void add(SOS.ProcessControlBlock pi)
+    {
+        //A new process' sched index is 0 so it starts at the top
+        int level = Math.max(0, Math.min(pi.getSchedIndex(), NUM_LEVELS - 1));
+        if ((level < NUM_LEVELS - 1) && (m_quantum > 0)
+            && (pi.getLastBurst() >= getQuantum(pi)))
+        {
+            level++;
+        }
+        pi.setSchedIndex(level);
+        m_levels.get(level).addLast(pi);
+        m_size++;
+    }//add
+
+    /**
+     * remove
+     *
+     * @see Scheduler#remove
+     */
+    public void remove(SOS.ProcessControlBlock pi)
+    {
+        int level = pi.getSchedIndex();
+        if ((level >= 0) && (level < NUM_LEVELS) && m_levels.get(level).remove(pi))
+        {
+            m_size--;
+        }
+    }//remove
+
+    /**
+     * next
+     *
+     * @see Scheduler#next
+     */
+    public SOS.ProcessControlBlock next()
+    {
+        if (++m_sinceBoost >= BOOST_INTERVAL)
+        {
+            boost();
+        }
+
+        for(LinkedList<SOS.ProcessControlBlock> queue : m_levels)
+        {
+            if (queue.size() > 0)
+            {
+                m_size--;
+                return queue.removeFirst();
+            }
+        }
+        return null;
+    }//next
+
+    /**
+     * getQuantum
+     *
+     * @see Scheduler#getQuantum
+     */
+    public int getQuantum(SOS.ProcessControlBlock pi)
+    {
+        int level = Math.max(0, Math.min(pi.getSchedIndex(), NUM_LEVELS - 1));
+        return m_quantum << (2 * level);
+    }
+
+    /**
+     * setQuantum
+     *
+     * @see Scheduler#setQuantum
+     */
+    public void setQuantum(int instructions)
+    {
+        m_quantum = instructions;
+    }
+
+    /**
+     * boost
+     *
+     * moves every Ready process to the top queue.  (A Running or Blocked
+     * process keeps its level.)
+     */
+    private void boost()
+    {
+        LinkedList<SOS.ProcessControlBlock> top = m_levels.get(0);
+        for(int i = 1; i < NUM_LEVELS; i++)
+        {
+            for(SOS.ProcessControlBlock pi : m_levels.get(i))
+            {
+                pi.setSchedIndex(0);
+                top.addLast(pi);
+            }
+            m_levels.get(i).clear();
+        }
+        m_sinceBoost = 0;
+    }//boost
+
+    /**
+     * size
+     *
+     * @see Scheduler#size
+     */
+    public int size()
+    {
+        return m_size;
+    }
+
+    /**
+     * getName
+     *
+     * @see Scheduler#getName
+     */
+    public String getName()
+    {
+        return "MLFQ";
+    }
+
+};//class MLFQScheduler
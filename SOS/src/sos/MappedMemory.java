@@ -0,0 +1,139 @@
+package sos;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * This class stores the simulated RAM in a memory mapped file so that the
+ * physical memory image outlives the simulation.  Running a scenario again
+ * against the same image file starts with memory exactly as the last run
+ * left it.  Because {@link #put(long, int[], int, int)} skips words that
+ * already hold the right value, reloading the same programs into a warm image
+ * dirties no pages and costs next to nothing.
+ *
+ * The image is stored big-endian so that it can be moved between machines.
+ *
+ * @see MemoryBackend
+ * @see DirectMemory
+ * @see RAM
+ */
+public class MappedMemory extends DirectMemory implements Flushable
+{
+    /**
+     * the image file
+     **/
+    private RandomAccessFile m_file = null;
+
+    /**
+     * the mapped regions of the image file (one per chunk).  These are kept
+     * so that they can be forced to disk.
+     **/
+    private MappedByteBuffer m_mapped[] = null;
+
+    /**
+     * true if the image file already existed and was large enough
+     **/
+    private boolean m_warm = false;
+
+    /**
+     * opens (or creates) an image file and sizes it to hold the memory
+     *
+     * @param fileName the name of the image file
+     * @param size number of integers ("words") in ram
+     * @throws IOException if the file can not be opened or resized
+     */
+    public MappedMemory(String fileName, long size) throws IOException
+    {
+        super(size);
+        m_mapped = new MappedByteBuffer[(int)((size + CHUNK_WORDS - 1) >>> CHUNK_SHIFT)];
+
+        File f = new File(fileName);
+        m_warm = f.exists() && (f.length() >= size * 4);
+        m_file = new RandomAccessFile(f, "rw");
+        if (m_file.length() < size * 4)
+        {
+            m_file.setLength(size * 4);
+        }
+    }//ctor
+
+    /**
+     * isWarm
+     *
+     * @return true if memory was initialized from an existing image
+     */
+    public boolean isWarm()
+    {
+        return m_warm;
+    }
+
+    /**
+     * createChunk
+     *
+     * maps the part of the image file that holds a chunk
+     *
+     * @param chunk the index of the chunk
+     * @return the storage for the chunk
+     */
+    protected IntBuffer createChunk(int chunk)
+    {
+        try
+        {
+            long pos = ((long)chunk << CHUNK_SHIFT) * 4;
+            m_mapped[chunk] = m_file.getChannel()
+                .map(FileChannel.MapMode.READ_WRITE, pos, chunkSize(chunk) * 4L);
+            return m_mapped[chunk].asIntBuffer();
+        }
+        catch(IOException e)
+        {
+            throw new RuntimeException("Could not map RAM image: " + e);
+        }
+    }//createChunk
+
+    /**
+     * getChunk
+     *
+     * Unlike DirectMemory, an unmapped chunk may hold data from an earlier
+     * run so it is always mapped, even when it is only being read.
+     */
+    protected IntBuffer getChunk(int chunk, boolean create)
+    {
+        return super.getChunk(chunk, true);
+    }//getChunk
+
+    /**
+     * put
+     *
+     * copies a run of consecutive words into memory.  Words that already
+     * hold the right value are not written so that a warm image is not
+     * dirtied by reloading the same data.
+     */
+    public void put(long addr, int[] src, int off, int len)
+    {
+        for(int i = 0; i < len; i++)
+        {
+            if (get(addr + i) != src[off + i])
+            {
+                put(addr + i, src[off + i]);
+            }
+        }
+    }//put
+
+    /**
+     * flush
+     *
+     * writes any modified pages of the image back to the file
+     */
+    public void flush() throws IOException
+    {
+        for(int i = 0; i < m_mapped.length; i++)
+        {
+            if (m_mapped[i] != null)
+            {
+                m_mapped[i].force();
+            }
+        }
+    }//flush
+
+};//class MappedMemory
@@ -0,0 +1,92 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This interface defines the storage underneath the simulated RAM.  Keeping
+ * it separate from {@link RAM} lets a simulation choose where the words of
+ * physical memory actually live (e.g., on the Java heap or outside of it)
+ * without the CPU or the SOS knowing the difference.  Addresses are 64 bits
+ * wide so a backend is not limited to 2^31 words.
+ *
+ * @see RAM
+ * @see HeapMemory
+ * @see DirectMemory
+ */
+public interface MemoryBackend
+{
+    /**
+     * getSize
+     *
+     * @return the number of integers ("words") this backend holds
+     */
+    public long getSize();
+
+    /**
+     * get
+     *
+     * @param addr the location to retrieve from
+     * @return the value at the given location
+     */
+    public int get(long addr);
+
+    /**
+     * put
+     *
+     * @param addr the location to write to
+     * @param val  the value to write
+     */
+    public void put(long addr, int val);
+
+    /**
+     * get
+     *
+     * copies a run of consecutive words out of memory
+     *
+     * @param addr the location of the first word
+     * @param dest the array to copy into
+     * @param off  where in dest to put the first word
+     * @param len  the number of words to copy
+     */
+    public void get(long addr, int[] dest, int off, int len);
+
+    /**
+     * put
+     *
+     * copies a run of consecutive words into memory
+     *
+     * @param addr the location of the first word
+     * @param src  the array to copy from
+     * @param off  where in src the first word is
+     * @param len  the number of words to copy
+     */
+    public void put(long addr, int[] src, int off, int len);
+
+    /**
+     * compareAndSwap
+     *
+     * replaces the value at a location if (and only if) it holds the expected
+     * value.  A backend that can be shared by CPUs in different threads must
+     * do this atomically.
+     *
+     * @param addr   the location to update
+     * @param expect the value the location must hold
+     * @param update the new value
+     * @return the value the location held before (equal to expect iff the
+     *         swap happened)
+     */
+    public int compareAndSwap(long addr, int expect, int update);
+
+    /**
+     * getAndAdd
+     *
+     * adds to the value at a location.  A backend that can be shared by CPUs
+     * in different threads must do this atomically.
+     *
+     * @param addr  the location to update
+     * @param delta the amount to add
+     * @return the value the location held before
+     */
+    public int getAndAdd(long addr, int delta);
+
+};//interface MemoryBackend
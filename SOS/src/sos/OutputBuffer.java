@@ -0,0 +1,274 @@
+package sos;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * This class collects the lines printed by simulated programs (via the
+ * console device or SYSCALL_OUTPUT) in a reusable byte buffer instead of
+ * printing each one as it is produced.  Numbers are formatted straight into
+ * the buffer so no Strings are built.  The buffer is written to its channel
+ * in a single write when it is full, when {@link #flush} is called (e.g.,
+ * when the simulation ends) and when it is closed.  So that a line isn't
+ * held back for long when nothing else is printed, a timer thread also
+ * writes whatever is waiting every time the maximum delay passes.
+ *
+ * The output can go to the standard output or to a file (e.g., so that it
+ * does not slow down a benchmark).
+ *
+ * @see ConsoleDevice
+ * @see SOS#setOutputBuffer
+ */
+public class OutputBuffer implements Flushable, Closeable
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    /**
+     * the default size of the buffer (in bytes)
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * the default number of milliseconds a line may wait in the buffer
+     */
+    public static final int DEFAULT_MAX_DELAY = 100;
+
+    /**
+     * the most bytes a number can take (a sign and ten digits)
+     */
+    private static final int MAX_DIGITS = 11;
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * where the buffer is written
+     */
+    private WritableByteChannel m_channel = null;
+
+    /**
+     * the file the output goes to -OR- null for the standard output
+     */
+    private FileOutputStream m_file = null;
+
+    /**
+     * the lines that have not been written yet
+     */
+    private ByteBuffer m_buffer = null;
+
+    /**
+     * the longest a line may wait in the buffer (in nanoseconds)
+     */
+    private long m_maxDelay = 0;
+
+    /**
+     * when (System.nanoTime) the first line now in the buffer was added
+     */
+    private long m_firstLine = 0;
+
+    /**
+     * writes the waiting lines every m_maxDelay -OR- null once the buffer
+     * is closed (or if there is no maximum delay)
+     */
+    private Timer m_timer = null;
+
+    /**
+     * used to format a number (backwards)
+     */
+    private byte m_digits[] = new byte[MAX_DIGITS];
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * OutputBuffer ctor
+     *
+     * @param fileName the file to write to (it is emptied first) -OR- null
+     *                 to write to the standard output
+     * @throws IOException if the file can not be opened
+     */
+    public OutputBuffer(String fileName) throws IOException
+    {
+        this(fileName, DEFAULT_CAPACITY, DEFAULT_MAX_DELAY);
+    }//ctor
+
+    /**
+     * OutputBuffer ctor
+     *
+     * @param fileName the file to write to (it is emptied first) -OR- null
+     *                 to write to the standard output
+     * @param capacity the size of the buffer (in bytes)
+     * @param maxDelay the number of milliseconds a line may wait in the
+     *                 buffer (0 writes every line at once)
+     * @throws IOException if the file can not be opened
+     */
+    public OutputBuffer(String fileName, int capacity, int maxDelay)
+        throws IOException
+    {
+        if (fileName != null)
+        {
+            m_file = new FileOutputStream(fileName);
+            m_channel = m_file.getChannel();
+        }
+        else
+        {
+            m_channel = Channels.newChannel(new FileOutputStream(FileDescriptor.out));
+        }
+        m_buffer = ByteBuffer.allocate(Math.max(capacity, 64));
+        m_maxDelay = maxDelay * 1000000L;
+
+        if (maxDelay > 0)
+        {
+            m_timer = new Timer("OutputBuffer", true);
+            m_timer.schedule(new TimerTask()
+                {
+                    public void run()
+                    {
+                        tick();
+                    }
+                }, maxDelay, maxDelay);
+        }
+    }//ctor
+
+    /**
+     * toBytes
+     *
+     * converts a line prefix (e.g., "OUTPUT: ") to the form {@link #println}
+     * takes
+     *
+     * @param prefix the prefix
+     * @return its bytes
+     */
+    public static byte[] toBytes(String prefix)
+    {
+        return prefix.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * println
+     *
+     * adds a line made of a prefix and a number to the buffer
+     *
+     * @param prefix the prefix (see {@link #toBytes})
+     * @param value  the number
+     */
+    public synchronized void println(byte[] prefix, int value)
+    {
+        if (m_buffer.remaining() < prefix.length + MAX_DIGITS + 1)
+        {
+            writeBuffer();
+        }
+        if (m_buffer.position() == 0)
+        {
+            m_firstLine = System.nanoTime();
+        }
+
+        m_buffer.put(prefix);
+
+        //Format the number from its last digit back
+        long v = value;
+        if (v < 0)
+        {
+            m_buffer.put((byte)'-');
+            v = -v;
+        }
+        int n = 0;
+        do
+        {
+            m_digits[n++] = (byte)('0' + (v % 10));
+            v /= 10;
+        } while (v > 0);
+        while (n > 0)
+        {
+            m_buffer.put(m_digits[--n]);
+        }
+        m_buffer.put((byte)'\n');
+
+        if (System.nanoTime() - m_firstLine >= m_maxDelay)
+        {
+            writeBuffer();
+        }
+    }//println
+
+    /**
+     * tick
+     *
+     * is called by m_timer every time the maximum delay passes and writes
+     * any lines that are waiting
+     */
+    private synchronized void tick()
+    {
+        if (m_timer != null)
+        {
+            writeBuffer();
+        }
+    }//tick
+
+    /**
+     * writeBuffer
+     *
+     * writes the buffer to the channel and empties it.  Anything printed
+     * directly to System.out is written first so that the order of the
+     * output is kept as far as possible.
+     */
+    private void writeBuffer()
+    {
+        if (m_buffer.position() == 0)
+        {
+            return;
+        }
+
+        System.out.flush();
+        m_buffer.flip();
+        try
+        {
+            while (m_buffer.hasRemaining())
+            {
+                m_channel.write(m_buffer);
+            }
+        }
+        catch(IOException e)
+        {
+            System.out.println("ERROR: Could not write the output (" + e + ")");
+        }
+        m_buffer.clear();
+    }//writeBuffer
+
+    /**
+     * flush
+     *
+     * writes any lines that are still in the buffer
+     */
+    public synchronized void flush() throws IOException
+    {
+        writeBuffer();
+    }
+
+    /**
+     * close
+     *
+     * stops the timer, flushes the buffer and closes the file (if there is
+     * one)
+     */
+    public synchronized void close() throws IOException
+    {
+        if (m_timer != null)
+        {
+            m_timer.cancel();
+            m_timer = null;
+        }
+        writeBuffer();
+        if (m_file != null)
+        {
+            m_file.close();
+        }
+    }//close
+
+};//class OutputBuffer
@@ -0,0 +1,127 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This scheduler always runs the Ready process with the highest (static)
+ * priority.  Processes with the same priority take turns in the order they
+ * became Ready.
+ *
+ * @see Scheduler
+ * @see Program#setPriority
+ */
+public class PriorityScheduler implements Scheduler
+{
+    /**
+     * the quantum used unless {@link #setQuantum} is called
+     */
+    public static final int DEFAULT_QUANTUM = 1000;
+
+    /**
+     * the Ready processes.  Each process' sched index holds the order in
+     * which it became Ready.
+     */
+    private PriorityQueue<SOS.ProcessControlBlock> m_ready = null;
+
+    /**
+     * the number of processes that have become Ready so far
+     */
+    private int m_arrivals = 0;
+
+    /**
+     * the number of instructions a process may run before it is preempted
+     */
+    private int m_quantum = DEFAULT_QUANTUM;
+
+    /**
+     * the constructor does nothing special
+     */
+    public PriorityScheduler()
+    {
+        m_ready = new PriorityQueue<SOS.ProcessControlBlock>(11,
+            new Comparator<SOS.ProcessControlBlock>()
+            {
+                public int compare(SOS.ProcessControlBlock a,
+                                   SOS.ProcessControlBlock b)
+                {
+                    if (a.getPriority() != b.getPriority())
+                    {
+                        return b.getPriority() - a.getPriority();
+                    }
+                    return a.getSchedIndex() - b.getSchedIndex();
+                }
+            });
+    }//ctor
+
+    /**
+     * add
+     *
+     * @see Scheduler#add
+     */
+    public void add(SOS.ProcessControlBlock pi)
+    {
+        pi.setSchedIndex(m_arrivals++);
+        m_ready.add(pi);
+    }
+
+    /**
+     * remove
+     *
+     * @see Scheduler#remove
+     */
+    public void remove(SOS.ProcessControlBlock pi)
+    {
+        m_ready.remove(pi);
+    }
+
+    /**
+     * next
+     *
+     * @see Scheduler#next
+     */
+    public SOS.ProcessControlBlock next()
+    {
+        return m_ready.poll();
+    }
+
+    /**
+     * getQuantum
+     *
+     * @see Scheduler#getQuantum
+     */
+    public int getQuantum(SOS.ProcessControlBlock pi)
+    {
+        return m_quantum;
+    }
+
+    /**
+     * setQuantum
+     *
+     * @see Scheduler#setQuantum
+     */
+    public void setQuantum(int instructions)
+    {
+        m_quantum = instructions;
+    }
+
+    /**
+     * size
+     *
+     * @see Scheduler#size
+     */
+    public int size()
+    {
+        return m_ready.size();
+    }
+
+    /**
+     * getName
+     *
+     * @see Scheduler#getName
+     */
+    public String getName()
+    {
+        return "Priority";
+    }
+
+};//class PriorityScheduler
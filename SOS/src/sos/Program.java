@@ -54,6 +54,15 @@ public class Program
      **/
     private int m_defaultAllocSize = 0;
 
+    /**
+     * the priority given to processes created from this program.  Higher
+     * values are more important.
+     *
+     * @see PriorityScheduler
+     * @see LotteryScheduler
+     */
+    private int m_priority = 0;
+
     /**
      * specifies whether the parser should output details of its work
      **/
@@ -107,6 +116,26 @@ public class Program
     {
         return m_defaultAllocSize;
     }//getDefaultAllocSize
+
+    /**
+     * setPriority
+     *
+     * sets the priority given to processes created from this program
+     */
+    public void setPriority(int priority)
+    {
+        m_priority = priority;
+    }//setPriority
+
+    /**
+     * getPriority
+     *
+     * gets the priority given to processes created from this program
+     */
+    public int getPriority()
+    {
+        return m_priority;
+    }//getPriority
     
     /**
      * skipWhite
@@ -250,9 +279,22 @@ public class Program
                     return -106;
                 }
             case 'C':
-                return CPU.COPY;
+                if (instr.charAt(1) == 'A')
+                {
+                    return CPU.CAS;
+                }
+                else if (instr.charAt(1) == 'O')
+                {
+                    return CPU.COPY;
+                }
+                else
+                {
+                    return -104;
+                }
             case 'D':
                 return CPU.DIV;
+            case 'F':
+                return CPU.FETCH_ADD;
             case 'L':
                 return CPU.LOAD;
             case 'M':
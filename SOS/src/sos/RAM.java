@@ -15,36 +15,95 @@ public class RAM
 {
     //member veriables
     /**
-     * The size of the RAM (expressed as a number of integers)
+     * The size of the RAM (expressed as a number of integers).  The CPU uses
+     * 32 bit addresses so this is capped at Integer.MAX_VALUE even if the
+     * backend is larger.
      **/
     private int m_size = 0;
     
     /**
-     * This array contains the simulated RAM itself
+     * This contains the simulated RAM itself
+     *
+     * @see MemoryBackend
      **/
-    private int m_mem[] = null;
+    private MemoryBackend m_mem = null;
     
     /**
      * This describes how long it takes the simulated RAM to retrieve a given
      * value.  
      **/
     private int m_latency;
+
+    /**
+     * Accumulates the simulated time spent waiting for the RAM
+     **/
+    private VirtualClock m_clock = null;
+
+    /**
+     * The CPU's caches of decoded instructions.  Each one is told about every
+     * write so that the CPU never executes a stale instruction.
+     *
+     * @see DecodeCache
+     * @see BlockCache
+     **/
+    private CodeCache m_codeCaches[] = new CodeCache[0];
+
+    //======================================================================
+    //Callback Interface
+    //----------------------------------------------------------------------
+    /**
+     * CodeCache
+     *
+     * This interface should be implemented by anything that keeps a copy of
+     * instructions read from RAM.
+     */
+    public interface CodeCache
+    {
+        void invalidate(int addr);
+    };//interface CodeCache
     
     /**
      * the constructor does nothing special
      *
      * @param size number of integers ("words") in ram
-     * @param latency the number of nanoseconds to delay for RAM latency
+     * @param latency the number of simulated nanoseconds each read or write
+     *                takes
      */
     public RAM(int size, int latency)
     {
-        m_size = size;
-        m_mem = new int[m_size];
-        for(int i = 0; i < m_size; i++)
-        {
-            m_mem[i] = 0;
-        }
+        this(size, latency, new VirtualClock());
+    }//ctor
+
+    /**
+     * this constructor lets several pieces of simulated hardware share a
+     * clock
+     *
+     * @param size number of integers ("words") in ram
+     * @param latency the number of simulated nanoseconds each read or write
+     *                takes
+     * @param clock the clock that RAM latency is charged to
+     */
+    public RAM(int size, int latency, VirtualClock clock)
+    {
+        this(new HeapMemory(size), latency, clock);
+    }//ctor
+
+    /**
+     * this constructor lets the caller choose where the simulated memory is
+     * stored
+     *
+     * @param mem the storage for the simulated memory
+     * @param latency the number of simulated nanoseconds each read or write
+     *                takes
+     * @param clock the clock that RAM latency is charged to
+     * @see MemoryBackend
+     */
+    public RAM(MemoryBackend mem, int latency, VirtualClock clock)
+    {
+        m_mem = mem;
+        m_size = (int)Math.min(mem.getSize(), Integer.MAX_VALUE);
         m_latency = latency;
+        m_clock = clock;
     }//ctor
 
     /**
@@ -58,6 +117,17 @@ public class RAM
         return m_size;
     }
 
+    /**
+     * getBackend
+     *
+     * @return the storage underneath this RAM
+     *
+     */
+    public MemoryBackend getBackend()
+    {
+        return m_mem;
+    }
+
     /**
      * getLatency
      *
@@ -69,6 +139,31 @@ public class RAM
         return m_latency;
     }
 
+    /**
+     * getClock
+     *
+     * @return the clock that RAM latency is charged to
+     *
+     */
+    public VirtualClock getClock()
+    {
+        return m_clock;
+    }
+
+    /**
+     * registerCodeCache
+     *
+     * allows the CPU to register a cache of decoded instructions that must
+     * be invalidated whenever RAM is written
+     *
+     * @param cc the cache
+     */
+    public void registerCodeCache(CodeCache cc)
+    {
+        m_codeCaches = Arrays.copyOf(m_codeCaches, m_codeCaches.length + 1);
+        m_codeCaches[m_codeCaches.length - 1] = cc;
+    }
+
     /**
      * fetch
      * 
@@ -79,15 +174,95 @@ public class RAM
     public int[] fetch(int pc)
     {
         int instr[] = new int[CPU.INSTRSIZE];
-        for(int i = 0; i < CPU.INSTRSIZE; i++)
-        {
-            instr[i] = m_mem[pc+i];
-        }
+        fetch(pc, instr);
 
         return instr;
         
     }//fetch
 
+    /**
+     * fetch
+     * 
+     * retrieves an entire instruction from the simulated RAM into an array
+     * supplied by the caller (so that nothing needs to be allocated).
+     *
+     * @param pc     the address of the instruction
+     * @param instr  an array of at least CPU.INSTRSIZE ints to fill
+     * @see CPU#INSTRSIZE
+     */
+    public void fetch(int pc, int[] instr)
+    {
+        m_mem.get(pc, instr, 0, CPU.INSTRSIZE);
+    }//fetch
+
+    /**
+     * load
+     *
+     * copies a block of words (e.g., a program) into the simulated RAM.  This
+     * takes as much simulated time as writing each word separately but lets
+     * the backend handle the copy in one go.
+     *
+     * @param addr  the address of the first word
+     * @param words the words to write
+     */
+    public void load(int addr, int[] words)
+    {
+        //Simulate RAM latency
+        m_clock.advance((long)m_latency * words.length);
+
+        m_mem.put(addr, words, 0, words.length);
+
+        //Make sure the CPU doesn't run an out of date copy of these words
+        for(int i = 0; i < words.length; i++)
+        {
+            for(int j = 0; j < m_codeCaches.length; j++)
+            {
+                m_codeCaches[j].invalidate(addr + i);
+            }
+        }
+    }//load
+
+    /**
+     * read
+     *
+     * copies a block of words out of the simulated RAM (e.g., a page that is
+     * being swapped out).  This takes as much simulated time as reading each
+     * word separately.
+     *
+     * @param addr  the address of the first word
+     * @param words where to put the words (its length is the number to read)
+     */
+    public void read(int addr, int[] words)
+    {
+        //Simulate RAM latency
+        m_clock.advance((long)m_latency * words.length);
+
+        m_mem.get(addr, words, 0, words.length);
+    }//read
+
+    /**
+     * copy
+     *
+     * moves a block of words from one place in the simulated RAM to another
+     * (e.g., to relocate a process).  The source and destination may
+     * overlap.  This takes as much simulated time as reading and then writing
+     * each word separately.
+     *
+     * @param from the address of the first word to copy
+     * @param to   the address to copy it to
+     * @param len  the number of words to copy
+     */
+    public void copy(int from, int to, int len)
+    {
+        int words[] = new int[len];
+
+        //Simulate RAM latency (load() charges for the writes)
+        m_clock.advance((long)m_latency * len);
+
+        m_mem.get(from, words, 0, len);
+        load(to, words);
+    }//copy
+
     /**
      * read
      *
@@ -99,17 +274,9 @@ public class RAM
     public int read(int addr)
     {
         //Simulate RAM latency
-        if (m_latency > 0)
-        {
-            try
-            {
-                Thread.sleep(0, m_latency);
-            }
-            catch(InterruptedException ie)
-            {/* do nothing*/ }
-        }
+        m_clock.advance(m_latency);
         
-        return m_mem[addr];
+        return m_mem.get(addr);
     }//read
 
     /**
@@ -123,17 +290,66 @@ public class RAM
     public void write(int addr, int val)
     {
         //Simulate RAM latency 
-        if (m_latency > 0)
+        m_clock.advance(m_latency);
+        
+        m_mem.put(addr, val);
+
+        //Make sure the CPU doesn't run an out of date copy of this word
+        for(int i = 0; i < m_codeCaches.length; i++)
+        {
+            m_codeCaches[i].invalidate(addr);
+        }
+    }//write
+
+    /**
+     * compareAndSwap
+     *
+     * atomically replaces the integer at an address in the simulated RAM if
+     * it holds the expected value.  This takes as long as a read followed by
+     * a write.
+     *
+     * @param addr    the address to update
+     * @param expect  the value the address must hold
+     * @param update  the new value
+     * @return        the value the address held before
+     */
+    public int compareAndSwap(int addr, int expect, int update)
+    {
+        //Simulate RAM latency
+        m_clock.advance(2L * m_latency);
+
+        int old = m_mem.compareAndSwap(addr, expect, update);
+        if (old == expect)
         {
-            try
+            for(int i = 0; i < m_codeCaches.length; i++)
             {
-                Thread.sleep(0, m_latency);
+                m_codeCaches[i].invalidate(addr);
             }
-            catch(InterruptedException ie)
-            {/* do nothing*/ }
         }
-        
-        m_mem[addr] = val;
-    }//write
+        return old;
+    }//compareAndSwap
+
+    /**
+     * fetchAndAdd
+     *
+     * atomically adds to the integer at an address in the simulated RAM.
+     * This takes as long as a read followed by a write.
+     *
+     * @param addr    the address to update
+     * @param delta   the amount to add
+     * @return        the value the address held before
+     */
+    public int fetchAndAdd(int addr, int delta)
+    {
+        //Simulate RAM latency
+        m_clock.advance(2L * m_latency);
+
+        int old = m_mem.getAndAdd(addr, delta);
+        for(int i = 0; i < m_codeCaches.length; i++)
+        {
+            m_codeCaches[i].invalidate(addr);
+        }
+        return old;
+    }//fetchAndAdd
 
 };
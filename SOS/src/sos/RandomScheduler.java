@@ -0,0 +1,126 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This scheduler picks a Ready process at random.  The Ready processes are
+ * kept in an unordered list and each one remembers its position (via {@link
+ * SOS.ProcessControlBlock#setSchedIndex}) so that both choosing and removing a
+ * process take constant time.
+ *
+ * @see Scheduler
+ */
+public class RandomScheduler implements Scheduler
+{
+    /**
+     * the quantum used unless {@link #setQuantum} is called
+     */
+    public static final int DEFAULT_QUANTUM = 500;
+
+    /**
+     * the Ready processes in no particular order
+     */
+    private Vector<SOS.ProcessControlBlock> m_ready = new Vector<SOS.ProcessControlBlock>();
+
+    /**
+     * used to pick a process
+     */
+    private Random m_rand = new Random();
+
+    /**
+     * the number of instructions a process may run before it is preempted
+     */
+    private int m_quantum = DEFAULT_QUANTUM;
+
+    /**
+     * add
+     *
+     * @see Scheduler#add
+     */
+    public void add(SOS.ProcessControlBlock pi)
+    {
+        pi.setSchedIndex(m_ready.size());
+        m_ready.add(pi);
+    }//add
+
+    /**
+     * remove
+     *
+     * replaces the process with the last one in the list so nothing needs to
+     * be shifted
+     *
+     * @see Scheduler#remove
+     */
+    public void remove(SOS.ProcessControlBlock pi)
+    {
+        int i = pi.getSchedIndex();
+        if ((i < 0) || (i >= m_ready.size()) || (m_ready.get(i) != pi))
+        {
+            return;         // not Ready
+        }
+        SOS.ProcessControlBlock last = m_ready.remove(m_ready.size() - 1);
+        if (last != pi)
+        {
+            m_ready.set(i, last);
+            last.setSchedIndex(i);
+        }
+        pi.setSchedIndex(-1);
+    }//remove
+
+    /**
+     * next
+     *
+     * @see Scheduler#next
+     */
+    public SOS.ProcessControlBlock next()
+    {
+        if (m_ready.size() == 0)
+        {
+            return null;
+        }
+        SOS.ProcessControlBlock pi = m_ready.get(m_rand.nextInt(m_ready.size()));
+        remove(pi);
+        return pi;
+    }//next
+
+    /**
+     * getQuantum
+     *
+     * @see Scheduler#getQuantum
+     */
+    public int getQuantum(SOS.ProcessControlBlock pi)
+    {
+        return m_quantum;
+    }
+
+    /**
+     * setQuantum
+     *
+     * @see Scheduler#setQuantum
+     */
+    public void setQuantum(int instructions)
+    {
+        m_quantum = instructions;
+    }
+
+    /**
+     * size
+     *
+     * @see Scheduler#size
+     */
+    public int size()
+    {
+        return m_ready.size();
+    }
+
+    /**
+     * getName
+     *
+     * @see Scheduler#getName
+     */
+    public String getName()
+    {
+        return "Random";
+    }
+
+};//class RandomScheduler
@@ -0,0 +1,55 @@
+package sos;
+
+/**
+ * This interface is implemented by each of the policies the SOS can use to
+ * decide which page to evict when a page fault needs a frame and none is
+ * free.  The SOS tells the policy whenever a frame starts or stops holding a
+ * page and asks it for a victim each time it runs out of frames.
+ *
+ * @see SOS
+ * @see FrameTable
+ */
+public interface ReplacementPolicy
+{
+    /**
+     * add
+     *
+     * is called when a page is loaded into a frame
+     *
+     * @param frame the number of the frame
+     * @param now   the current time (in instructions)
+     */
+    void add(int frame, long now);
+
+    /**
+     * remove
+     *
+     * is called when a frame is freed without being chosen as a victim (e.g.,
+     * because its process exited).  Nothing happens if the frame isn't in
+     * use.
+     *
+     * @param frame the number of the frame
+     */
+    void remove(int frame);
+
+    /**
+     * victim
+     *
+     * chooses the frame whose page will be evicted and forgets about it.  The
+     * policy may clear the referenced bits of any pages while it looks (see
+     * {@link FrameTable#testAndClearReferenced}).
+     *
+     * @param frames the frames (and the pages they hold)
+     * @param now    the current time (in instructions)
+     * @return the number of the chosen frame -OR- -1 if no frame is in use
+     */
+    int victim(FrameTable frames, long now);
+
+    /**
+     * getName
+     *
+     * @return the name of the policy (used when reporting statistics)
+     */
+    String getName();
+
+};//interface ReplacementPolicy
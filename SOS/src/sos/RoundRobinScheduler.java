@@ -0,0 +1,97 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This scheduler runs the Ready processes in the order they became Ready.
+ *
+ * @see Scheduler
+ */
+public class RoundRobinScheduler implements Scheduler
+{
+    /**
+     * the quantum used unless {@link #setQuantum} is called
+     */
+    public static final int DEFAULT_QUANTUM = 500;
+
+    /**
+     * the Ready processes, oldest first
+     */
+    private LinkedList<SOS.ProcessControlBlock> m_ready = new LinkedList<SOS.ProcessControlBlock>();
+
+    /**
+     * the number of instructions a process may run before it is preempted
+     */
+    private int m_quantum = DEFAULT_QUANTUM;
+
+    /**
+     * add
+     *
+     * @see Scheduler#add
+     */
+    public void add(SOS.ProcessControlBlock pi)
+    {
+        m_ready.addLast(pi);
+    }
+
+    /**
+     * remove
+     *
+     * @see Scheduler#remove
+     */
+    public void remove(SOS.ProcessControlBlock pi)
+    {
+        m_ready.remove(pi);
+    }
+
+    /**
+     * next
+     *
+     * @see Scheduler#next
+     */
+    public SOS.ProcessControlBlock next()
+    {
+        return m_ready.pollFirst();
+    }
+
+    /**
+     * getQuantum
+     *
+     * @see Scheduler#getQuantum
+     */
+    public int getQuantum(SOS.ProcessControlBlock pi)
+    {
+        return m_quantum;
+    }
+
+    /**
+     * setQuantum
+     *
+     * @see Scheduler#setQuantum
+     */
+    public void setQuantum(int instructions)
+    {
+        m_quantum = instructions;
+    }
+
+    /**
+     * size
+     *
+     * @see Scheduler#size
+     */
+    public int size()
+    {
+        return m_ready.size();
+    }
+
+    /**
+     * getName
+     *
+     * @see Scheduler#getName
+     */
+    public String getName()
+    {
+        return "Round robin";
+    }
+
+};//class RoundRobinScheduler
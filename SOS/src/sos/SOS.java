@@ -1,6 +1,7 @@
 package sos;
 
 import java.util.*;
+import java.io.*;
 
 /**
  * This class contains the simulated operating system (SOS). Realistically it
@@ -38,6 +39,38 @@ public class SOS implements CPU.TrapHandler {
 	 */
 	private Vector<DeviceInfo> m_devices;
 
+	/**
+	 * the largest device id that is kept in m_deviceTable. Devices with
+	 * larger (or negative) ids go in m_sparseDevices instead so that a
+	 * program can't make the table arbitrarily large.
+	 */
+	public static final int MAX_DENSE_ID = 1023;
+
+	/**
+	 * the devices with ids from 0 to MAX_DENSE_ID indexed by id (null where
+	 * no device has that id) so that a system call can find its device
+	 * without searching m_devices. If two devices are given the same id the
+	 * first one is kept, as a search of m_devices would find it.
+	 */
+	private DeviceInfo m_deviceTable[] = new DeviceInfo[0];
+
+	/**
+	 * the devices whose ids don't fit in m_deviceTable, keyed by id. As in
+	 * m_deviceTable the first device registered with an id is kept.
+	 */
+	private HashMap<Integer, DeviceInfo> m_sparseDevices = new HashMap<Integer, DeviceInfo>();
+
+	/**
+	 * where the console and SYSCALL_OUTPUT collect their output -OR- null if
+	 * each value is printed as it is produced
+	 */
+	private OutputBuffer m_output = null;
+
+	/**
+	 * the start of each line printed by SYSCALL_OUTPUT
+	 */
+	private static final byte[] OUTPUT_PREFIX = OutputBuffer.toBytes("OUTPUT: ");
+
 	/**
 	 * a Vector of all the Program objects (not processes!) that are available
 	 * to the operating system. While this is unrealistic, doing it this way
@@ -47,13 +80,125 @@ public class SOS implements CPU.TrapHandler {
 	Vector<Program> m_programs = new Vector<Program>();
 
 	/**
-	 * This variable contains the position where the next program will be loaded
-	 * (when the createProcess method is called). Each time a process is
-	 * created, the value of this m_nextLoadPos is increased by the size of that
-	 * programs address space. (In a later assignment, well implement a more
-	 * intelligent memory management module for SOS.)
+	 * A list of all the blocks of RAM that are not currently allocated to a
+	 * process, sorted by address. Adjacent free blocks are always merged.
 	 */
-	int m_nextLoadPos = 0;
+	Vector<MemBlock> m_freeList = new Vector<MemBlock>();
+
+	/**
+	 * specifies how a free block is chosen for a new process (one of the
+	 * ALLOC constants)
+	 */
+	int m_allocPolicy = ALLOC_FIRST_FIT;
+
+	/**
+	 * the allocator used instead of m_freeList when m_allocPolicy is
+	 * ALLOC_BUDDY
+	 */
+	BuddyAllocator m_buddy = null;
+
+	/**
+	 * the page frames of RAM when m_allocPolicy is ALLOC_PAGED -OR- null. In
+	 * that case each process has a page table instead of one block of RAM.
+	 */
+	FrameTable m_frames = null;
+
+	/**
+	 * decides which page to evict when a page fault finds no free frame
+	 * (only used with ALLOC_PAGED)
+	 */
+	ReplacementPolicy m_replacement = null;
+
+	/**
+	 * where evicted pages that have been modified are kept -OR- null if pages
+	 * can't be evicted
+	 */
+	SwapFile m_swap = null;
+
+	/**
+	 * the number of page faults that loaded a page, the number of those pages
+	 * that came from the swap file, the number of pages evicted and the number
+	 * of those that had to be written to the swap file
+	 */
+	long m_pageFaults = 0;
+	long m_swapIns = 0;
+	long m_evictions = 0;
+	long m_writeBacks = 0;
+
+	/**
+	 * the shared text of each program that processes have been created from
+	 * (only used with ALLOC_PAGED)
+	 */
+	HashMap<Program, SharedText> m_texts = new HashMap<Program, SharedText>();
+
+	/**
+	 * the number of page faults that were handled by mapping a frame another
+	 * process had already loaded and the number of shared pages that were
+	 * copied because a process wrote to them
+	 */
+	long m_sharedMaps = 0;
+	long m_copyOnWrites = 0;
+
+	/**
+	 * the number of requests given to asynchronous devices and the number of
+	 * instructions the CPU was idle for while every process waited for them
+	 */
+	long m_ioRequests = 0;
+	long m_idleTicks = 0;
+
+	/**
+	 * the address just past the last block allocated. Next fit starts
+	 * searching from here.
+	 */
+	int m_nextFitAddr = 0;
+
+	/**
+	 * the number of address spaces that have been allocated
+	 */
+	int m_allocCount = 0;
+
+	/**
+	 * the number of allocations that failed for lack of a large enough free
+	 * block
+	 */
+	int m_allocFailures = 0;
+
+	/**
+	 * the number of allocations that failed even though there was enough free
+	 * memory in total (i.e., because of external fragmentation)
+	 */
+	int m_fragmentationFailures = 0;
+
+	/**
+	 * the maximum number of words compactStep moves at each scheduling
+	 * decision (0 disables incremental compaction)
+	 */
+	int m_compactChunk = COMPACT_CHUNK;
+
+	/**
+	 * the process whose image is currently being moved by compactStep -OR-
+	 * null if no move is in progress. This process may not run until the move
+	 * is finished.
+	 */
+	ProcessControlBlock m_compactProc = null;
+
+	/**
+	 * where m_compactProc's image is being moved from and to, its size and
+	 * how many of its words have been copied so far
+	 */
+	int m_compactFrom = 0;
+	int m_compactTo = 0;
+	int m_compactSize = 0;
+	int m_compactDone = 0;
+
+	/**
+	 * the number of process images that have been relocated, the number of
+	 * words that were copied to do it and the number of times a full
+	 * compaction was needed to create a process
+	 */
+	int m_compactMoves = 0;
+	long m_compactWords = 0;
+	int m_fullCompactions = 0;
 
 	/**
 	 * Each time a process is created it must be assigned a unique id. This
@@ -81,6 +226,70 @@ public class SOS implements CPU.TrapHandler {
 	 */
 	ProcessControlBlock m_currProcess = null;
 
+	/**
+	 * holds the processes that are in the Ready state and decides which one
+	 * runs next. The Running process is not in it.
+	 */
+	Scheduler m_scheduler = new RandomScheduler();
+
+	/**
+	 * m_scheduler if it has a real-time class -OR- null
+	 */
+	EDFScheduler m_edf = null;
+
+	/**
+	 * the processes that are in the Blocked state, in no particular order
+	 */
+	Vector<ProcessControlBlock> m_blocked = new Vector<ProcessControlBlock>();
+
+	/**
+	 * the number of processes that have exited and the total of their
+	 * turnaround times (in instructions)
+	 */
+	int m_finished = 0;
+	long m_totalTurnaround = 0;
+
+	/**
+	 * the number of times a Ready process has been given the CPU and the total
+	 * time those processes spent waiting for it (in instructions)
+	 */
+	long m_dispatches = 0;
+	long m_totalResponse = 0;
+
+	/**
+	 * the number of times a process was taken off the CPU by the timer
+	 */
+	long m_preemptions = 0;
+
+	/**
+	 * the CPUs (and their per-core state) when there is more than one -OR-
+	 * null. In that case m_CPU, m_currProcess and m_scheduler belong to
+	 * m_activeCore: the core whose trap is being handled.
+	 */
+	Vector<Core> m_cores = null;
+
+	/**
+	 * the core whose state is in m_CPU, m_currProcess and m_scheduler
+	 */
+	Core m_activeCore = null;
+
+	/**
+	 * set when every core should stop
+	 */
+	boolean m_shutdown = false;
+
+	/**
+	 * the number of processes taken from another core's Ready list
+	 */
+	long m_steals = 0;
+
+	/**
+	 * the sum and the sum of the squares of each finished process' CPU share
+	 * divided by its weight (used to calculate Jain's fairness index)
+	 */
+	double m_shareSum = 0;
+	double m_shareSumSq = 0;
+
 	// ======================================================================
 	// Constants
 	// ----------------------------------------------------------------------
@@ -94,6 +303,8 @@ public class SOS implements CPU.TrapHandler {
 	public static final int SYSCALL_READ = 5; /* get input from device */
 	public static final int SYSCALL_WRITE = 6; /* send output to device */
 	public static final int SYSCALL_COREDUMP = 9; /* print process state and exit */
+	public static final int SYSCALL_REALTIME = 10; /* run periodically with a deadline */
+	public static final int SYSCALL_FORK = 11; /* duplicate the current process */
 
 	// The error values.
 	public static final int DEVICE_NOT_FOUND = -1;
@@ -102,6 +313,25 @@ public class SOS implements CPU.TrapHandler {
 	public static final int NOT_OPENED = -4;
 	public static final int READ_ONLY = -5;
 	public static final int WRITE_ONLY = -6;
+	public static final int NOT_SCHEDULABLE = -7;
+	public static final int NO_MEMORY = -8;
+
+	// These constants define how a free block is chosen for a new process
+	public static final int ALLOC_FIRST_FIT = 0; /* lowest address that fits */
+	public static final int ALLOC_BEST_FIT = 1; /* smallest block that fits */
+	public static final int ALLOC_NEXT_FIT = 2; /* first fit after the last */
+	public static final int ALLOC_BUDDY = 3; /* binary buddy system */
+	public static final int ALLOC_PAGED = 4; /* page tables (any free frame) */
+
+	// The number of simulated nanoseconds it takes to read or write a page in
+	// the swap file
+	public static final int SWAP_LATENCY = 100000;
+
+	// The default number of words compacted at each scheduling decision
+	public static final int COMPACT_CHUNK = 256;
+
+	// Incremental compaction starts once free memory is this fragmented (%)
+	public static final int COMPACT_THRESHOLD = 25;
 
 	public static final int SYSCALL_EXEC = 7; /* spawn a new process */
 	public static final int SYSCALL_YIELD = 8; /*
@@ -123,7 +353,7 @@ public class SOS implements CPU.TrapHandler {
 		m_CPU = c;
 		m_CPU.registerTrapHandler(this);
 		m_RAM = r;
-		m_currProcess = new ProcessControlBlock(42);
+		m_freeList.add(new MemBlock(0, m_RAM.getSize()));
 		m_devices = new Vector<DeviceInfo>(0);
 	}// SOS ctor
 
@@ -137,21 +367,774 @@ public class SOS implements CPU.TrapHandler {
 	}
 
 	/**
-	 * Does a System.out.println as long as m_verbose is true
-	 **/
-	public static void debugPrintln(String s) {
-		if (m_verbose) {
-			System.out.println(s);
+	 * Does a System.out.println as long as m_verbose is true
+	 **/
+	public static void debugPrintln(String s) {
+		if (m_verbose) {
+			System.out.println(s);
+		}
+	}
+
+	/*
+	 * ======================================================================
+	 * Memory Block Management Methods
+	 * ----------------------------------------------------------------------
+	 */
+
+	/**
+	 * setAllocPolicy
+	 * 
+	 * selects how a free block is chosen for a new process. This must be
+	 * called before any processes are created.
+	 * 
+	 * @param policy
+	 *            one of the ALLOC constants
+	 */
+	public void setAllocPolicy(int policy) {
+		m_allocPolicy = policy;
+		if (policy == ALLOC_BUDDY) {
+			m_buddy = new BuddyAllocator(m_RAM.getSize());
+		} else {
+			m_buddy = null;
+		}
+		if (policy == ALLOC_PAGED) {
+			m_frames = new FrameTable(m_RAM.getSize());
+			m_replacement = new ClockReplacement(m_frames.getNumFrames());
+		} else {
+			m_frames = null;
+			m_replacement = null;
+		}
+	}// setAllocPolicy
+
+	/**
+	 * setReplacementPolicy
+	 * 
+	 * selects how the page to evict is chosen when there is no free frame.
+	 * This must be called after setAllocPolicy(ALLOC_PAGED) and before any
+	 * processes are created.
+	 * 
+	 * @param policy
+	 *            the policy (which must manage as many frames as RAM holds)
+	 */
+	public void setReplacementPolicy(ReplacementPolicy policy) {
+		m_replacement = policy;
+	}// setReplacementPolicy
+
+	/**
+	 * setSwapFile
+	 * 
+	 * gives the SOS somewhere to put modified pages when they are evicted.
+	 * Without one, a page fault that finds no free frame ends the simulation.
+	 * 
+	 * @param swap
+	 *            the swap file -OR- null
+	 */
+	public void setSwapFile(SwapFile swap) {
+		m_swap = swap;
+	}// setSwapFile
+
+	/**
+	 * getPageFaults
+	 * 
+	 * @return the number of page faults that loaded a page
+	 */
+	public long getPageFaults() {
+		return m_pageFaults;
+	}// getPageFaults
+
+	/**
+	 * allocBlock
+	 * 
+	 * finds a free block of RAM of at least the given size (using the policy
+	 * in m_allocPolicy) and removes the space from the free list.
+	 * 
+	 * @param size
+	 *            the number of words needed
+	 * 
+	 * @return the address of the allocated space -OR- -1 if no free block is
+	 *         large enough
+	 */
+	public int allocBlock(int size) {
+		if (m_buddy != null) {
+			int addr = m_buddy.alloc(size);
+			if (addr < 0) {
+				m_allocFailures++;
+				if (m_buddy.getFreeMemory() >= size) {
+					m_fragmentationFailures++;
+				}
+			} else {
+				m_allocCount++;
+			}
+			return addr;
+		}
+
+		int found = -1; // index of the chosen block in m_freeList
+		switch (m_allocPolicy) {
+		case ALLOC_BEST_FIT:
+			for (int i = 0; i < m_freeList.size(); i++) {
+				MemBlock mb = m_freeList.get(i);
+				if ((mb.getSize() >= size)
+						&& ((found < 0) || (mb.getSize() < m_freeList.get(found)
+								.getSize()))) {
+					found = i;
+				}
+			}// for
+			break;
+		case ALLOC_NEXT_FIT:
+			// start with the first block at or after m_nextFitAddr and wrap
+			int start = 0;
+			while ((start < m_freeList.size())
+					&& (m_freeList.get(start).getEnd() <= m_nextFitAddr)) {
+				start++;
+			}
+			for (int i = 0; i < m_freeList.size(); i++) {
+				int idx = (start + i) % m_freeList.size();
+				if (m_freeList.get(idx).getSize() >= size) {
+					found = idx;
+					break;
+				}
+			}// for
+			break;
+		default:
+			for (int i = 0; i < m_freeList.size(); i++) {
+				if (m_freeList.get(i).getSize() >= size) {
+					found = i;
+					break;
+				}
+			}// for
+			break;
+		}// switch
+
+		if (found < 0) {
+			m_allocFailures++;
+			if (getFreeMemory() >= size) {
+				m_fragmentationFailures++;
+			}
+			return -1;
+		}
+
+		// Take the space from the start of the block
+		MemBlock mb = m_freeList.get(found);
+		int addr = mb.getAddr();
+		if (mb.getSize() == size) {
+			m_freeList.remove(found);
+		} else {
+			m_freeList.set(found, new MemBlock(addr + size, mb.getSize() - size));
+		}
+		m_nextFitAddr = addr + size;
+		m_allocCount++;
+
+		return addr;
+	}// allocBlock
+
+	/**
+	 * freeBlock
+	 * 
+	 * returns a block of RAM to the free list, merging it with any free
+	 * neighbors
+	 * 
+	 * @param addr
+	 *            the address of the block
+	 * @param size
+	 *            the number of words in the block
+	 */
+	public void freeBlock(int addr, int size) {
+		if (m_buddy != null) {
+			m_buddy.free(addr);
+			return;
+		}
+
+		// find where the block belongs in the (sorted) free list
+		int i = 0;
+		while ((i < m_freeList.size()) && (m_freeList.get(i).getAddr() < addr)) {
+			i++;
+		}
+		MemBlock freed = new MemBlock(addr, size);
+		m_freeList.add(i, freed);
+
+		// merge with the following block
+		if (i + 1 < m_freeList.size()) {
+			MemBlock next = m_freeList.get(i + 1);
+			if (freed.getEnd() == next.getAddr()) {
+				freed = new MemBlock(freed.getAddr(), freed.getSize()
+						+ next.getSize());
+				m_freeList.set(i, freed);
+				m_freeList.remove(i + 1);
+			}
+		}
+
+		// merge with the preceding block
+		if (i > 0) {
+			MemBlock prev = m_freeList.get(i - 1);
+			if (prev.getEnd() == freed.getAddr()) {
+				m_freeList.set(i - 1, new MemBlock(prev.getAddr(), prev.getSize()
+						+ freed.getSize()));
+				m_freeList.remove(i);
+			}
+		}
+	}// freeBlock
+
+	/**
+	 * freeCurrProcessMemBlock
+	 * 
+	 * releases the address space of the current process (which must be
+	 * loaded in the CPU's registers)
+	 */
+	private void freeCurrProcessMemBlock() {
+		if (m_frames != null) {
+			freePages(m_CPU.getPageTable());
+			return;
+		}
+		int base = m_CPU.getBASE();
+		int lim = m_CPU.getLIM();
+		freeBlock(base, lim - base + 1);
+	}// freeCurrProcessMemBlock
+
+	/**
+	 * getFreeMemory
+	 * 
+	 * @return the total number of words in all free blocks
+	 */
+	public int getFreeMemory() {
+		if (m_buddy != null) {
+			return m_buddy.getFreeMemory();
+		}
+		if (m_frames != null) {
+			return m_frames.getFreeFrames() << CPU.PAGE_SHIFT;
+		}
+		int total = 0;
+		for (MemBlock mb : m_freeList) {
+			total += mb.getSize();
+		}
+		return total;
+	}// getFreeMemory
+
+	/**
+	 * getLargestFreeBlock
+	 * 
+	 * @return the number of words in the largest free block
+	 */
+	public int getLargestFreeBlock() {
+		if (m_buddy != null) {
+			return m_buddy.getLargestFreeBlock();
+		}
+		if (m_frames != null) {
+			return getFreeMemory(); // any frame will do so nothing is too small
+		}
+		int largest = 0;
+		for (MemBlock mb : m_freeList) {
+			largest = Math.max(largest, mb.getSize());
+		}
+		return largest;
+	}// getLargestFreeBlock
+
+	/**
+	 * getFragmentation
+	 * 
+	 * @return the external fragmentation of free memory as a percentage: 0
+	 *         means all free memory is in one block, values near 100 mean it
+	 *         is scattered in many small blocks
+	 */
+	public int getFragmentation() {
+		int free = getFreeMemory();
+		if (free == 0) {
+			return 0;
+		}
+		return 100 - (100 * getLargestFreeBlock() / free);
+	}// getFragmentation
+
+	/**
+	 * getFreeBlockCount
+	 * 
+	 * @return the number of free blocks
+	 */
+	public int getFreeBlockCount() {
+		if (m_buddy != null) {
+			return m_buddy.getFreeBlockCount();
+		}
+		if (m_frames != null) {
+			return m_frames.getFreeFrames();
+		}
+		return m_freeList.size();
+	}// getFreeBlockCount
+
+	/**
+	 * allocPages
+	 * 
+	 * creates the page table for a new address space. No page is in RAM yet:
+	 * each one is given a frame by interruptPageFault the first time it is
+	 * used, so the address spaces of all the processes may add up to more
+	 * than RAM holds.
+	 * 
+	 * In a page table entry without PTE_VALID, the frame number field holds
+	 * the page's swap slot + 1 or 0 if the page has never been written to the
+	 * swap file. A page that is VALID but not writable is shared with other
+	 * processes and is copied the first time it is written.
+	 * 
+	 * @param size
+	 *            the number of words in the address space
+	 * 
+	 * @return the page table
+	 */
+	private int[] allocPages(int size) {
+		int numPages = (size + CPU.PAGE_SIZE - 1) >> CPU.PAGE_SHIFT;
+		m_allocCount++;
+		return new int[numPages];
+	}// allocPages
+
+	/**
+	 * freePages
+	 * 
+	 * returns the frames and swap slots used by an address space
+	 * 
+	 * @param pageTable
+	 *            the address space's page table
+	 */
+	private void freePages(int[] pageTable) {
+		for (int page = 0; page < pageTable.length; page++) {
+			int pte = pageTable[page];
+			if ((pte & CPU.PTE_VALID) != 0) {
+				int frame = pte >>> CPU.PTE_FRAME_SHIFT;
+				if (m_frames.unmap(frame, pageTable, page) == 0) {
+					unshare(frame);
+					m_replacement.remove(frame);
+					m_frames.free(frame);
+				}
+			} else if ((pte >>> CPU.PTE_FRAME_SHIFT) != 0) {
+				m_swap.free((pte >>> CPU.PTE_FRAME_SHIFT) - 1);
+			}
+			pageTable[page] = 0;
+		}
+	}// freePages
+
+	/**
+	 * getSharedText
+	 * 
+	 * @param prog
+	 *            a program
+	 * @return the shared text of the program (which is created the first time
+	 *         a process is created from the program)
+	 */
+	private SharedText getSharedText(Program prog) {
+		SharedText text = m_texts.get(prog);
+		if (text == null) {
+			text = new SharedText(prog.export());
+			m_texts.put(prog, text);
+		}
+		return text;
+	}// getSharedText
+
+	/**
+	 * unshare
+	 * 
+	 * makes sure no program's shared text refers to a frame. This is called
+	 * when the frame is about to be freed or given to a single process.
+	 * 
+	 * @param frame
+	 *            the number of the frame
+	 */
+	private void unshare(int frame) {
+		for (SharedText text : m_texts.values()) {
+			for (int page = 0; page < text.frames.length; page++) {
+				if (text.frames[page] == frame) {
+					text.frames[page] = -1;
+				}
+			}
+		}
+	}// unshare
+
+	/**
+	 * allocFrame
+	 * 
+	 * finds a frame for a page fault, evicting a page if none is free. If that
+	 * isn't possible the simulation ends.
+	 * 
+	 * @return the number of the frame
+	 */
+	private int allocFrame() {
+		int frame = m_frames.alloc();
+		if (frame < 0) {
+			frame = evictPage();
+		}
+		if (frame < 0) {
+			System.out.println("NO RAM");
+			printMemAlloc();
+			System.exit(0);
+		}
+		return frame;
+	}// allocFrame
+
+	/**
+	 * fillPage
+	 * 
+	 * gets the initial contents of a page that has never been written to the
+	 * swap file: the part of the program image that lies on the page (which
+	 * is loaded at logical address 4) followed by zeros
+	 * 
+	 * @param image
+	 *            the process' program image
+	 * @param page
+	 *            the page number
+	 * @param words
+	 *            where to put the contents of the page
+	 */
+	private void fillPage(int[] image, int page, int[] words) {
+		int first = (page << CPU.PAGE_SHIFT) - 4;
+		for (int i = 0; i < words.length; i++) {
+			int j = first + i;
+			words[i] = ((j >= 0) && (j < image.length)) ? image[j] : 0;
+		}
+	}// fillPage
+
+	/**
+	 * evictPage
+	 * 
+	 * frees a frame by asking the replacement policy for a victim. If the
+	 * victim has been modified since it was loaded it is written to the swap
+	 * file; otherwise it can simply be loaded again from where it came from.
+	 * Every page that maps the frame is evicted.
+	 * 
+	 * Pages are only evicted with a single CPU: another CPU's TLB could still
+	 * hold the victim and would go on using the frame.
+	 * 
+	 * @return the number of the frame -OR- -1 if no page can be evicted
+	 */
+	private int evictPage() {
+		if ((m_swap == null) || (getNumCores() > 1)) {
+			return -1;
+		}
+		int frame = m_replacement.victim(m_frames, getTicks());
+		if (frame < 0) {
+			return -1;
+		}
+
+		// A shared page is dirty if it was modified before it was shared
+		// (e.g., by a process that then forked)
+		FrameTable.Mapping mappings = m_frames.getMappings(frame);
+		int page = mappings.page;
+		boolean dirty = false;
+		for (FrameTable.Mapping m = mappings; m != null; m = m.next) {
+			dirty |= (m.table[m.page] & CPU.PTE_DIRTY) != 0;
+		}
+		int pte = 0;
+		if (dirty) {
+			int[] words = new int[CPU.PAGE_SIZE];
+			int slot = m_swap.alloc();
+			m_RAM.read(frame << CPU.PAGE_SHIFT, words);
+			try {
+				m_swap.write(slot, words);
+			} catch (IOException e) {
+				System.out.println("ERROR: Could not write to the swap file ("
+						+ e + ")");
+				System.exit(0);
+			}
+			m_RAM.getClock().advance(SWAP_LATENCY);
+			for (int i = 1; i < m_frames.getMapCount(frame); i++) {
+				m_swap.share(slot);
+			}
+			pte = (slot + 1) << CPU.PTE_FRAME_SHIFT;
+			m_writeBacks++;
+		}
+		for (FrameTable.Mapping m = mappings; m != null; m = m.next) {
+			m.table[m.page] = pte;
+		}
+		unshare(frame);
+		m_frames.free(frame);
+		m_evictions++;
+
+		// The TLB may still hold the victim and the replacement policy may
+		// have cleared referenced bits that the TLB would otherwise not set
+		// again
+		m_CPU.flushTLB();
+
+		debugPrintln("Evicted page " + page + " from frame " + frame);
+		return m_frames.alloc();
+	}// evictPage
+
+	/**
+	 * setCompactChunk
+	 * 
+	 * sets how much work the incremental compactor may do at each scheduling
+	 * decision
+	 * 
+	 * @param words
+	 *            the maximum number of words to move (0 disables incremental
+	 *            compaction, although a full compaction is still done when a
+	 *            process can't otherwise be created)
+	 */
+	public void setCompactChunk(int words) {
+		m_compactChunk = words;
+	}// setCompactChunk
+
+	/**
+	 * startCompaction
+	 * 
+	 * picks the lowest process image that has a free block directly below it
+	 * and reserves that free block as the image's new home. The image itself
+	 * is moved later by compactStep.
+	 * 
+	 * @param skip
+	 *            a process that must not be moved (because it is about to run)
+	 *            -OR- null
+	 * 
+	 * @return true if a move was started
+	 */
+	private boolean startCompaction(ProcessControlBlock skip) {
+		// there's nothing to gain unless free memory is in more than one piece
+		if ((m_buddy != null) || (m_frames != null) || (m_freeList.size() < 2)) {
+			return false;
+		}
+
+		// walk the processes and the free list together in address order
+		Vector<ProcessControlBlock> procs = new Vector<ProcessControlBlock>(
+				m_processes);
+		Collections.sort(procs);
+		int i = 0;
+		for (ProcessControlBlock pi : procs) {
+			int base = pi.getRegister(CPU.BASE);
+			while ((i < m_freeList.size())
+					&& (m_freeList.get(i).getEnd() < base)) {
+				i++;
+			}
+			if (i >= m_freeList.size()) {
+				break;
+			}
+			MemBlock hole = m_freeList.get(i);
+			if ((hole.getEnd() != base) || (pi == skip)) {
+				continue;
+			}
+
+			// Reserve the hole so that it can't be allocated mid-move
+			m_freeList.remove(i);
+			m_compactProc = pi;
+			m_compactFrom = base;
+			m_compactTo = hole.getAddr();
+			m_compactSize = pi.getRegister(CPU.LIM) - base + 1;
+			m_compactDone = 0;
+			return true;
+		}// for
+
+		return false;
+	}// startCompaction
+
+	/**
+	 * compactStep
+	 * 
+	 * does a bounded amount of compaction: moves the next piece of a process
+	 * image down into the free block below it, starting a new move if none is
+	 * in progress. Images are always moved toward address 0 so the free blocks
+	 * gradually merge into one block at the top of RAM.
+	 * 
+	 * All the processes' registers must be saved before this is called.
+	 * 
+	 * @param maxWords
+	 *            the maximum number of words to move
+	 * @param skip
+	 *            a process that must not be moved -OR- null
+	 * 
+	 * @return the number of words moved
+	 */
+	private int compactStep(int maxWords, ProcessControlBlock skip) {
+		if ((m_compactProc == null) && !startCompaction(skip)) {
+			return 0;
+		}
+
+		// Copying in ascending order is safe because the image moves down
+		int len = Math.min(maxWords, m_compactSize - m_compactDone);
+		m_RAM.copy(m_compactFrom + m_compactDone, m_compactTo + m_compactDone,
+				len);
+		m_compactDone += len;
+		m_compactWords += len;
+
+		if (m_compactDone == m_compactSize) {
+			finishCompaction();
+		}
+		return len;
+	}// compactStep
+
+	/**
+	 * finishCompaction
+	 * 
+	 * moves whatever is left of the image currently being relocated,
+	 * rewrites the process' BASE and LIM registers and frees the space that
+	 * it no longer uses.
+	 */
+	private void finishCompaction() {
+		if (m_compactProc == null) {
+			return;
+		}
+		int len = m_compactSize - m_compactDone;
+		if (len > 0) {
+			m_RAM.copy(m_compactFrom + m_compactDone, m_compactTo
+					+ m_compactDone, len);
+			m_compactWords += len;
+		}
+
+		// The PC and SP are logical addresses so they don't change
+		m_compactProc.relocate(m_compactTo);
+		freeBlock(m_compactTo + m_compactSize, m_compactFrom - m_compactTo);
+		debugPrintln("Relocated process with id "
+				+ m_compactProc.getProcessId() + " from " + m_compactFrom
+				+ " to " + m_compactTo);
+		m_compactMoves++;
+		m_compactProc = null;
+	}// finishCompaction
+
+	/**
+	 * compactAll
+	 * 
+	 * compacts RAM completely so that all free memory is in a single block.
+	 * All the processes' registers must be saved before this is called.
+	 */
+	private void compactAll() {
+		finishCompaction();
+		while (startCompaction(null)) {
+			finishCompaction();
+		}
+		m_fullCompactions++;
+	}// compactAll
+
+	/**
+	 * getTicks
+	 * 
+	 * @return the current time as measured by the number of instructions the
+	 *         CPU has executed
+	 */
+	private long getTicks() {
+		if (m_cores == null) {
+			return m_CPU.getInstructionCount();
+		}
+		long ticks = 0;
+		for (Core c : m_cores) {
+			ticks += c.cpu.getInstructionCount();
+		}
+		return ticks;
+	}// getTicks
+
+	/**
+	 * printMemAlloc **DEBUGGING**
+	 * 
+	 * outputs the contents of m_freeList
+	 */
+	private void printMemAlloc() {
+		if (!m_verbose) {
+			return;
+		}
+		if (m_buddy != null) {
+			debugPrintln("Free memory: " + getFreeMemory() + " words in "
+					+ getFreeBlockCount() + " buddy blocks");
+			return;
+		}
+		if (m_frames != null) {
+			debugPrintln("Free memory: " + getFreeMemory() + " words in "
+					+ getFreeBlockCount() + " of " + m_frames.getNumFrames()
+					+ " page frames");
+			return;
+		}
+		debugPrintln("----------------------------------------------------------------------");
+		debugPrint("Free list: ");
+		for (MemBlock mb : m_freeList) {
+			debugPrint(mb + " ");
+		}
+		debugPrintln("");
+		debugPrintln("Free memory: " + getFreeMemory() + " words in "
+				+ m_freeList.size() + " blocks (" + getFragmentation()
+				+ "% fragmented)");
+		debugPrintln("----------------------------------------------------------------------");
+	}// printMemAlloc
+
+	/**
+	 * printStatistics
+	 * 
+	 * outputs a summary of how the simulation went. This is called when the
+	 * last process exits.
+	 */
+	public void printStatistics() {
+		System.out.println("Memory: " + m_allocCount + " allocations, "
+				+ m_allocFailures + " failures (" + m_fragmentationFailures
+				+ " due to fragmentation), " + getFreeMemory()
+				+ " words free in " + getFreeBlockCount() + " blocks ("
+				+ getFragmentation() + "% fragmented)");
+		if (m_buddy != null) {
+			System.out.println("Buddy allocator internal fragmentation: "
+					+ m_buddy.getInternalFragmentation() + "%");
+		} else if (m_frames != null) {
+			long hits = 0;
+			long misses = 0;
+			if (m_cores == null) {
+				hits = m_CPU.getTLBHits();
+				misses = m_CPU.getTLBMisses();
+			} else {
+				for (Core c : m_cores) {
+					hits += c.cpu.getTLBHits();
+					misses += c.cpu.getTLBMisses();
+				}
+			}
+			System.out.println("Paging: " + m_frames.getNumFrames()
+					+ " frames of " + CPU.PAGE_SIZE + " words, TLB " + hits
+					+ " hits, " + misses + " misses ("
+					+ (100 * hits / Math.max(1, hits + misses)) + "% hit rate)");
+			System.out.println("Page replacement (" + m_replacement.getName()
+					+ "): " + m_pageFaults + " faults ("
+					+ (m_pageFaults * 1000 / Math.max(1, getTicks()))
+					+ " per 1000 instructions), " + m_swapIns
+					+ " swapped in, " + m_evictions + " evictions, "
+					+ m_writeBacks + " written to swap, " + m_sharedMaps
+					+ " shared, " + m_copyOnWrites + " copied on write");
+		} else {
+			System.out.println("Compaction: " + m_compactMoves
+					+ " processes relocated, " + m_compactWords
+					+ " words moved, " + m_fullCompactions
+					+ " full compactions");
 		}
-	}
 
-	/*
-	 * ======================================================================
-	 * Memory Block Management Methods
-	 * ----------------------------------------------------------------------
-	 */
+		long ticks = Math.max(1, getTicks());
+		System.out.println("Scheduler (" + m_scheduler.getName() + "): "
+				+ m_finished + " processes finished in " + ticks
+				+ " instructions, throughput "
+				+ (m_finished * 1000000L / ticks)
+				+ " processes per million instructions, " + m_preemptions
+				+ " preemptions");
+		System.out.println("Average turnaround: "
+				+ (m_totalTurnaround / Math.max(1, m_finished))
+				+ " instructions, average response: "
+				+ (m_totalResponse / Math.max(1, m_dispatches))
+				+ " instructions");
+		if (m_ioRequests > 0) {
+			System.out.println("Asynchronous I/O: " + m_ioRequests
+					+ " requests, CPU idle for " + m_idleTicks
+					+ " instructions (" + (m_idleTicks * 100 / ticks) + "%)");
+		}
+		for (DeviceInfo info : m_devices) {
+			if (info.getDevice() instanceof DiskDevice) {
+				((DiskDevice) info.getDevice()).printStatistics();
+			} else if (info.getDevice() instanceof FileDevice) {
+				((FileDevice) info.getDevice()).printStatistics();
+			}
+		}
 
-	// None yet!
+		// Jain's index is 1 if every process got the same (weighted) share of
+		// the CPU while it existed and 1/n if one process got all of it
+		double fairness = 1.0;
+		if (m_shareSumSq > 0) {
+			fairness = m_shareSum * m_shareSum / (m_finished * m_shareSumSq);
+		}
+		System.out.println("Fairness (Jain's index of weighted CPU share): "
+				+ String.format("%.3f", fairness));
+		if (m_edf != null) {
+			m_edf.printStatistics();
+		}
+		if (m_cores != null) {
+			for (int i = 0; i < m_cores.size(); i++) {
+				Core c = m_cores.get(i);
+				System.out.println("Core " + i + ": "
+						+ c.cpu.getInstructionCount() + " instructions, "
+						+ c.idleWaits + " idle waits");
+			}
+			System.out.println("Work stealing: " + m_steals
+					+ " processes taken from another core");
+		}
+	}// printStatistics
 
 	/*
 	 * ======================================================================
@@ -171,15 +1154,116 @@ public class SOS implements CPU.TrapHandler {
 	 * 
 	 */
 	public void registerDevice(Device dev, int id) {
-		m_devices.add(new DeviceInfo(dev, id));
+		DeviceInfo info = new DeviceInfo(dev, id);
+		m_devices.add(info);
+		if ((id < 0) || (id > MAX_DENSE_ID)) {
+			if (!m_sparseDevices.containsKey(id)) {
+				m_sparseDevices.put(id, info);
+			}
+		} else {
+			if (id >= m_deviceTable.length) {
+				m_deviceTable = Arrays.copyOf(m_deviceTable, Math.min(
+						MAX_DENSE_ID + 1,
+						Math.max(id + 1, 2 * m_deviceTable.length)));
+			}
+			if (m_deviceTable[id] == null) {
+				m_deviceTable[id] = info;
+			}
+		}
+		if (dev instanceof ConsoleDevice) {
+			((ConsoleDevice) dev).setOutputBuffer(m_output);
+		}
+		if (dev instanceof AsyncDevice) {
+			((AsyncDevice) dev).setInterruptController(m_CPU
+					.getInterruptController());
+		}
 	}// registerDevice
 
+	/**
+	 * setOutputBuffer
+	 * 
+	 * makes the console devices and SYSCALL_OUTPUT collect their output in a
+	 * buffer instead of printing each value as it is produced
+	 * 
+	 * @param output
+	 *            the buffer -OR- null to print each value
+	 */
+	public void setOutputBuffer(OutputBuffer output) {
+		m_output = output;
+		for (DeviceInfo info : m_devices) {
+			if (info.getDevice() instanceof ConsoleDevice) {
+				((ConsoleDevice) info.getDevice()).setOutputBuffer(output);
+			}
+		}
+	}// setOutputBuffer
+
+	/**
+	 * flushDevices
+	 * 
+	 * makes every device that buffers writes (e.g., a FileDevice) save them
+	 * and prints any buffered output. This is called when the last process
+	 * exits.
+	 */
+	public void flushDevices() {
+		if (m_output != null) {
+			try {
+				m_output.flush();
+			} catch (IOException e) {
+				System.out.println("ERROR: Could not flush the output (" + e
+						+ ")");
+			}
+		}
+		for (DeviceInfo info : m_devices) {
+			if (info.getDevice() instanceof Flushable) {
+				try {
+					((Flushable) info.getDevice()).flush();
+				} catch (IOException e) {
+					System.out.println("ERROR: Could not flush device "
+							+ info.getId() + " (" + e + ")");
+				}
+			}
+		}
+	}// flushDevices
+
 	/*
 	 * ======================================================================
 	 * Process Management Methods
 	 * ----------------------------------------------------------------------
 	 */
 
+	/**
+	 * setScheduler
+	 * 
+	 * selects the policy used to decide which process runs next. This must be
+	 * called before any processes are created.
+	 * 
+	 * @param sched
+	 *            the scheduler
+	 */
+	public void setScheduler(Scheduler sched) {
+		m_scheduler = sched;
+		m_edf = null;
+		if (sched instanceof EDFScheduler) {
+			m_edf = (EDFScheduler) sched;
+		}
+	}// setScheduler
+
+	/**
+	 * makeReady
+	 * 
+	 * moves a process into the Ready state
+	 * 
+	 * @param pi
+	 *            the process
+	 */
+	private void makeReady(ProcessControlBlock pi) {
+		pi.readyTime = getTicks();
+		m_scheduler.add(pi);
+		if (m_cores != null) {
+			notifyAll(); // wake up any idle cores
+		}
+	}// makeReady
+
 	/**
 	 * printProcessTable **DEBUGGING**
 	 * 
@@ -209,62 +1293,184 @@ public class SOS implements CPU.TrapHandler {
 		debugPrintln("removing process with id "+id +" at "+base);
 		ProcessControlBlock toRemove = m_currProcess;
 		m_processes.remove(toRemove);
+		dequeue(toRemove);
+		// Close any devices it left open
+		for (DeviceInfo di : m_devices) {
+			if (di.containsProcess(toRemove)) {
+				closeDevice(di, toRemove);
+			}
+		}
+		m_finished++;
+		long lifetime = Math.max(1, getTicks() - toRemove.createTime);
+		m_totalTurnaround += lifetime;
+		double share = (double) toRemove.getCpuTime(m_CPU) / lifetime
+				/ CFSScheduler.getWeight(toRemove);
+		m_shareSum += share;
+		m_shareSumSq += share * share;
+		if (m_edf != null) {
+			m_edf.leave(toRemove);
+		}
+		m_currProcess = null;
+		freeCurrProcessMemBlock();
+		printMemAlloc();
 		scheduleNewProcess();
 
 		
 	}// removeCurrentProcess
 
 	/**
-	 * getRandomProcess
+	 * enqueue
 	 * 
-	 * selects a non-Blocked process at random from the ProcessTable.
+	 * adds a process to the end of a list (e.g., m_blocked) and remembers
+	 * where it is so that it can be removed again in constant time
 	 * 
-	 * @return a reference to the ProcessControlBlock struct of the selected
-	 *         process -OR- null if no non-blocked process exists
+	 * @param queue
+	 *            the list
+	 * @param pi
+	 *            the process to add. It must not be in another list.
 	 */
-	ProcessControlBlock getRandomProcess() {
-		// Calculate a random offset into the m_processes list
-		int offset = ((int) (Math.random() * 2147483647)) % m_processes.size();
+	private void enqueue(Vector<ProcessControlBlock> queue,
+			ProcessControlBlock pi) {
+		pi.queue = queue;
+		pi.queueIndex = queue.size();
+		queue.add(pi);
+	}// enqueue
 
-		// Iterate until a non-blocked process is found
-		ProcessControlBlock newProc = null;
-		for (int i = 0; i < m_processes.size(); i++) {
-			newProc = m_processes.get((i + offset) % m_processes.size());
-			if (!newProc.isBlocked()) {
-				return newProc;
-			}
-		}// for
-
-		return null; // no processes are Ready
-	}// getRandomProcess
+	/**
+	 * dequeue
+	 * 
+	 * removes a process from whichever list it was enqueued in (if any). The
+	 * last process in the list takes its place so nothing needs to be
+	 * shifted.
+	 * 
+	 * @param pi
+	 *            the process to remove
+	 */
+	private void dequeue(ProcessControlBlock pi) {
+		Vector<ProcessControlBlock> queue = pi.queue;
+		if (queue == null) {
+			return;
+		}
+		ProcessControlBlock last = queue.remove(queue.size() - 1);
+		if (last != pi) {
+			queue.set(pi.queueIndex, last);
+			last.queueIndex = pi.queueIndex;
+		}
+		pi.queue = null;
+		pi.queueIndex = -1;
+	}// dequeue
 
 	/**
 	 * scheduleNewProcess
 	 * 
-	 * gets a random process to be the new current process or exits the program
-	 * if there are no more processes
+	 * asks the scheduler for a new current process or exits the program if
+	 * there are no more processes
 	 */
 	public void scheduleNewProcess() {
 		// %%%You will implement this method
 		if(m_processes.size()==0)
 		{
 			System.out.println("No more processes to run. Stopping.");
+			flushDevices();
+			printStatistics();
+			if (m_cores != null) {
+				shutdown();
+				m_currProcess = null;
+				return;
+			}
 			System.exit(0);
 		}
-		ProcessControlBlock newProcess = getRandomProcess();
+		// The process leaving the CPU (if it hasn't exited) is a candidate too
+		ProcessControlBlock old = m_currProcess;
+		if (old != null) {
+			old.save(m_CPU);
+			if (!old.isBlocked()) {
+				makeReady(old);
+			}
+		}
+		m_currProcess = null;
+
+		ProcessControlBlock newProcess = nextProcess();
+
+		// Every process is waiting for a device that will interrupt so the
+		// CPU idles until one does
+		while ((newProcess == null) && (m_cores == null)
+				&& m_CPU.getInterruptController().isBusy()) {
+			debugPrintln("Idling until a device interrupts");
+			m_idleTicks += m_CPU.idle();
+			newProcess = nextProcess();
+		}
+
 		if (newProcess == null) {
+			if (m_cores != null) {
+				return; // this core idles until there is work to do
+			}
 			System.out.println("THIS SHOULDN'T BE HAPPENING YET");
 			System.exit(0);
 		}
-		ProcessControlBlock old = m_currProcess;
-		old.save(m_CPU);
+
+		// Now that every process' registers are saved, spend a little time
+		// compacting RAM. The chosen process can't run until it is in place.
+		// (With more than one core the other processes may be running.)
+		if (newProcess == m_compactProc) {
+			finishCompaction();
+		} else if ((m_cores == null) && (m_compactChunk > 0)
+				&& ((m_compactProc != null) || (getFragmentation() >= COMPACT_THRESHOLD))) {
+			compactStep(m_compactChunk, newProcess);
+		}
+
+		dispatch(newProcess);
+		
+		
+	}// scheduleNewProcess
+
+	/**
+	 * nextProcess
+	 * 
+	 * asks the scheduler for the next process to run. With more than one core
+	 * a core whose own Ready list is empty takes a process from the core with
+	 * the most Ready processes.
+	 * 
+	 * @return the process -OR- null if no process is Ready
+	 */
+	private ProcessControlBlock nextProcess() {
+		ProcessControlBlock next = m_scheduler.next();
+		if ((next != null) || (m_cores == null)) {
+			return next;
+		}
+
+		Core victim = null;
+		for (Core c : m_cores) {
+			if ((c.scheduler != m_scheduler)
+					&& ((victim == null) || (c.scheduler.size() > victim.scheduler
+							.size()))) {
+				victim = c;
+			}
+		}// for
+		if ((victim == null) || (victim.scheduler.size() == 0)) {
+			return null;
+		}
+		m_steals++;
+		return victim.scheduler.next();
+	}// nextProcess
+
+	/**
+	 * dispatch
+	 * 
+	 * makes a Ready process the current process and loads it into the CPU
+	 * 
+	 * @param newProcess
+	 *            the process (which must already be out of the Ready list)
+	 */
+	private void dispatch(ProcessControlBlock newProcess) {
 		m_currProcess = newProcess;
+		m_dispatches++;
+		m_totalResponse += getTicks() - newProcess.readyTime;
 		int id = m_currProcess.getProcessId();
 		debugPrintln("Switched to process with id " + id);
 		m_currProcess.restore(m_CPU);
-		
-		
-	}// scheduleNewProcess
+		m_CPU.startQuantum(m_scheduler.getQuantum(m_currProcess));
+	}// dispatch
 
 	/**
 	 * addProgram
@@ -282,6 +1488,164 @@ public class SOS implements CPU.TrapHandler {
 		m_programs.add(prog);
 	}// addProgram
 
+	/*
+	 * ======================================================================
+	 * Multicore Methods
+	 * ----------------------------------------------------------------------
+	 */
+
+	/**
+	 * enableMulticore
+	 * 
+	 * gets the SOS ready to manage more than one CPU. The CPU passed to the
+	 * constructor becomes core 0. Each core runs in its own thread (see
+	 * {@link #runCore}) and has its own Ready list. Only one core at a time
+	 * may be inside the SOS so every trap is handled while holding the SOS'
+	 * lock.
+	 * 
+	 * Compaction is turned off because processes on other cores may be
+	 * running while a trap is handled.
+	 */
+	public synchronized void enableMulticore() {
+		if (m_cores != null) {
+			return;
+		}
+		m_cores = new Vector<Core>();
+		m_activeCore = new Core(m_CPU, m_scheduler);
+		m_activeCore.currProcess = m_currProcess;
+		m_cores.add(m_activeCore);
+	}// enableMulticore
+
+	/**
+	 * addCPU
+	 * 
+	 * adds another core. This must be called before the simulation starts.
+	 * 
+	 * @param cpu
+	 *            the CPU (which must share this SOS' RAM)
+	 * @param sched
+	 *            the scheduler that manages the core's Ready list
+	 */
+	public synchronized void addCPU(CPU cpu, Scheduler sched) {
+		enableMulticore();
+		m_cores.add(new Core(cpu, sched));
+	}// addCPU
+
+	/**
+	 * getNumCores
+	 * 
+	 * @return the number of CPUs the SOS is managing
+	 */
+	public int getNumCores() {
+		return (m_cores == null) ? 1 : m_cores.size();
+	}// getNumCores
+
+	/**
+	 * runCore
+	 * 
+	 * runs one core until the simulation ends. This should be called from a
+	 * separate thread for each core. A core that has no process waits until
+	 * one is Ready.
+	 * 
+	 * @param i
+	 *            the number of the core
+	 */
+	public void runCore(int i) {
+		Core c = m_cores.get(i);
+		synchronized (this) {
+			switchTo(c);
+
+			// A core without a process takes a timer interrupt before its
+			// first instruction so that it is given one the same way as after
+			// any other trap
+			if (m_currProcess == null) {
+				m_CPU.endQuantum();
+			}
+		}
+		c.cpu.run();
+	}// runCore
+
+	/**
+	 * shutdown
+	 * 
+	 * makes every core stop (either now if it's idle or at its next trap)
+	 */
+	public synchronized void shutdown() {
+		m_shutdown = true;
+		notifyAll();
+	}// shutdown
+
+	/**
+	 * switchTo
+	 * 
+	 * makes a core's state the current state. The caller must hold the SOS'
+	 * lock.
+	 * 
+	 * @param c
+	 *            the core
+	 */
+	private void switchTo(Core c) {
+		if (m_activeCore == c) {
+			return;
+		}
+		m_activeCore.currProcess = m_currProcess;
+		m_CPU = c.cpu;
+		m_currProcess = c.currProcess;
+		m_scheduler = c.scheduler;
+		m_activeCore = c;
+	}// switchTo
+
+	/**
+	 * isRunning
+	 * 
+	 * @param pi
+	 *            a process
+	 * @return true if the process is the current process of any core (and so
+	 *         must not be put in a Ready list)
+	 */
+	private boolean isRunning(ProcessControlBlock pi) {
+		if (pi == m_currProcess) {
+			return true;
+		}
+		if (m_cores != null) {
+			// The active core's own field is out of date (see switchTo)
+			for (Core c : m_cores) {
+				if ((c != m_activeCore) && (c.currProcess == pi)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}// isRunning
+
+	/**
+	 * waitForProcess
+	 * 
+	 * makes a core with no current process wait until there is a process for
+	 * it to run (or the simulation ends). The caller must hold the SOS' lock
+	 * and the core must be active.
+	 * 
+	 * @param c
+	 *            the core
+	 */
+	private void waitForProcess(Core c) {
+		while ((m_currProcess == null) && !m_shutdown) {
+			ProcessControlBlock next = nextProcess();
+			if (next != null) {
+				dispatch(next);
+				break;
+			}
+
+			c.idleWaits++;
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				// just check again
+			}
+			switchTo(c);
+		}// while
+	}// waitForProcess
+
 	/*
 	 * ======================================================================
 	 * Program Management Methods
@@ -291,51 +1655,113 @@ public class SOS implements CPU.TrapHandler {
 	/**
 	 * createProcess
 	 * 
-	 * Creates one process for the CPU.
+	 * Creates one process for the CPU. This must be called before the
+	 * simulation starts.
+	 * 
+	 * @param prog
+	 *            The program class to be loaded into memory.
+	 * @param allocSize
+	 *            The amount of memory to allocate for the program.
+	 */
+	public synchronized void createProcess(Program prog, int allocSize) {
+		// The process on the CPU was created by an earlier call and hasn't
+		// run yet. It is saved as if it had been switched out by a trap
+		// (whose PC is incremented when it is resumed).
+		if (m_currProcess != null) {
+			m_CPU.setPC(m_CPU.getPC() - CPU.INSTRSIZE);
+		}
+		loadProcess(prog, allocSize);
+	}// createProcess
+
+	/**
+	 * loadProcess
+	 * 
+	 * Creates one process and makes it the current process. Its PC points at
+	 * its first instruction. Whatever process was current becomes Ready.
 	 * 
 	 * @param prog
 	 *            The program class to be loaded into memory.
 	 * @param allocSize
 	 *            The amount of memory to allocate for the program.
 	 */
-	public void createProcess(Program prog, int allocSize) {
+	private void loadProcess(Program prog, int allocSize) {
 		//final int base = 4; // This is just an arbitrary base, hardcoded for now
 		//int size = prog.getSize();
 
-		if (m_nextLoadPos + allocSize >= m_RAM.getSize()) {
-			System.out.println("NO RAM");
-			System.exit(0);
-			return;
-		}
 		if(m_currProcess!=null)
 		{
 			m_currProcess.save(m_CPU);
+			if (!m_currProcess.isBlocked()) {
+				makeReady(m_currProcess);
+			}
+		}
+
+		// The address space runs from BASE to LIM inclusive. If there is
+		// enough free memory but it's in pieces then compact it and try again.
+		// With paging it starts at logical address 0 and can be anywhere.
+		int[] pageTable = null;
+		int base;
+		if (m_frames != null) {
+			pageTable = allocPages(allocSize + 1);
+			base = 0;
+		} else {
+			base = allocBlock(allocSize + 1);
+		}
+		if ((base < 0) && (m_buddy == null) && (m_frames == null)
+				&& (m_cores == null)) {
+			finishCompaction();
+			if (getFreeMemory() >= allocSize + 1) {
+				compactAll();
+				base = allocBlock(allocSize + 1);
+			}
+		}
+		if (base < 0) {
+			System.out.println("NO RAM");
+			printMemAlloc();
+			System.exit(0);
+			return;
 		}
 
-		m_CPU.setBASE(m_nextLoadPos);
-		m_CPU.setLIM(m_nextLoadPos + allocSize);
+		m_CPU.setBASE(base);
+		m_CPU.setLIM(base + allocSize);
 		m_CPU.setPC(4); // We are going to use a logical (not physical) PC
 		m_CPU.setSP(allocSize);
+		m_CPU.setPageTable(pageTable);
+
+		// With paging the program's pages are shared by all the processes
+		// created from it so it only has to be exported once
+		SharedText text = null;
+		int[] progArray;
+		if (pageTable != null) {
+			text = getSharedText(prog);
+			progArray = text.image;
+		} else {
+			progArray = prog.export();
+		}
 
-		int[] progArray = prog.export();
-
-		for (int progAddr = 0; progAddr < progArray.length; ++progAddr) {
-			int loc = m_CPU.getBASE() + progAddr+4;//m_nextLoadPos;
-			m_RAM.write(loc, progArray[progAddr]);
+		// Copy the whole program in at once (the RAM's backend can skip words
+		// that are already there, e.g., in a warm memory image). With paging
+		// each page is copied in when it is first used.
+		if (pageTable == null) {
+			m_RAM.load(m_CPU.getBASE() + 4, progArray);
 		}
 		debugPrintln("Installed program of size " + allocSize
-				+ " at position " + m_nextLoadPos);
-		m_nextLoadPos = m_nextLoadPos+ allocSize;
+				+ " at position " + base);
 		ProcessControlBlock newProcess = new ProcessControlBlock(
 				m_nextProcessID);
+		newProcess.priority = prog.getPriority();
+		newProcess.pageTable = pageTable;
+		newProcess.text = text;
+		newProcess.startBurst(m_CPU);
 		m_nextProcessID++;
 		m_processes.add(newProcess);
 		m_currProcess = newProcess;
+		m_CPU.startQuantum(m_scheduler.getQuantum(m_currProcess));
 		printProcessTable();
 
 		//m_CPU.setSP(allocSize); // Stack starts at the bottom and grows up.
 
-	}// createProcess
+	}// loadProcess
 
 	/*
 	 * ======================================================================
@@ -384,6 +1810,183 @@ public class SOS implements CPU.TrapHandler {
 		System.exit(0);
 	}
 
+	/**
+	 * interruptClock
+	 * 
+	 * Handles timer interrupts: the current process has used up its quantum
+	 * so it goes back to the Ready state and another process gets a turn. (A
+	 * core also gets one when it starts without a process, see
+	 * {@link #runCore}.)
+	 */
+	public void interruptClock() {
+		if (m_currProcess != null) {
+			m_preemptions++;
+		}
+		scheduleNewProcess();
+	}
+
+	/**
+	 * interruptIOReadComplete
+	 * 
+	 * Handles an asynchronous device finishing a read: the process that made
+	 * the request (its owner) becomes Ready and will find the value and a
+	 * success code on its stack.
+	 * 
+	 * @param req
+	 *            the finished request
+	 */
+	public void interruptIOReadComplete(AsyncDevice.Request req) {
+		ProcessControlBlock pi = (ProcessControlBlock) req.owner;
+		if ((pi == null)
+				|| !pi.isBlockedForDevice(req.device, SYSCALL_READ, req.addr)) {
+			System.out.println("ERROR: Nobody was waiting for a read from device "
+					+ req.device.getId());
+			return;
+		}
+		pi.ioResult = new int[] { req.data, 0 };
+		pi.unblock();
+	}// interruptIOReadComplete
+
+	/**
+	 * interruptIOWriteComplete
+	 * 
+	 * Handles an asynchronous device finishing a write: the process that made
+	 * the request (its owner) becomes Ready and will find a success code on
+	 * its stack.
+	 * 
+	 * @param req
+	 *            the finished request
+	 */
+	public void interruptIOWriteComplete(AsyncDevice.Request req) {
+		ProcessControlBlock pi = (ProcessControlBlock) req.owner;
+		if ((pi == null)
+				|| !pi.isBlockedForDevice(req.device, SYSCALL_WRITE, req.addr)) {
+			System.out.println("ERROR: Nobody was waiting for a write to device "
+					+ req.device.getId());
+			return;
+		}
+		pi.ioResult = new int[] { 0 };
+		pi.unblock();
+	}// interruptIOWriteComplete
+
+	/**
+	 * interruptPageFault
+	 * 
+	 * Handles page faults. If the page isn't in RAM it is given a frame
+	 * (evicting another page if there are none free) and loaded from the swap
+	 * file or the program image. A page of the program image that another
+	 * process has already loaded is shared with it instead. A fault on a page
+	 * that is in RAM is caused by a write to a shared page, which gets a copy
+	 * of its own.
+	 * 
+	 * @param addr
+	 *            The logical address that was accessed
+	 * @param write
+	 *            true if the access was a write
+	 */
+	public void interruptPageFault(int addr, boolean write) {
+		debugPrintln("Page fault at logical address " + addr
+				+ (write ? " (write)" : " (read)"));
+		int[] pageTable = m_CPU.getPageTable();
+		int page = addr >>> CPU.PAGE_SHIFT;
+		if ((pageTable[page] & CPU.PTE_VALID) != 0) {
+			copyOnWrite(pageTable, page);
+			return;
+		}
+
+		// Is the page already in RAM for another process?
+		SharedText text = m_currProcess.text;
+		if ((page < text.frames.length) && (text.frames[page] >= 0)
+				&& ((pageTable[page] >>> CPU.PTE_FRAME_SHIFT) == 0)) {
+			int frame = text.frames[page];
+			pageTable[page] = (frame << CPU.PTE_FRAME_SHIFT) | CPU.PTE_VALID;
+			m_frames.map(frame, pageTable, page);
+			m_sharedMaps++;
+			return;
+		}
+
+		m_pageFaults++;
+		int frame = allocFrame();
+		if (frame < 0) {
+			return;
+		}
+
+		// A page that comes back from the swap file gives up its slot so it
+		// counts as modified: it must be written again if it is evicted
+		int[] words = new int[CPU.PAGE_SIZE];
+		int pte = CPU.PTE_VALID | CPU.PTE_WRITE;
+		int slot = (pageTable[page] >>> CPU.PTE_FRAME_SHIFT) - 1;
+		if (slot >= 0) {
+			try {
+				m_swap.read(slot, words);
+			} catch (IOException e) {
+				System.out.println("ERROR: Could not read from the swap file ("
+						+ e + ")");
+				System.exit(0);
+			}
+			m_swap.free(slot);
+			m_RAM.getClock().advance(SWAP_LATENCY);
+			pte |= CPU.PTE_DIRTY;
+			m_swapIns++;
+		} else {
+			fillPage(text.image, page, words);
+			if ((page < text.frames.length) && !write) {
+				// share the page until somebody writes to it
+				pte = CPU.PTE_VALID;
+				text.frames[page] = frame;
+			}
+		}
+
+		m_RAM.load(frame << CPU.PAGE_SHIFT, words);
+		pageTable[page] = (frame << CPU.PTE_FRAME_SHIFT) | pte;
+		m_frames.map(frame, pageTable, page);
+		m_replacement.add(frame, getTicks());
+	}// interruptPageFault
+
+	/**
+	 * copyOnWrite
+	 * 
+	 * handles a write to a shared page. The page is copied to a frame of its
+	 * own unless nobody else maps it any more, in which case the process can
+	 * simply keep it.
+	 * 
+	 * @param pageTable
+	 *            the page table of the process that wrote to the page
+	 * @param page
+	 *            the page number
+	 */
+	private void copyOnWrite(int[] pageTable, int page) {
+		int frame = pageTable[page] >>> CPU.PTE_FRAME_SHIFT;
+		if ((pageTable[page] & CPU.PTE_WRITE) != 0) {
+			// can't happen: the process was allowed to write to the page
+			interruptIllegalMemoryAccess(page << CPU.PAGE_SHIFT);
+			return;
+		}
+
+		if (m_frames.getMapCount(frame) == 1) {
+			unshare(frame);
+			pageTable[page] |= CPU.PTE_WRITE;
+		} else {
+			int[] words = new int[CPU.PAGE_SIZE];
+			m_RAM.read(frame << CPU.PAGE_SHIFT, words);
+			m_frames.unmap(frame, pageTable, page);
+			pageTable[page] = 0;
+
+			// The original may be evicted to make room for the copy
+			int copy = allocFrame();
+			if (copy < 0) {
+				return;
+			}
+			m_RAM.load(copy << CPU.PAGE_SHIFT, words);
+			pageTable[page] = (copy << CPU.PTE_FRAME_SHIFT) | CPU.PTE_VALID
+					| CPU.PTE_WRITE;
+			m_frames.map(copy, pageTable, page);
+			m_replacement.add(copy, getTicks());
+			m_copyOnWrites++;
+		}
+		m_CPU.invalidatePage(page);
+	}// copyOnWrite
+
 	/*
 	 * ======================================================================
 	 * System Calls
@@ -406,6 +2009,10 @@ public class SOS implements CPU.TrapHandler {
 	 * Outputs the top number from the stack.
 	 */
 	private void syscallOutput() {
+		if (m_output != null) {
+			m_output.println(OUTPUT_PREFIX, m_CPU.popStack());
+			return;
+		}
 		System.out.println("OUTPUT: " + m_CPU.popStack());
 	}
 
@@ -445,16 +2052,18 @@ public class SOS implements CPU.TrapHandler {
 	/**
 	 * Pops the device number off the calling process' stack and retrieves the
 	 * associated DeviceInfo object via that device number, then indicates that
-	 * the process is currently using the device.
+	 * the process is currently using the device. If another process has a
+	 * device that can't be shared open, the caller is blocked and makes the
+	 * system call again when that process closes it.
 	 */
 	public void syscallOpen() {
 		// Retrive deviceInfo from stack
 		int deviceNumber = m_CPU.popStack();
-		if (deviceFound(deviceNumber) == null) {
+		DeviceInfo info = deviceFound(deviceNumber);
+		if (info == null) {
 			m_CPU.pushStack(DEVICE_NOT_FOUND);
 			return;
 		}
-		DeviceInfo info = deviceFound(deviceNumber);
 		boolean currentlyUsed = info.containsProcess(m_currProcess);
 		// if the device is currently being used, we can't open it.
 		if (currentlyUsed) {
@@ -465,8 +2074,15 @@ public class SOS implements CPU.TrapHandler {
 		boolean currentlyUsedByOther = !info.unused();
 		boolean notSharable = !dev.isSharable();
 		if (notSharable && currentlyUsedByOther) {
+			// Put the arguments back and back up to the TRAP so the open is
+			// tried again once the process is unblocked by a close
 			System.out.println("blocking");
+			m_CPU.pushStack(deviceNumber);
+			m_CPU.pushStack(SYSCALL_OPEN);
+			m_CPU.setPC(m_CPU.getPC() - CPU.INSTRSIZE);
 			m_currProcess.block(m_CPU, dev, SYSCALL_OPEN, 100);
+			scheduleNewProcess();
+			return;
 		}
 
 
@@ -485,18 +2101,36 @@ public class SOS implements CPU.TrapHandler {
 
 		// Retrieve associated device info, and unassign device to a process
 		int deviceNumber = m_CPU.popStack();
-		if (deviceFound(deviceNumber) == null) {
+		DeviceInfo info = deviceFound(deviceNumber);
+		if (info == null) {
 			m_CPU.pushStack(DEVICE_NOT_FOUND);
 			return;
 		}
-		DeviceInfo info = deviceFound(deviceNumber);
 		// check if the device is opened. if it isn't, we can't close it.
 		if (!info.containsProcess(m_currProcess)) {
 			m_CPU.pushStack(NOT_OPENED);
 			return;
 		}
 		// remove the device from the process
-		info.removeProcess(m_currProcess);
+		closeDevice(info, m_currProcess);
+		// Close operation has completed successfully.
+		// 0 signifies successful completion
+		m_CPU.pushStack(0);
+	}
+
+	/**
+	 * closeDevice
+	 * 
+	 * removes a process from the processes that have a device open and
+	 * unblocks every process that is waiting to open it
+	 * 
+	 * @param info
+	 *            the device
+	 * @param pcb
+	 *            a process that has the device open
+	 */
+	private void closeDevice(DeviceInfo info, ProcessControlBlock pcb) {
+		info.removeProcess(pcb);
 		Device dev = info.getDevice();
 		while (true) {
 			ProcessControlBlock toUnblock = selectBlockedProcess(dev,
@@ -508,10 +2142,7 @@ public class SOS implements CPU.TrapHandler {
 			System.out.println("Moving process with id "+ id + " from blocked to ready state.");
 			toUnblock.unblock();
 		}
-		// Close operation has completed successfully.
-		// 0 signifies successful completion
-		m_CPU.pushStack(0);
-	}
+	}// closeDevice
 
 	/**
 	 * Reads from a device
@@ -524,11 +2155,11 @@ public class SOS implements CPU.TrapHandler {
 		// if (!deviceFound(deviceInfo)) {
 		// return;
 		// }
-		if (deviceFound(deviceInfo) == null) {
+		DeviceInfo info = deviceFound(deviceInfo);
+		if (info == null) {
 			m_CPU.pushStack(DEVICE_NOT_FOUND);
 			return;
 		}
-		DeviceInfo info = deviceFound(deviceInfo);
 		// check if the device has been opened. if not, we can't read it.
 		if (!info.containsProcess(m_currProcess)) {
 			m_CPU.pushStack(NOT_OPENED);
@@ -538,6 +2169,17 @@ public class SOS implements CPU.TrapHandler {
 		// check if the device is write-only. if it is, we can't read it.
 		if (!dev.isReadable()) {
 			m_CPU.pushStack(WRITE_ONLY);
+			return;
+		}
+		// An asynchronous device interrupts when it is done. Until then
+		// another process uses the CPU. (With more than one core the
+		// process waits for the device instead.)
+		if ((dev instanceof AsyncDevice) && (m_cores == null)) {
+			((AsyncDevice) dev).startRead(address, m_currProcess);
+			m_ioRequests++;
+			m_currProcess.block(m_CPU, dev, SYSCALL_READ, address);
+			scheduleNewProcess();
+			return;
 		}
 		int data = dev.read(address);
 
@@ -560,11 +2202,11 @@ public class SOS implements CPU.TrapHandler {
 		// return;
 		// }
 		// retrieve device information, get the device, and write.
-		if (deviceFound(deviceInfo) == null) {
+		DeviceInfo info = deviceFound(deviceInfo);
+		if (info == null) {
 			m_CPU.pushStack(DEVICE_NOT_FOUND);
 			return;
 		}
-		DeviceInfo info = deviceFound(deviceInfo);
 		// check if the device is currently open. if it isn't, we can't write to
 		// it.
 		if (!info.containsProcess(m_currProcess)) {
@@ -577,6 +2219,13 @@ public class SOS implements CPU.TrapHandler {
 			m_CPU.pushStack(READ_ONLY);
 			return;
 		}
+		if ((dev instanceof AsyncDevice) && (m_cores == null)) {
+			((AsyncDevice) dev).startWrite(address, data, m_currProcess);
+			m_ioRequests++;
+			m_currProcess.block(m_CPU, dev, SYSCALL_WRITE, address);
+			scheduleNewProcess();
+			return;
+		}
 		info.getDevice().write(address, data);
 
 		// return success
@@ -630,23 +2279,143 @@ public class SOS implements CPU.TrapHandler {
 		}
 
 		// Load the program into RAM
-		createProcess(prog, allocSize);
+		loadProcess(prog, allocSize);
 
 		// Adjust the PC since it's about to be incremented by the CPU
 		m_CPU.setPC(m_CPU.getPC() - CPU.INSTRSIZE);
 
 	}// syscallExec
 
+	/**
+	 * syscallFork
+	 * 
+	 * creates a new process that is a copy of the current one. Both continue
+	 * after the system call: the parent finds the child's id on its stack and
+	 * the child finds 0. The parent finds NO_MEMORY instead if there isn't
+	 * room for the child. The child starts out Ready and has the sharable
+	 * devices the parent has opened. A device that can't be shared stays with
+	 * the parent only.
+	 * 
+	 * With paging the child shares all of the parent's pages (in RAM and in
+	 * the swap file) and either process gets a copy of a page only when it
+	 * writes to it. Otherwise the parent's whole address space is copied.
+	 */
+	private void syscallFork() {
+		// Push the child's result now so that it is part of the copy
+		m_CPU.pushStack(0);
+
+		ProcessControlBlock parent = m_currProcess;
+		ProcessControlBlock child = new ProcessControlBlock(m_nextProcessID);
+		child.registers = Arrays.copyOf(m_CPU.getRegisters(), CPU.NUMREG);
+		if (m_frames != null) {
+			child.pageTable = sharePages(m_CPU.getPageTable());
+			child.text = parent.text;
+		} else {
+			int base = m_CPU.getBASE();
+			int size = m_CPU.getLIM() - base + 1;
+			int childBase = allocBlock(size);
+			if (childBase < 0) {
+				m_CPU.popStack();
+				m_CPU.pushStack(NO_MEMORY);
+				return;
+			}
+			m_RAM.copy(base, childBase, size);
+			child.registers[CPU.BASE] = childBase;
+			child.registers[CPU.LIM] = childBase + size - 1;
+		}
+		child.priority = parent.priority;
+		for (DeviceInfo di : m_devices) {
+			if (di.getDevice().isSharable() && di.containsProcess(parent)) {
+				di.addProcess(child);
+			}
+		}
+		m_nextProcessID++;
+		m_processes.add(child);
+		makeReady(child);
+		debugPrintln("Process with id " + parent.getProcessId()
+				+ " forked process with id " + child.getProcessId());
+
+		// This write gives the parent its own copy of its stack page
+		m_CPU.popStack();
+		m_CPU.pushStack(child.getProcessId());
+		printProcessTable();
+	}// syscallFork
+
+	/**
+	 * sharePages
+	 * 
+	 * creates a page table for a new address space that shares every page of
+	 * an existing one. The pages become read-only in both so that whichever
+	 * process writes to one first gets a copy of its own.
+	 * 
+	 * @param pageTable
+	 *            the page table of the current process
+	 * 
+	 * @return the new page table
+	 */
+	private int[] sharePages(int[] pageTable) {
+		int[] copy = new int[pageTable.length];
+		for (int page = 0; page < pageTable.length; page++) {
+			int pte = pageTable[page];
+			if ((pte & CPU.PTE_VALID) != 0) {
+				pte &= ~CPU.PTE_WRITE;
+				pageTable[page] = pte;
+				copy[page] = pte & ~CPU.PTE_REF;
+				m_frames.map(pte >>> CPU.PTE_FRAME_SHIFT, copy, page);
+			} else if ((pte >>> CPU.PTE_FRAME_SHIFT) != 0) {
+				m_swap.share((pte >>> CPU.PTE_FRAME_SHIFT) - 1);
+				copy[page] = pte;
+			}
+		}
+		m_allocCount++;
+
+		// The TLB may still let the current process write to its pages
+		m_CPU.flushTLB();
+		return copy;
+	}// sharePages
+
 	/**
 	 * sysCallYield
 	 * 
 	 * moves the current process from the running state to the ready state
 	 */
 	private void syscallYield() {
+		// A real-time process yields when its job for this period is done
+		EDFScheduler.Task task = m_currProcess.getRealTimeTask();
+		if (task != null) {
+			task.finished = true;
+		}
 		scheduleNewProcess();
 		
 	}// syscallYield
 
+	/**
+	 * syscallRealTime
+	 * 
+	 * asks for the current process to be run periodically with a deadline.
+	 * The process pushes its period, relative deadline and budget (all in
+	 * instructions) before the syscall id. The result is 0 if the process was
+	 * admitted to the real-time class or NOT_SCHEDULABLE if it would put
+	 * other real-time processes at risk of missing their deadlines (or the
+	 * scheduler has no real-time class). An admitted process goes back to the
+	 * scheduler since its first job may not have the earliest deadline.
+	 */
+	private void syscallRealTime() {
+		int budget = m_CPU.popStack();
+		int deadline = m_CPU.popStack();
+		int period = m_CPU.popStack();
+		if ((m_edf == null)
+				|| !m_edf.admit(m_currProcess, period, deadline, budget)) {
+			m_CPU.pushStack(NOT_SCHEDULABLE);
+			return;
+		}
+		debugPrintln("Process with id " + m_currProcess.getProcessId()
+				+ " is now real-time (period " + period + ", deadline "
+				+ deadline + ", budget " + budget + ")");
+		m_CPU.pushStack(0);
+		scheduleNewProcess();
+	}// syscallRealTime
+
 	/**
 	 * selectBlockedProcess
 	 * 
@@ -667,7 +2436,7 @@ public class SOS implements CPU.TrapHandler {
 	 */
 	public ProcessControlBlock selectBlockedProcess(Device dev, int op, int addr) {
 		ProcessControlBlock selected = null;
-		for (ProcessControlBlock pi : m_processes) {
+		for (ProcessControlBlock pi : m_blocked) {
 			if (pi.isBlockedForDevice(dev, op, addr)) {
 				selected = pi;
 				break;
@@ -713,29 +2482,36 @@ public class SOS implements CPU.TrapHandler {
 		case SYSCALL_EXEC:
 			syscallExec();
 			break;
+		case SYSCALL_FORK:
+			syscallFork();
+			break;
 
 		case SYSCALL_YIELD:
 			syscallYield();
 			break;
+
+		case SYSCALL_REALTIME:
+			syscallRealTime();
+			break;
 		}
 	}
 
 	/*
 	 * A helper method to find out whether the device ID is a valid one.
 	 * 
-	 * @param idx - the device number to look for in m_devices
+	 * @param idx - the device number to look for in m_deviceTable (or
+	 * m_sparseDevices if it is negative or larger than MAX_DENSE_ID)
 	 * 
-	 * @return - false if the idx can't possibly be in m_devices, true otherwise
+	 * @return - the device's DeviceInfo, or null if no device has that id
 	 */
 	public DeviceInfo deviceFound(int idx) {
-		for (DeviceInfo info : m_devices) {
-			if (info != null) {
-				if (info.getId() == idx) {
-					return info;
-				}
-			}
+		if ((idx < 0) || (idx > MAX_DENSE_ID)) {
+			return m_sparseDevices.get(idx);
+		}
+		if (idx >= m_deviceTable.length) {
+			return null;
 		}
-		return null;
+		return m_deviceTable[idx];
 	}
 
 	// ===========================================================
@@ -744,9 +2520,12 @@ public class SOS implements CPU.TrapHandler {
 	/**
 	 * class ProcessControlBlock
 	 * 
-	 * This class contains information about a currently active process.
+	 * This class contains information about a currently active process. It is
+	 * visible to the rest of the package so that a {@link Scheduler} can
+	 * inspect the processes it is given.
 	 */
-	private class ProcessControlBlock {
+	class ProcessControlBlock implements
+			Comparable<ProcessControlBlock> {
 		/**
 		 * a unique id for this process
 		 */
@@ -775,6 +2554,77 @@ public class SOS implements CPU.TrapHandler {
 		 */
 		private int blockedForAddr = -1;
 
+		/**
+		 * the list (m_blocked) this process is in -OR- null if it is Running
+		 * or Ready (the Scheduler keeps track of the Ready processes)
+		 */
+		private Vector<ProcessControlBlock> queue = null;
+
+		/**
+		 * this process' position in queue
+		 */
+		private int queueIndex = -1;
+
+		/**
+		 * the priority of the program this process was created from
+		 */
+		private int priority = 0;
+
+		/**
+		 * a number the Scheduler may use to remember something about this
+		 * process (e.g., its position in a list or its queue level)
+		 */
+		private int schedIndex = 0;
+
+		/**
+		 * when (in instructions) this process was created, last entered the
+		 * Ready state and last started running
+		 */
+		private long createTime = getTicks();
+		private long readyTime = 0;
+		private long burstStart = 0;
+
+		/**
+		 * the number of instructions this process ran the last time it was on
+		 * the CPU
+		 */
+		private long lastBurst = 0;
+
+		/**
+		 * the number of instructions this process ran before its last burst
+		 * began
+		 */
+		private long cpuTime = 0;
+
+		/**
+		 * the virtual runtime assigned by the CFSScheduler
+		 */
+		private long vruntime = 0;
+
+		/**
+		 * this process' real-time parameters -OR- null if it is a
+		 * best-effort process
+		 */
+		private EDFScheduler.Task rtTask = null;
+
+		/**
+		 * this process' page table -OR- null if the SOS isn't using paging
+		 */
+		private int[] pageTable = null;
+
+		/**
+		 * the program this process was created from when the SOS uses paging
+		 * (pages are filled from it the first time they are used) -OR- null
+		 */
+		private SharedText text = null;
+
+		/**
+		 * the values an asynchronous device's completion interrupt left for
+		 * this process. They are pushed onto its stack (in order) the next
+		 * time it runs.
+		 */
+		private int[] ioResult = null;
+
 		/**
 		 * constructor
 		 * 
@@ -793,6 +2643,126 @@ public class SOS implements CPU.TrapHandler {
 			return this.processId;
 		}
 
+		/**
+		 * @return the priority of the program this process was created from
+		 */
+		public int getPriority() {
+			return this.priority;
+		}
+
+		/**
+		 * @return the value stored by the Scheduler
+		 */
+		public int getSchedIndex() {
+			return this.schedIndex;
+		}
+
+		/**
+		 * @param i
+		 *            a value for the Scheduler to store in this process
+		 */
+		public void setSchedIndex(int i) {
+			this.schedIndex = i;
+		}
+
+		/**
+		 * @return the CPU's instruction count when this process last started
+		 *         to run
+		 */
+		public long getBurstStart() {
+			return this.burstStart;
+		}
+
+		/**
+		 * @return the number of instructions this process ran the last time it
+		 *         was on the CPU
+		 */
+		public long getLastBurst() {
+			return this.lastBurst;
+		}
+
+		/**
+		 * @param cpu
+		 *            the CPU this process runs on
+		 * @return the total number of instructions this process has run
+		 */
+		public long getCpuTime(CPU cpu) {
+			if (this == m_currProcess) {
+				return this.cpuTime + cpu.getInstructionCount() - this.burstStart;
+			}
+			return this.cpuTime + this.lastBurst;
+		}
+
+		/**
+		 * @return the virtual runtime assigned by the CFSScheduler
+		 */
+		public long getVruntime() {
+			return this.vruntime;
+		}
+
+		/**
+		 * @param v
+		 *            a new virtual runtime
+		 */
+		public void setVruntime(long v) {
+			this.vruntime = v;
+		}
+
+		/**
+		 * @return this process' real-time parameters -OR- null if it is a
+		 *         best-effort process
+		 */
+		public EDFScheduler.Task getRealTimeTask() {
+			return this.rtTask;
+		}
+
+		/**
+		 * @param task
+		 *            this process' real-time parameters
+		 */
+		public void setRealTimeTask(EDFScheduler.Task task) {
+			this.rtTask = task;
+		}
+
+		/**
+		 * startBurst
+		 * 
+		 * records that this process is starting to run
+		 * 
+		 * @param cpu
+		 *            the CPU it is running on
+		 */
+		public void startBurst(CPU cpu) {
+			this.cpuTime += this.lastBurst;
+			this.lastBurst = 0;
+			this.burstStart = cpu.getInstructionCount();
+		}// startBurst
+
+		/**
+		 * getRegister
+		 * 
+		 * @param reg
+		 *            the index of a register (e.g., CPU.BASE)
+		 * @return the saved value of the register
+		 */
+		public int getRegister(int reg) {
+			return this.registers[reg];
+		}
+
+		/**
+		 * relocate
+		 * 
+		 * updates the saved BASE and LIM registers after the process' image
+		 * has been moved in RAM
+		 * 
+		 * @param base
+		 *            the new address of the image
+		 */
+		public void relocate(int base) {
+			this.registers[CPU.LIM] += base - this.registers[CPU.BASE];
+			this.registers[CPU.BASE] = base;
+		}// relocate
+
 		/**
 		 * save
 		 * 
@@ -802,6 +2772,7 @@ public class SOS implements CPU.TrapHandler {
 		 *            the CPU object to save the values from
 		 */
 		public void save(CPU cpu) {
+			this.lastBurst = cpu.getInstructionCount() - this.burstStart;
 			int[] regs = cpu.getRegisters();
 			this.registers = new int[CPU.NUMREG];
 			for (int i = 0; i < CPU.NUMREG; i++) {
@@ -819,11 +2790,18 @@ public class SOS implements CPU.TrapHandler {
 		 *            the CPU object to restore the values to
 		 */
 		public void restore(CPU cpu) {
+			startBurst(cpu);
 			int[] regs = cpu.getRegisters();
 			for (int i = 0; i < CPU.NUMREG; i++) {
 				regs[i] = this.registers[i];
 			}
-
+			cpu.setPageTable(this.pageTable);
+			if (this.ioResult != null) {
+				for (int value : this.ioResult) {
+					cpu.pushStack(value);
+				}
+				this.ioResult = null;
+			}
 		}// restore
 
 		/**
@@ -847,6 +2825,8 @@ public class SOS implements CPU.TrapHandler {
 			blockedForDevice = dev;
 			blockedForOperation = op;
 			blockedForAddr = addr;
+			dequeue(this);
+			enqueue(m_blocked, this);
 
 		}// block
 
@@ -861,6 +2841,10 @@ public class SOS implements CPU.TrapHandler {
 			blockedForDevice = null;
 			blockedForOperation = -1;
 			blockedForAddr = -1;
+			dequeue(this);
+			if (!isRunning(this)) {
+				makeReady(this);
+			}
 
 		}// block
 
@@ -947,6 +2931,232 @@ public class SOS implements CPU.TrapHandler {
 
 	}// class ProcessControlBlock
 
+	/**
+	 * class MemBlock
+	 * 
+	 * This class contains information about a block of RAM (e.g., a free
+	 * block in m_freeList)
+	 */
+	private class MemBlock implements Comparable<MemBlock> {
+		/** the address of the block */
+		private int m_addr;
+		/** the number of words in the block */
+		private int m_size;
+
+		/**
+		 * constructor
+		 * 
+		 * @param addr
+		 *            the address of the block
+		 * @param size
+		 *            the number of words in the block
+		 */
+		public MemBlock(int addr, int size) {
+			m_addr = addr;
+			m_size = size;
+		}
+
+		/** @return the address of the block */
+		public int getAddr() {
+			return m_addr;
+		}
+
+		/** @return the number of words in the block */
+		public int getSize() {
+			return m_size;
+		}
+
+		/** @return the address just past the end of the block */
+		public int getEnd() {
+			return m_addr + m_size;
+		}
+
+		/**
+		 * compareTo
+		 * 
+		 * orders blocks by size
+		 */
+		public int compareTo(MemBlock m) {
+			return m_size - m.m_size;
+		}
+
+		/**
+		 * toString **DEBUGGING**
+		 * 
+		 * @return a string representation of this class
+		 */
+		public String toString() {
+			return "[" + m_addr + ":" + m_size + "]";
+		}
+
+	}// class MemBlock
+
+	/**
+	 * class SharedText
+	 * 
+	 * This class holds the words of a program and, when the SOS uses paging,
+	 * the frames that hold its pages so that every process created from the
+	 * program can share them. A page is only shared until it is written.
+	 */
+	private class SharedText {
+		/** the program as exported by {@link Program#export} */
+		private int[] image;
+
+		/**
+		 * the frame holding each page of the image that is being shared -OR-
+		 * -1
+		 */
+		private int[] frames;
+
+		/**
+		 * constructor
+		 * 
+		 * @param image
+		 *            the words of the program (which are loaded at logical
+		 *            address 4)
+		 */
+		public SharedText(int[] image) {
+			this.image = image;
+			this.frames = new int[(image.length + 4 + CPU.PAGE_SIZE - 1) >> CPU.PAGE_SHIFT];
+			Arrays.fill(this.frames, -1);
+		}
+	}// class SharedText
+
+	/**
+	 * class Core
+	 * 
+	 * This class holds the state of one CPU when the SOS manages more than
+	 * one. It is the trap handler for its CPU: each trap is handled by the
+	 * SOS while holding its lock with this core's state installed.
+	 */
+	private class Core implements CPU.TrapHandler {
+		/** the CPU */
+		private CPU cpu;
+
+		/** the scheduler that manages this core's Ready list */
+		private Scheduler scheduler;
+
+		/** the process running on this core (when this core isn't active) */
+		private ProcessControlBlock currProcess = null;
+
+		/** the number of times this core had to wait for a process */
+		private long idleWaits = 0;
+
+		/**
+		 * constructor
+		 * 
+		 * @param c
+		 *            the CPU
+		 * @param s
+		 *            the scheduler for this core's Ready list
+		 */
+		public Core(CPU c, Scheduler s) {
+			cpu = c;
+			scheduler = s;
+			cpu.registerTrapHandler(this);
+		}
+
+		/**
+		 * enter
+		 * 
+		 * installs this core's state before a trap is handled
+		 * 
+		 * @return false if the simulation is over
+		 */
+		private boolean enter() {
+			if (m_shutdown) {
+				cpu.halt();
+				return false;
+			}
+			switchTo(this);
+			return true;
+		}// enter
+
+		/**
+		 * leave
+		 * 
+		 * makes sure this core has a process to go back to after a trap
+		 */
+		private void leave() {
+			waitForProcess(this);
+			if (m_shutdown) {
+				cpu.halt();
+			}
+		}// leave
+
+		public void interruptIllegalMemoryAccess(int addr) {
+			synchronized (SOS.this) {
+				if (enter()) {
+					SOS.this.interruptIllegalMemoryAccess(addr);
+					leave();
+				}
+			}
+		}
+
+		public void interruptDivideByZero() {
+			synchronized (SOS.this) {
+				if (enter()) {
+					SOS.this.interruptDivideByZero();
+					leave();
+				}
+			}
+		}
+
+		public void interruptIllegalInstruction(int[] instr) {
+			synchronized (SOS.this) {
+				if (enter()) {
+					SOS.this.interruptIllegalInstruction(instr);
+					leave();
+				}
+			}
+		}
+
+		public void interruptClock() {
+			synchronized (SOS.this) {
+				if (enter()) {
+					SOS.this.interruptClock();
+					leave();
+				}
+			}
+		}
+
+		public void interruptPageFault(int addr, boolean write) {
+			synchronized (SOS.this) {
+				if (enter()) {
+					SOS.this.interruptPageFault(addr, write);
+					leave();
+				}
+			}
+		}
+
+		public void interruptIOReadComplete(AsyncDevice.Request req) {
+			synchronized (SOS.this) {
+				if (enter()) {
+					SOS.this.interruptIOReadComplete(req);
+					leave();
+				}
+			}
+		}
+
+		public void interruptIOWriteComplete(AsyncDevice.Request req) {
+			synchronized (SOS.this) {
+				if (enter()) {
+					SOS.this.interruptIOWriteComplete(req);
+					leave();
+				}
+			}
+		}
+
+		public void systemCall() {
+			synchronized (SOS.this) {
+				if (enter()) {
+					SOS.this.systemCall();
+					leave();
+				}
+			}
+		}
+	}// class Core
+
 	/**
 	 * class DeviceInfo
 	 * 
@@ -958,8 +3168,10 @@ public class SOS implements CPU.TrapHandler {
 		private int id;
 		/** a reference to the device driver for this device */
 		private Device device;
-		/** a list of processes that have opened this device */
-		private Vector<ProcessControlBlock> procs;
+		/** the ids of the processes that have opened this device */
+		private BitSet procs;
+		/** the number of bits set in procs */
+		private int numProcs;
 
 		/**
 		 * constructor
@@ -974,7 +3186,8 @@ public class SOS implements CPU.TrapHandler {
 			this.id = initID;
 			this.device = d;
 			d.setId(initID);
-			this.procs = new Vector<ProcessControlBlock>();
+			this.procs = new BitSet();
+			this.numProcs = 0;
 		}
 
 		/** @return the device's id */
@@ -989,22 +3202,33 @@ public class SOS implements CPU.TrapHandler {
 
 		/** Register a new process as having opened this device */
 		public void addProcess(ProcessControlBlock pi) {
-			procs.add(pi);
+			if (!procs.get(pi.getProcessId())) {
+				procs.set(pi.getProcessId());
+				numProcs++;
+			}
 		}
 
 		/** Register a process as having closed this device */
 		public void removeProcess(ProcessControlBlock pi) {
-			procs.remove(pi);
+			if (procs.get(pi.getProcessId())) {
+				procs.clear(pi.getProcessId());
+				numProcs--;
+				// A BitSet never shrinks, so start over once it is empty
+				// rather than keep words for ids that have been retired
+				if (numProcs == 0) {
+					procs = new BitSet();
+				}
+			}
 		}
 
 		/** Does the given process currently have this device opened? */
 		public boolean containsProcess(ProcessControlBlock pi) {
-			return procs.contains(pi);
+			return procs.get(pi.getProcessId());
 		}
 
 		/** Is this device currently not opened by any process? */
 		public boolean unused() {
-			return procs.size() == 0;
+			return numProcs == 0;
 		}
 
 	}// class DeviceInfo
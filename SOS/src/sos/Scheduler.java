@@ -0,0 +1,75 @@
+package sos;
+
+/**
+ * This interface is implemented by each of the policies the SOS can use to
+ * decide which Ready process runs next.  The SOS tells the scheduler whenever
+ * a process becomes Ready (it was created, it left the CPU or it was
+ * unblocked) and asks it for a process each time the CPU needs a new one.
+ * The Running and Blocked processes are never held by the scheduler.
+ *
+ * @see SOS
+ */
+public interface Scheduler
+{
+    /**
+     * add
+     *
+     * is called when a process enters the Ready state
+     *
+     * @param pi the process.  {@link SOS.ProcessControlBlock#getLastBurst}
+     *           tells how long it just ran for (if at all).
+     */
+    void add(SOS.ProcessControlBlock pi);
+
+    /**
+     * remove
+     *
+     * is called when a process must leave the Ready state without being
+     * chosen to run.  Nothing happens if the process isn't Ready.
+     *
+     * @param pi the process
+     */
+    void remove(SOS.ProcessControlBlock pi);
+
+    /**
+     * next
+     *
+     * chooses the next process to run and removes it from the Ready state
+     *
+     * @return the chosen process -OR- null if no process is Ready
+     */
+    SOS.ProcessControlBlock next();
+
+    /**
+     * getQuantum
+     *
+     * @param pi the process that is about to run
+     * @return the number of instructions it may run before it is preempted
+     *         by the timer (0 if it may run until it gives up the CPU)
+     */
+    int getQuantum(SOS.ProcessControlBlock pi);
+
+    /**
+     * setQuantum
+     *
+     * changes the (base) quantum given to processes
+     *
+     * @param instructions the new quantum (0 disables preemption)
+     */
+    void setQuantum(int instructions);
+
+    /**
+     * size
+     *
+     * @return the number of Ready processes
+     */
+    int size();
+
+    /**
+     * getName
+     *
+     * @return the name of the policy (used when reporting statistics)
+     */
+    String getName();
+
+};//interface Scheduler
@@ -54,6 +54,23 @@ public class Sim
         {
         	//do nothing
         }
+
+        /**
+         * checkPermission
+         *
+         * allows everything else (e.g., writing the RAM image, swap file or
+         * a file device) since only System.exit needs to be caught
+         */
+        public void checkPermission(java.security.Permission perm)
+        {
+            //do nothing
+        }
+
+        public void checkPermission(java.security.Permission perm,
+                                    Object context)
+        {
+            //do nothing
+        }
         
     }//ExitCatcher
 
@@ -80,16 +97,445 @@ public class Sim
         }
     }//DoNothingHandler
 
+    /**
+     * BenchmarkHandler
+     *
+     * stands in for the SOS when measuring raw CPU throughput.  System calls
+     * are answered with a success code without doing any real work and each
+     * time the program exits it is restarted from the beginning until it has
+     * been run the requested number of times.
+     */
+    static class BenchmarkHandler implements CPU.TrapHandler
+    {
+        private CPU m_CPU;
+        private int m_runsLeft;
+        private int m_allocSize;
+
+        public BenchmarkHandler(CPU cpu, int runs, int allocSize)
+        {
+            m_CPU = cpu;
+            m_runsLeft = runs;
+            m_allocSize = allocSize;
+            m_CPU.registerTrapHandler(this);
+        }
+
+        public void interruptIllegalMemoryAccess(int addr)
+        {
+            System.out.println("BENCHMARK: Illegal Memory Access at addr " + addr);
+        }
+
+        public void interruptDivideByZero()
+        {
+            System.out.println("BENCHMARK: Divide by Zero");
+        }
+
+        public void interruptIllegalInstruction(int[] instr)
+        {
+            System.out.println("BENCHMARK: Illegal Instruction");
+        }
+
+        public void systemCall()
+        {
+            switch(m_CPU.popStack())
+            {
+                case SOS.SYSCALL_EXIT:
+                    m_runsLeft--;
+                    if (m_runsLeft <= 0)
+                    {
+                        m_CPU.halt();
+                    }
+                    //start again (the PC is incremented after the trap)
+                    m_CPU.setPC(0);
+                    m_CPU.setSP(m_allocSize);
+                    break;
+                case SOS.SYSCALL_OUTPUT:
+                    m_CPU.popStack();
+                    break;
+                case SOS.SYSCALL_OPEN:
+                case SOS.SYSCALL_CLOSE:
+                    m_CPU.popStack();
+                    m_CPU.pushStack(0);
+                    break;
+                case SOS.SYSCALL_READ:
+                    m_CPU.popStack();
+                    m_CPU.popStack();
+                    m_CPU.pushStack(0);
+                    m_CPU.pushStack(0);
+                    break;
+                case SOS.SYSCALL_WRITE:
+                    m_CPU.popStack();
+                    m_CPU.popStack();
+                    m_CPU.popStack();
+                    m_CPU.pushStack(0);
+                    break;
+                case SOS.SYSCALL_GETPID:
+                    m_CPU.pushStack(42);
+                    break;
+                case SOS.SYSCALL_YIELD:
+                    break;
+                default:
+                    System.out.println("BENCHMARK: unsupported system call");
+                    m_CPU.halt();
+                    break;
+            }//switch
+        }//systemCall
+
+        public void interruptClock()
+        {
+            //the benchmark never sets the timer
+        }
+
+        public void interruptPageFault(int addr, boolean write)
+        {
+            //the benchmark never uses paging
+            System.out.println("BENCHMARK: page fault");
+            m_CPU.halt();
+        }
+
+        public void interruptIOReadComplete(AsyncDevice.Request req)
+        {
+            //the benchmark has no devices
+        }
+
+        public void interruptIOWriteComplete(AsyncDevice.Request req)
+        {
+            //the benchmark has no devices
+        }
+
+    }//BenchmarkHandler
+
+    /*======================================================================-
+     * Constants
+     *----------------------------------------------------------------------
+     */
+
+    //These constants select where the simulated RAM is stored
+    public static final int MEMORY_HEAP   = 0; /* an int[] on the Java heap */
+    public static final int MEMORY_DIRECT = 1; /* direct (off-heap) buffers */
+    public static final int MEMORY_MAPPED = 2; /* memory mapped image file */
+    public static final int MEMORY_CONCURRENT = 3; /* shared by many CPUs */
+
+    //These constants select the SOS's scheduling policy
+    public static final int SCHED_RANDOM      = 0; /* see RandomScheduler */
+    public static final int SCHED_ROUND_ROBIN = 1; /* see RoundRobinScheduler */
+    public static final int SCHED_PRIORITY    = 2; /* see PriorityScheduler */
+    public static final int SCHED_LOTTERY     = 3; /* see LotteryScheduler */
+    public static final int SCHED_MLFQ        = 4; /* see MLFQScheduler */
+    public static final int SCHED_CFS         = 5; /* see CFSScheduler */
+
+    //These constants select which page the SOS evicts when RAM is full
+    public static final int PAGE_FIFO        = 0; /* see FIFOReplacement */
+    public static final int PAGE_CLOCK       = 1; /* see ClockReplacement */
+    public static final int PAGE_LRU         = 2; /* see LRUReplacement */
+    public static final int PAGE_WORKING_SET = 3; /* see WorkingSetReplacement */
+
     /*======================================================================-
      * Member Variables
      *----------------------------------------------------------------------
      */
+
+    /**
+     * specifies which {@link MemoryBackend} createRAM uses (one of the
+     * MEMORY constants)
+     */
+    private static int m_memoryType = MEMORY_HEAP;
+
+    /**
+     * the file that holds the RAM image when m_memoryType is MEMORY_MAPPED
+     */
+    private static String m_imageFile = "sos.img";
+
+    /**
+     * specifies how the SOS places new processes in RAM (one of the
+     * SOS.ALLOC constants)
+     */
+    private static int m_allocPolicy = SOS.ALLOC_FIRST_FIT;
+
+    /**
+     * specifies which page the SOS evicts when m_allocPolicy is
+     * SOS.ALLOC_PAGED and RAM is full (one of the PAGE constants)
+     */
+    private static int m_pagePolicy = PAGE_CLOCK;
+
+    /**
+     * the file evicted pages are written to when m_allocPolicy is
+     * SOS.ALLOC_PAGED
+     */
+    private static String m_swapFile = "sos.swp";
+
+    /**
+     * the order the disk used by runDisk serves requests in (one of the
+     * DiskDevice scheduling constants)
+     */
+    private static int m_diskPolicy = DiskDevice.SCAN;
+
+    /**
+     * the host file that holds the contents of the FileDevice used by
+     * runFile (it is kept between runs)
+     */
+    private static String m_dataFile = "sos.dat";
+
+    /**
+     * specifies whether the console and SYSCALL_OUTPUT collect their output
+     * in an {@link OutputBuffer} instead of printing each value
+     */
+    private static boolean m_bufferedOutput = false;
+
+    /**
+     * the file the buffered output goes to -OR- null for the standard
+     * output (only used if m_bufferedOutput is set)
+     */
+    private static String m_outputFile = null;
+
+    /**
+     * the buffer used when m_bufferedOutput is set (shared by every
+     * simulation in a run)
+     */
+    private static OutputBuffer m_output = null;
+
+    /**
+     * specifies how the SOS decides which process runs next (one of the
+     * SCHED constants)
+     */
+    private static int m_schedPolicy = SCHED_RANDOM;
+
+    /**
+     * the number of instructions a process may run before it is preempted
+     * (0 disables preemption, -1 uses the scheduling policy's default)
+     */
+    private static int m_quantum = -1;
+
+    /**
+     * the priorities of the programs run by runPriorities (a copy of
+     * prio.asm is loaded for each one)
+     */
+    private static int m_priorities[] = { 0, 5, 10 };
+
+    /**
+     * specifies whether processes may ask to be scheduled as real-time
+     * processes (see {@link EDFScheduler})
+     */
+    private static boolean m_realTime = false;
+
+    /**
+     * specifies whether the simulated CPU translates hot basic blocks
+     * (see {@link CPU#setTiered}).  This pays off for programs that spend
+     * their time in loops but slows down ones that make a system call every
+     * few instructions (see {@link #benchmarkCPU}), so it is off by default.
+     */
+    private static boolean m_tiered = false;
+
+    /**
+     * the number of CPUs in a simulation (see {@link SOS#addCPU})
+     */
+    private static int m_numCores = 1;
+
+    /**
+     * the RAM used by the most recent simulation (its clock holds the
+     * simulated time reported at the end of the run)
+     */
+    private static RAM m_RAM = null;
     
     /*======================================================================-
      * Methods
      *----------------------------------------------------------------------
      */
     
+    /**
+     * createRAM
+     *
+     * creates the RAM for a simulation (stored as specified by
+     * m_memoryType) and remembers it so that its simulated time can be
+     * reported when the simulation ends.  With more than one CPU the words
+     * are always kept in a {@link ConcurrentMemory} because the other
+     * backends can't be shared between CPU threads.
+     *
+     * @param size number of integers ("words") in ram
+     * @param latency the number of simulated nanoseconds per read or write
+     * @return the new RAM
+     */
+    public static RAM createRAM(int size, int latency)
+    {
+        MemoryBackend mem = null;
+        int type = m_memoryType;
+        if ((m_numCores > 1) && (type != MEMORY_HEAP) && (type != MEMORY_CONCURRENT))
+        {
+            System.out.println("ERROR: This RAM storage can't be shared by "
+                               + m_numCores + " CPUs.  Using a ConcurrentMemory instead.");
+            type = MEMORY_CONCURRENT;
+        }
+        switch(type)
+        {
+            case MEMORY_DIRECT:
+                mem = new DirectMemory(size);
+                break;
+            case MEMORY_MAPPED:
+                try
+                {
+                    MappedMemory mm = new MappedMemory(m_imageFile, size);
+                    if (mm.isWarm())
+                    {
+                        System.out.println("Resuming from RAM image " + m_imageFile);
+                    }
+                    mem = mm;
+                }
+                catch(java.io.IOException e)
+                {
+                    System.out.println("ERROR: Could not open RAM image " + m_imageFile
+                                       + " (" + e + ").  Using the heap instead.");
+                    mem = new HeapMemory(size);
+                }
+                break;
+            case MEMORY_CONCURRENT:
+                mem = new ConcurrentMemory(size);
+                break;
+            default:
+                //A plain int[] isn't safe to share between CPU threads
+                if (m_numCores > 1)
+                {
+                    mem = new ConcurrentMemory(size);
+                }
+                else
+                {
+                    mem = new HeapMemory(size);
+                }
+                break;
+        }//switch
+
+        VirtualClock clock = (m_numCores > 1) ? new StripedClock() : new VirtualClock();
+        m_RAM = new RAM(mem, latency, clock);
+        return m_RAM;
+    }//createRAM
+
+    /**
+     * createCPU
+     *
+     * creates a CPU attached to the given RAM using the execution engine
+     * selected by m_tiered
+     *
+     * @param ram the RAM for the CPU
+     * @return the new CPU
+     */
+    public static CPU createCPU(RAM ram)
+    {
+        CPU cpu = new CPU(ram);
+        cpu.setTiered(m_tiered);
+        return cpu;
+    }//createCPU
+
+    /**
+     * createScheduler
+     *
+     * @return a new scheduler that implements the policy selected by
+     *         m_schedPolicy
+     */
+    public static Scheduler createScheduler()
+    {
+        Scheduler sched = null;
+        switch(m_schedPolicy)
+        {
+            case SCHED_ROUND_ROBIN:
+                sched = new RoundRobinScheduler();
+                break;
+            case SCHED_PRIORITY:
+                sched = new PriorityScheduler();
+                break;
+            case SCHED_LOTTERY:
+                sched = new LotteryScheduler();
+                break;
+            case SCHED_MLFQ:
+                sched = new MLFQScheduler();
+                break;
+            case SCHED_CFS:
+                sched = new CFSScheduler();
+                break;
+            default:
+                sched = new RandomScheduler();
+                break;
+        }//switch
+
+        if (m_quantum >= 0)
+        {
+            sched.setQuantum(m_quantum);
+        }
+        return sched;
+    }//createScheduler
+
+    /**
+     * createReplacementPolicy
+     *
+     * @param numFrames the number of page frames in RAM
+     * @return a new page replacement policy that implements the policy
+     *         selected by m_pagePolicy
+     */
+    public static ReplacementPolicy createReplacementPolicy(int numFrames)
+    {
+        switch(m_pagePolicy)
+        {
+            case PAGE_FIFO:
+                return new FIFOReplacement();
+            case PAGE_LRU:
+                return new LRUReplacement(numFrames);
+            case PAGE_WORKING_SET:
+                return new WorkingSetReplacement(numFrames);
+            default:
+                return new ClockReplacement(numFrames);
+        }//switch
+    }//createReplacementPolicy
+
+    /**
+     * createOS
+     *
+     * creates the SOS for a simulation configured as specified by the
+     * member variables above
+     *
+     * @param cpu the CPU the SOS manages
+     * @param ram the RAM attached to the CPU
+     * @return the new SOS
+     */
+    public static SOS createOS(CPU cpu, RAM ram)
+    {
+        SOS os = new SOS(cpu, ram);
+        os.setAllocPolicy(m_allocPolicy);
+        if (m_allocPolicy == SOS.ALLOC_PAGED)
+        {
+            os.setReplacementPolicy(createReplacementPolicy(ram.getSize() >> CPU.PAGE_SHIFT));
+            try
+            {
+                os.setSwapFile(new SwapFile(m_swapFile));
+            }
+            catch(java.io.IOException | SecurityException e)
+            {
+                System.out.println("ERROR: Could not open swap file " + m_swapFile
+                                   + " (" + e + ").  Pages will not be evicted.");
+            }
+        }
+        Scheduler sched = createScheduler();
+        if (m_realTime)
+        {
+            sched = new EDFScheduler(cpu, sched);
+        }
+        os.setScheduler(sched);
+        if (m_bufferedOutput)
+        {
+            if (m_output == null)
+            {
+                try
+                {
+                    m_output = new OutputBuffer(m_outputFile);
+                }
+                catch(java.io.IOException e)
+                {
+                    System.out.println("ERROR: Could not open " + m_outputFile
+                                       + " (" + e + ").  Output will not be buffered.");
+                    m_bufferedOutput = false;
+                }
+            }
+            os.setOutputBuffer(m_output);
+        }
+        return os;
+    }//createOS
+
     /**
      * runSimple
      *
@@ -100,10 +546,10 @@ public class Sim
     public static void runSimple()
     {
         //Create the simulated hardware and OS
-        RAM ram = new RAM(1000, 10);
+        RAM ram = createRAM(1000, 10);
         ConsoleDevice cd = new ConsoleDevice();
-        CPU cpu = new CPU(ram);
-        SOS os  = new SOS(cpu, ram);
+        CPU cpu = createCPU(ram);
+        SOS os  = createOS(cpu, ram);
 
         //Register the device drivers with the OS
         os.registerDevice(cd, 1);
@@ -123,6 +569,193 @@ public class Sim
     }//runSimple
 
 
+    /**
+     * runFork
+     *
+     * runs a program that forks until eight copies of it are running.  Each
+     * copy prints its process id.
+     *
+     */
+    public static void runFork()
+    {
+        //Create the simulated hardware and OS
+        RAM ram = createRAM(3000, 10);
+        CPU cpu = createCPU(ram);
+        SOS os  = createOS(cpu, ram);
+
+        //Load the program into RAM
+        Program prog = new Program();
+        if (prog.load("fork.asm", false) != 0)
+        {
+            //Error loading program so exit
+            return;
+        }
+        os.createProcess(prog, 300);
+
+        //Run the simulation
+        cpu.run();
+        
+    }//runFork
+
+    /**
+     * runDisk
+     *
+     * runs PROCS copies of disk.asm.  Each one writes to and reads back
+     * from scattered addresses on a disk that serves requests in the order
+     * given by m_diskPolicy, so run it once per policy to compare them.
+     *
+     */
+    public static void runDisk()
+    {
+        final int PROCS = 8;
+
+        //Create the simulated hardware and OS
+        RAM ram = createRAM(5000, 10);
+        DiskDevice dd = new DiskDevice(m_diskPolicy);
+        CPU cpu = createCPU(ram);
+        SOS os  = createOS(cpu, ram);
+
+        //Register the device drivers with the OS
+        os.registerDevice(dd, 2);
+
+        //Load the program into RAM
+        Program prog = new Program();
+        if (prog.load("disk.asm", false) != 0)
+        {
+            System.out.println("ERROR: Could not load disk.asm");
+            return;
+        }
+        for(int i = 0; i < PROCS; i++)
+        {
+            os.createProcess(prog, 400);
+        }
+
+        //Run the simulation
+        cpu.run();
+        
+    }//runDisk
+
+    /**
+     * runFile
+     *
+     * runs PROCS copies of file.asm against a FileDevice.  Each one writes
+     * a run of consecutive words (which end up in m_dataFile) and reads
+     * them back, so the device's statistics show how many word reads and
+     * writes each host file operation served.
+     *
+     */
+    public static void runFile()
+    {
+        final int PROCS = 8;
+
+        //Create the simulated hardware and OS
+        RAM ram = createRAM(5000, 10);
+        FileDevice fd = null;
+        try
+        {
+            fd = new FileDevice(m_dataFile);
+        }
+        catch(java.io.IOException e)
+        {
+            System.out.println("ERROR: Could not open " + m_dataFile + ": " + e);
+            return;
+        }
+        CPU cpu = createCPU(ram);
+        SOS os  = createOS(cpu, ram);
+
+        //Register the device drivers with the OS
+        os.registerDevice(fd, 2);
+
+        //Load the program into RAM
+        Program prog = new Program();
+        if (prog.load("file.asm", false) != 0)
+        {
+            System.out.println("ERROR: Could not load file.asm");
+            return;
+        }
+        for(int i = 0; i < PROCS; i++)
+        {
+            os.createProcess(prog, 400);
+        }
+
+        //Run the simulation
+        cpu.run();
+        
+    }//runFile
+
+    /**
+     * runRealTime
+     *
+     * runs two real-time processes with different periods (rtfast.asm and
+     * rtslow.asm) next to a CPU-bound best-effort process (crunch.asm).  The
+     * real-time processes are only admitted when m_realTime is set.  The
+     * number of deadlines they missed is printed at the end.
+     *
+     */
+    public static void runRealTime()
+    {
+        final String PROGS[] = { "crunch.asm", "rtslow.asm", "rtfast.asm" };
+
+        //Create the simulated hardware and OS
+        RAM ram = createRAM(3000, 10);
+        CPU cpu = createCPU(ram);
+        SOS os  = createOS(cpu, ram);
+
+        //Load the programs into RAM
+        for(int i = 0; i < PROGS.length; i++)
+        {
+            Program prog = new Program();
+            if (prog.load(PROGS[i], false) != 0)
+            {
+                System.out.println("ERROR: Could not load " + PROGS[i]);
+                return;
+            }
+            os.createProcess(prog, 200);
+        }
+
+        //Run the simulation
+        cpu.run();
+        
+    }//runRealTime
+
+    /**
+     * runPriorities
+     *
+     * runs two processes for each priority in m_priorities.  Each one counts
+     * for a while and prints its process id, so the order of the ids shows
+     * how the scheduler given by m_schedPolicy treats priorities.
+     *
+     */
+    public static void runPriorities()
+    {
+        final int COPIES = 2;
+
+        //Create the simulated hardware and OS
+        RAM ram = createRAM(5000, 10);
+        CPU cpu = createCPU(ram);
+        SOS os  = createOS(cpu, ram);
+
+        //Load one copy of the program for each priority
+        for(int p = 0; p < m_priorities.length; p++)
+        {
+            Program prog = new Program();
+            if (prog.load("prio.asm", false) != 0)
+            {
+                System.out.println("ERROR: Could not load prio.asm");
+                return;
+            }
+            prog.setPriority(m_priorities[p]);
+            for(int i = 0; i < COPIES; i++)
+            {
+                os.createProcess(prog, 100);
+            }
+        }
+
+        //Run the simulation
+        cpu.run();
+        
+    }//runPriorities
+
     /**
      * runMultiple1
      *
@@ -134,10 +767,10 @@ public class Sim
     public static void runMultiple1()
     {
         //Create the simulated hardware and OS
-        RAM ram = new RAM(5000, 10);
+        RAM ram = createRAM(5000, 10);
         ConsoleDevice cd = new ConsoleDevice();
-        CPU cpu = new CPU(ram);
-        SOS os  = new SOS(cpu, ram);
+        CPU cpu = createCPU(ram);
+        SOS os  = createOS(cpu, ram);
 
         //Register the device drivers with the OS
         os.registerDevice(cd, 1);
@@ -176,10 +809,10 @@ public class Sim
     public static void runMultiple2()
     {
         //Create the simulated hardware and OS
-        RAM ram = new RAM(5000, 10);
+        RAM ram = createRAM(5000, 10);
         ConsoleDevice cd = new ConsoleDevice();
-        CPU cpu = new CPU(ram);
-        SOS os  = new SOS(cpu, ram);
+        CPU cpu = createCPU(ram);
+        SOS os  = createOS(cpu, ram);
 
         //Register the device drivers with the OS
         os.registerDevice(cd, 1);
@@ -218,11 +851,11 @@ public class Sim
     public static void runMultiple3()
     {
         //Create the simulated hardware and OS
-        RAM ram = new RAM(5000, 10);
+        RAM ram = createRAM(5000, 10);
         KeyboardDevice kd = new KeyboardDevice();
         ConsoleDevice cd = new ConsoleDevice();
-        CPU cpu = new CPU(ram);
-        SOS os  = new SOS(cpu, ram);
+        CPU cpu = createCPU(ram);
+        SOS os  = createOS(cpu, ram);
 
         //Register the device drivers with the OS
         os.registerDevice(kd, 0);
@@ -252,6 +885,483 @@ public class Sim
     }//runMultiple3
 
 
+    /**
+     * benchmarkCPU
+     *
+     * compares the throughput of the plain interpreter with tiered execution
+     * by running a program over and over on a bare CPU (no SOS, no RAM
+     * latency).  print40.asm makes a system call every few instructions
+     * while crunch.asm spends nearly all of its time in a tight loop.  Each
+     * engine is run once to warm up before it is timed.
+     *
+     */
+    public static void benchmarkCPU()
+    {
+        final String PROGS[] = { "print40.asm", "crunch.asm" };
+        final int RUNS[] = { 20000, 100 };
+        final int ALLOC_SIZE = 500;
+
+        for(int p = 0; p < PROGS.length; p++)
+        {
+            Program prog = new Program();
+            if (prog.load(PROGS[p], false) != 0)
+            {
+                System.out.println("ERROR: Could not load " + PROGS[p]);
+                return;
+            }
+            int progArray[] = prog.export();
+
+            for(int pass = 0; pass < 4; pass++)
+            {
+                boolean tiered = (pass % 2) == 1;
+                boolean warmup = pass < 2;
+
+                //Create a bare machine with the program loaded at address 0
+                RAM ram = new RAM(ALLOC_SIZE + 1, 0);
+                CPU cpu = new CPU(ram);
+                cpu.setTiered(tiered);
+                new BenchmarkHandler(cpu, RUNS[p], ALLOC_SIZE);
+                for(int i = 0; i < progArray.length; i++)
+                {
+                    ram.write(i + 4, progArray[i]);
+                }
+                cpu.setBASE(0);
+                cpu.setLIM(ALLOC_SIZE);
+                cpu.setPC(4);
+                cpu.setSP(ALLOC_SIZE);
+
+                long startTime = System.nanoTime();
+                cpu.run();
+                long elapsed = System.nanoTime() - startTime;
+
+                if (!warmup)
+                {
+                    long instrs = cpu.getInstructionCount();
+                    System.out.println(PROGS[p]
+                                       + (tiered ? " tiered:      " : " interpreter: ")
+                                       + instrs + " instructions in "
+                                       + (elapsed / 1000000) + "ms ("
+                                       + (instrs * 1000 / Math.max(elapsed, 1))
+                                       + " MIPS)");
+                }
+            }//for
+        }//for
+        
+    }//benchmarkCPU
+
+    /**
+     * benchmarkAllocators
+     *
+     * compares the placement policies the SOS can use for process address
+     * spaces.  Each policy serves the same random sequence of allocations and
+     * frees (as if thousands of short-lived processes were being created via
+     * SYSCALL_EXEC) with roughly LIVE blocks in use at any time.
+     *
+     */
+    public static void benchmarkAllocators()
+    {
+        final int RAM_SIZE = 1 << 22;
+        final int OPS = 200000;
+        final int LIVE = 2000;
+        final String NAMES[] = { "First fit", "Best fit", "Next fit", "Buddy" };
+        final int POLICIES[] = { SOS.ALLOC_FIRST_FIT, SOS.ALLOC_BEST_FIT,
+                                 SOS.ALLOC_NEXT_FIT, SOS.ALLOC_BUDDY };
+
+        for(int p = 0; p < POLICIES.length; p++)
+        {
+            RAM ram = new RAM(RAM_SIZE, 0);
+            SOS os = new SOS(new CPU(ram), ram);
+            os.setAllocPolicy(POLICIES[p]);
+
+            Random rand = new Random(446);
+            int addrs[] = new int[LIVE];
+            int sizes[] = new int[LIVE];
+            Arrays.fill(addrs, -1);
+
+            long startTime = System.nanoTime();
+            for(int i = 0; i < OPS; i++)
+            {
+                //Replace a random slot: free whatever is there and allocate
+                //a new address space
+                int slot = rand.nextInt(LIVE);
+                if (addrs[slot] >= 0)
+                {
+                    os.freeBlock(addrs[slot], sizes[slot]);
+                }
+                sizes[slot] = 100 + rand.nextInt(1900);
+                addrs[slot] = os.allocBlock(sizes[slot]);
+            }
+            long elapsed = System.nanoTime() - startTime;
+
+            System.out.println(NAMES[p] + ": " + (elapsed / 1000000) + "ms for "
+                               + OPS + " allocations ("
+                               + (elapsed / OPS) + "ns each)");
+            os.printStatistics();
+        }//for
+        
+    }//benchmarkAllocators
+
+    /**
+     * createMulticoreOS
+     *
+     * creates m_numCores CPUs that share a RAM and a multicore SOS that
+     * runs on them
+     *
+     * @param ram  the RAM for the CPUs
+     * @param cpus filled in with the new CPUs (must hold m_numCores)
+     * @return the new OS
+     */
+    private static SOS createMulticoreOS(RAM ram, CPU cpus[])
+    {
+        cpus[0] = createCPU(ram);
+        SOS os = createOS(cpus[0], ram);
+        os.enableMulticore();
+        for(int i = 1; i < m_numCores; i++)
+        {
+            cpus[i] = createCPU(ram);
+            os.addCPU(cpus[i], createScheduler());
+        }
+        return os;
+    }//createMulticoreOS
+
+    /**
+     * runCores
+     *
+     * runs a multicore simulation with one thread per CPU until every
+     * process is done
+     *
+     * @param os   the OS
+     * @param cpus the CPUs it runs on
+     * @return the number of instructions executed by all the CPUs
+     */
+    private static long runCores(final SOS os, CPU cpus[])
+    {
+        Thread threads[] = new Thread[cpus.length];
+        for(int i = 0; i < cpus.length; i++)
+        {
+            final int core = i;
+            threads[i] = new Thread() {
+                public void run()
+                {
+                    try
+                    {
+                        os.runCore(core);
+                    }
+                    catch(SecurityException se)
+                    {
+                        //System.exit was called: stop the other CPUs too
+                        os.shutdown();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        long instrs = 0;
+        for(int i = 0; i < cpus.length; i++)
+        {
+            try
+            {
+                threads[i].join();
+            }
+            catch(InterruptedException e)
+            {
+                //just count what has been done so far
+            }
+            instrs += cpus[i].getInstructionCount();
+        }
+        return instrs;
+    }//runCores
+
+    /**
+     * runMulticore
+     *
+     * runs PROCS copies of crunch.asm on m_numCores CPUs.  Each CPU runs in
+     * its own thread and the processes are spread across them by work
+     * stealing.  A few copies of openclose.asm run alongside them and take
+     * turns with the keyboard (which can't be shared), so processes running
+     * on one core are blocked and unblocked by processes on another.
+     *
+     * @return the number of instructions executed by all the CPUs
+     */
+    public static long runMulticore()
+    {
+        final int PROCS = 16;
+        final int CONTENDERS = 4;
+
+        //Create the simulated hardware and OS
+        RAM ram = createRAM(5000, 10);
+        CPU cpus[] = new CPU[m_numCores];
+        SOS os = createMulticoreOS(ram, cpus);
+
+        //Register the device drivers with the OS
+        os.registerDevice(new KeyboardDevice(), 0);
+
+        //Load the programs into RAM
+        Program prog = new Program();
+        if (prog.load("crunch.asm", false) != 0)
+        {
+            System.out.println("ERROR: Could not load crunch.asm");
+            return 0;
+        }
+        Program prog2 = new Program();
+        if (prog2.load("openclose.asm", false) != 0)
+        {
+            System.out.println("ERROR: Could not load openclose.asm");
+            return 0;
+        }
+        for(int i = 0; i < PROCS; i++)
+        {
+            os.createProcess(prog, 100);
+            if (i < CONTENDERS)
+            {
+                os.createProcess(prog2, 300);
+            }
+        }
+
+        return runCores(os, cpus);
+    }//runMulticore
+
+    /**
+     * runMultipleMulticore
+     *
+     * is the multicore version of {@link #runMultiple2}.  SPAWNERS copies of
+     * spawn5.asm each start five processes that print to the console and
+     * yield the CPU after every number, so the cores spend most of their
+     * time in the OS creating, switching and removing processes.
+     *
+     * @return the number of instructions executed by all the CPUs
+     */
+    public static long runMultipleMulticore()
+    {
+        final int SPAWNERS = 4;
+
+        //Create the simulated hardware and OS
+        RAM ram = createRAM(10000, 10);
+        CPU cpus[] = new CPU[m_numCores];
+        SOS os = createMulticoreOS(ram, cpus);
+
+        //Register the device drivers with the OS
+        os.registerDevice(new ConsoleDevice(), 1);
+
+        //Load the programs into RAM
+        Program prog = new Program();
+        if (prog.load("spawn5.asm", false) != 0)
+        {
+            System.out.println("ERROR: Could not load spawn5.asm");
+            return 0;
+        }
+        for(int i = 0; i < SPAWNERS; i++)
+        {
+            os.createProcess(prog, 200);
+        }
+
+        //Register print40yield.asm as a program that can be run via an Exec
+        //system call
+        Program prog2 = new Program();
+        if (prog2.load("print40yield.asm", false) != 0)
+        {
+            System.out.println("ERROR: Could not load print40yield.asm");
+            return 0;
+        }
+        os.addProgram(prog2);
+
+        return runCores(os, cpus);
+    }//runMultipleMulticore
+
+    /**
+     * benchmarkMulticore
+     *
+     * compares the throughput of the simulation with 1, 2 and 4 CPUs, first
+     * for {@link #runMulticore} (mostly CPU bound) and then for {@link
+     * #runMultipleMulticore} (mostly system calls).  Each configuration is
+     * run once to warm up before it is timed.
+     *
+     */
+    public static void benchmarkMulticore()
+    {
+        final int CORES[] = { 1, 2, 4 };
+        final String NAMES[] = { "runMulticore", "runMultipleMulticore" };
+
+        int oldCores = m_numCores;
+        for(int w = 0; w < NAMES.length; w++)
+        {
+            for(int pass = 0; pass < 2 * CORES.length; pass++)
+            {
+                m_numCores = CORES[pass % CORES.length];
+                boolean warmup = pass < CORES.length;
+
+                long startTime = System.nanoTime();
+                long instrs = (w == 0) ? runMulticore() : runMultipleMulticore();
+                long elapsed = System.nanoTime() - startTime;
+
+                if (!warmup)
+                {
+                    System.out.println(NAMES[w] + " on " + m_numCores
+                                       + " CPU(s): " + instrs
+                                       + " instructions in "
+                                       + (elapsed / 1000000) + "ms ("
+                                       + String.format("%.2f",
+                                           instrs * 1000.0 / Math.max(elapsed, 1))
+                                       + " MIPS)");
+                }
+            }//for
+        }//for
+        m_numCores = oldCores;
+        
+    }//benchmarkMulticore
+
+    /**
+     * benchmarkMemory
+     *
+     * measures how well {@link ConcurrentMemory} holds up when several
+     * threads use it at once.  Like CPUs running different processes, each
+     * thread works in its own part of RAM: it fetches instructions, reads
+     * and writes single words and now and then loads a run of words.  The
+     * same work is done with a single lock (so every multi-word operation
+     * waits for every other one) and with striped locks.
+     *
+     */
+    public static void benchmarkMemory()
+    {
+        final int RAM_SIZE = 1 << 20;
+        final int OPS = 2000000;
+        final int THREADS[] = { 1, 2, 4 };
+        final int LOCKS[] = { 1, ConcurrentMemory.DEFAULT_LOCKS };
+
+        for(int pass = 0; pass < 2; pass++)
+        {
+            boolean warmup = pass == 0;
+            for(int t = 0; t < THREADS.length; t++)
+            {
+                for(int l = 0; l < LOCKS.length; l++)
+                {
+                    final ConcurrentMemory mem =
+                        new ConcurrentMemory(RAM_SIZE, LOCKS[l]);
+                    final int region = RAM_SIZE / THREADS[t];
+
+                    Thread threads[] = new Thread[THREADS[t]];
+                    for(int i = 0; i < threads.length; i++)
+                    {
+                        final int base = i * region;
+                        threads[i] = new Thread() {
+                            public void run()
+                            {
+                                Random rand = new Random(base);
+                                int instr[] = new int[CPU.INSTRSIZE];
+                                int run[] = new int[32];
+                                for(int op = 0; op < OPS; op++)
+                                {
+                                    int addr = base + rand.nextInt(region - run.length);
+                                    switch(op & 7)
+                                    {
+                                        case 0:
+                                            mem.put(addr, run, 0, run.length);
+                                            break;
+                                        case 1:
+                                        case 2:
+                                            mem.put(addr, op);
+                                            break;
+                                        case 3:
+                                        case 4:
+                                            mem.get(addr);
+                                            break;
+                                        default:
+                                            mem.get(addr, instr, 0, instr.length);
+                                            break;
+                                    }//switch
+                                }
+                            }
+                        };
+                    }
+
+                    long startTime = System.nanoTime();
+                    for(int i = 0; i < threads.length; i++)
+                    {
+                        threads[i].start();
+                    }
+                    for(int i = 0; i < threads.length; i++)
+                    {
+                        try
+                        {
+                            threads[i].join();
+                        }
+                        catch(InterruptedException e)
+                        {
+                            //just time what has been done so far
+                        }
+                    }
+                    long elapsed = System.nanoTime() - startTime;
+
+                    if (!warmup)
+                    {
+                        long ops = (long)OPS * threads.length;
+                        System.out.println(THREADS[t] + " thread(s), "
+                                           + LOCKS[l] + " lock(s): "
+                                           + (elapsed / 1000000) + "ms ("
+                                           + (ops * 1000 / Math.max(elapsed, 1))
+                                           + " million operations per second)");
+                    }
+                }//for
+            }//for
+        }//for
+        
+    }//benchmarkMemory
+
+    /**
+     * benchmarkPaging
+     *
+     * compares the page replacement policies by running PROCS copies of
+     * sweep.asm in a RAM that holds less than half of their pages.  Each
+     * process repeatedly writes to a few hot pages and then reads through
+     * many cold ones, so a policy that keeps the hot pages in RAM causes
+     * fewer page faults.
+     *
+     */
+    public static void benchmarkPaging()
+    {
+        final int PROCS = 6;
+        final int RAM_SIZE = 4096;
+        final int ALLOC_SIZE = 2100;
+        final int POLICIES[] = { PAGE_FIFO, PAGE_CLOCK, PAGE_LRU, PAGE_WORKING_SET };
+
+        Program prog = new Program();
+        if (prog.load("sweep.asm", false) != 0)
+        {
+            System.out.println("ERROR: Could not load sweep.asm");
+            return;
+        }
+
+        int oldAlloc = m_allocPolicy;
+        int oldPolicy = m_pagePolicy;
+        m_allocPolicy = SOS.ALLOC_PAGED;
+        for(int p = 0; p < POLICIES.length; p++)
+        {
+            m_pagePolicy = POLICIES[p];
+            RAM ram = createRAM(RAM_SIZE, 10);
+            CPU cpu = createCPU(ram);
+            SOS os = createOS(cpu, ram);
+
+            //A multicore SOS with a single core returns from runCore when
+            //the last process exits instead of ending the simulation
+            os.enableMulticore();
+            for(int i = 0; i < PROCS; i++)
+            {
+                os.createProcess(prog, ALLOC_SIZE);
+            }
+
+            long startTime = System.nanoTime();
+            os.runCore(0);
+            long elapsed = System.nanoTime() - startTime;
+
+            System.out.println(os.getPageFaults() + " page faults in "
+                               + (elapsed / 1000000) + "ms (simulated RAM time "
+                               + ram.getClock() + ")");
+        }//for
+        m_allocPolicy = oldAlloc;
+        m_pagePolicy = oldPolicy;
+        
+    }//benchmarkPaging
+
     /**
      * main
      *
@@ -292,6 +1402,32 @@ public class Sim
         
 
 
+        //Save the RAM image if there is one
+        if ((m_RAM != null) && (m_RAM.getBackend() instanceof java.io.Flushable))
+        {
+            try
+            {
+                ((java.io.Flushable)m_RAM.getBackend()).flush();
+            }
+            catch(java.io.IOException e)
+            {
+                System.out.println("ERROR: Could not save the RAM image: " + e);
+            }
+        }
+
+        //Print anything still in the output buffer
+        if (m_output != null)
+        {
+            try
+            {
+                m_output.close();
+            }
+            catch(java.io.IOException e)
+            {
+                System.out.println("ERROR: Could not write the output: " + e);
+            }
+        }
+
         //If System.exit was not called by any thread then bypass that
         //protection now
         if (! ec.isExitCaught())
@@ -304,6 +1440,10 @@ public class Sim
         System.out.println("");
         System.out.println("END OF SIMULATION");
         System.out.println("Total Simulation Time: " + (endTime - startTime) + "ms");
+        if (m_RAM != null)
+        {
+            System.out.println("Simulated RAM Latency: " + m_RAM.getClock());
+        }
 
         System.exit(0);
         
@@ -0,0 +1,72 @@
+package sos;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * This class is a {@link VirtualClock} that may be advanced by more than one
+ * thread at a time (i.e., by the CPUs of a multicore simulation).  Rather
+ * than making every RAM access fight over a single counter, each thread
+ * adds to one of several stripes and the stripes are summed when the time
+ * is read.  The stripes are spread out so that no two share a cache line.
+ *
+ * @see VirtualClock
+ */
+public class StripedClock extends VirtualClock
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    /**
+     * the number of stripes (a power of two)
+     */
+    public static final int NUM_STRIPES = 16;
+
+    /**
+     * the distance between two stripes in the array (in longs).  8 longs
+     * fill a 64 byte cache line.
+     */
+    private static final int PAD = 8;
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the time added by each stripe (every PAD'th entry is used)
+     */
+    private AtomicLongArray m_stripes = new AtomicLongArray(NUM_STRIPES * PAD);
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * getTime
+     *
+     * @return the number of simulated nanoseconds that have passed
+     */
+    public long getTime()
+    {
+        long time = 0;
+        for(int i = 0; i < NUM_STRIPES; i++)
+        {
+            time += m_stripes.get(i * PAD);
+        }
+        return time;
+    }//getTime
+
+    /**
+     * advance
+     *
+     * moves the clock forward using the calling thread's stripe
+     *
+     * @param ns the number of simulated nanoseconds that have passed
+     */
+    public void advance(long ns)
+    {
+        int stripe = (int)Thread.currentThread().getId() & (NUM_STRIPES - 1);
+        m_stripes.addAndGet(stripe * PAD, ns);
+    }//advance
+
+};//class StripedClock
@@ -0,0 +1,213 @@
+package sos;
+
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * This class stores pages that have been evicted from RAM when the SOS uses
+ * demand paging.  The file is divided into slots that each hold one page.
+ * Slots are handed out by {@link #alloc} and reused once they are freed so
+ * the file only grows when every slot is in use.  A slot may be shared by
+ * several page tables (e.g., after a fork); it is only reused once each of
+ * them has freed it.
+ *
+ * The file is scratch space: it is emptied when it is opened and deleted
+ * when the simulation ends.
+ *
+ * @see SOS
+ * @see MappedMemory
+ */
+public class SwapFile implements Closeable
+{
+    //======================================================================
+    //Constants
+    //----------------------------------------------------------------------
+
+    /**
+     * the number of bytes in a slot
+     */
+    public static final int SLOT_BYTES = CPU.PAGE_SIZE * 4;
+
+    //======================================================================
+    //Member variables
+    //----------------------------------------------------------------------
+
+    /**
+     * the swap file
+     **/
+    private RandomAccessFile m_file = null;
+
+    /**
+     * the swap file's channel (used for all reads and writes)
+     **/
+    private FileChannel m_channel = null;
+
+    /**
+     * the numbers of the free slots (used as a stack)
+     */
+    private int m_free[] = new int[16];
+
+    /**
+     * the number of entries of m_free in use
+     */
+    private int m_numFree = 0;
+
+    /**
+     * the number of slots the file has ever held
+     */
+    private int m_numSlots = 0;
+
+    /**
+     * the number of page tables using each slot
+     */
+    private int m_refs[] = new int[16];
+
+    /**
+     * used to move a page between an int[] and the file
+     */
+    private ByteBuffer m_buffer = ByteBuffer.allocateDirect(SLOT_BYTES);
+
+    //======================================================================
+    //Methods
+    //----------------------------------------------------------------------
+
+    /**
+     * SwapFile ctor
+     *
+     * creates (or empties) the swap file
+     *
+     * @param fileName the name of the swap file
+     * @throws IOException if the file can not be opened
+     */
+    public SwapFile(String fileName) throws IOException
+    {
+        File f = new File(fileName);
+        m_file = new RandomAccessFile(f, "rw");
+        m_file.setLength(0);
+        m_channel = m_file.getChannel();
+        f.deleteOnExit();
+    }//ctor
+
+    /**
+     * alloc
+     *
+     * @return the number of a slot that is not in use (which now is)
+     */
+    public int alloc()
+    {
+        int slot;
+        if (m_numFree > 0)
+        {
+            slot = m_free[--m_numFree];
+        }
+        else
+        {
+            slot = m_numSlots++;
+            if (slot == m_refs.length)
+            {
+                m_refs = Arrays.copyOf(m_refs, m_refs.length * 2);
+                m_free = Arrays.copyOf(m_free, m_refs.length);
+            }
+        }
+        m_refs[slot] = 1;
+        return slot;
+    }//alloc
+
+    /**
+     * share
+     *
+     * records that one more page table uses a slot
+     *
+     * @param slot the number of a slot in use
+     */
+    public void share(int slot)
+    {
+        m_refs[slot]++;
+    }
+
+    /**
+     * free
+     *
+     * is called when a page table stops using a slot.  Once none do, the slot
+     * can be reused.  Its contents are left in the file.
+     *
+     * @param slot the number of the slot
+     */
+    public void free(int slot)
+    {
+        if (--m_refs[slot] == 0)
+        {
+            m_free[m_numFree++] = slot;
+        }
+    }//free
+
+    /**
+     * getSlotsInUse
+     *
+     * @return the number of slots that hold a page
+     */
+    public int getSlotsInUse()
+    {
+        return m_numSlots - m_numFree;
+    }
+
+    /**
+     * write
+     *
+     * stores a page in a slot
+     *
+     * @param slot the number of the slot
+     * @param page the contents of the page ({@link CPU#PAGE_SIZE} words)
+     * @throws IOException if the file can not be written
+     */
+    public void write(int slot, int[] page) throws IOException
+    {
+        m_buffer.clear();
+        m_buffer.asIntBuffer().put(page, 0, CPU.PAGE_SIZE);
+        long pos = (long)slot * SLOT_BYTES;
+        while (m_buffer.hasRemaining())
+        {
+            pos += m_channel.write(m_buffer, pos);
+        }
+    }//write
+
+    /**
+     * read
+     *
+     * loads the page stored in a slot
+     *
+     * @param slot the number of the slot
+     * @param page where to put the contents of the page ({@link
+     *             CPU#PAGE_SIZE} words)
+     * @throws IOException if the file can not be read
+     */
+    public void read(int slot, int[] page) throws IOException
+    {
+        m_buffer.clear();
+        long pos = (long)slot * SLOT_BYTES;
+        while (m_buffer.hasRemaining())
+        {
+            int n = m_channel.read(m_buffer, pos);
+            if (n < 0)
+            {
+                throw new EOFException("Swap slot " + slot + " was never written");
+            }
+            pos += n;
+        }
+        m_buffer.flip();
+        m_buffer.asIntBuffer().get(page, 0, CPU.PAGE_SIZE);
+    }//read
+
+    /**
+     * close
+     *
+     * closes the swap file
+     */
+    public void close() throws IOException
+    {
+        m_file.close();
+    }
+
+};//class SwapFile
@@ -0,0 +1,61 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This class keeps track of simulated time.  Instead of making the host
+ * thread wait whenever a piece of simulated hardware would take time to
+ * respond, the hardware advances this clock by the amount of time it would
+ * have taken.  The total is then reported at the end of the simulation.
+ *
+ * @see RAM
+ * @see Sim
+ */
+public class VirtualClock
+{
+    /**
+     * the current simulated time in nanoseconds
+     **/
+    private long m_time = 0;
+
+    /**
+     * the constructor does nothing special
+     */
+    public VirtualClock()
+    {
+    }//ctor
+
+    /**
+     * getTime
+     *
+     * @return the number of simulated nanoseconds that have passed
+     */
+    public long getTime()
+    {
+        return m_time;
+    }
+
+    /**
+     * advance
+     *
+     * moves the clock forward
+     *
+     * @param ns the number of simulated nanoseconds that have passed
+     */
+    public void advance(long ns)
+    {
+        m_time += ns;
+    }
+
+    /**
+     * toString
+     *
+     * @return the simulated time in a human readable format
+     */
+    public String toString()
+    {
+        long time = getTime();
+        return (time / 1000000) + "." + String.format("%03d", (time / 1000) % 1000) + "ms";
+    }
+
+};//class VirtualClock
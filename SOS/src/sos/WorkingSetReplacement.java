@@ -0,0 +1,150 @@
+package sos;
+
+import java.util.*;
+
+/**
+ * This policy (WSClock) tries to keep each process' working set in RAM: the
+ * pages it has used in the last WINDOW instructions.  Like the clock policy
+ * it sweeps a hand around the frames.  A page that has been referenced since
+ * the last sweep has its last-use time updated and is passed over.  The
+ * first page found that has not been used within the window is evicted.  If
+ * every page is in some working set, the one used longest ago is evicted.
+ *
+ * @see ReplacementPolicy
+ */
+public class WorkingSetReplacement implements ReplacementPolicy
+{
+    /**
+     * the size of the working set window used unless {@link #setWindow} is
+     * called (in instructions)
+     */
+    public static final int DEFAULT_WINDOW = 2000;
+
+    /**
+     * which frames are in use
+     */
+    private boolean m_inUse[] = null;
+
+    /**
+     * when (in instructions) the page in each frame was last known to be
+     * used
+     */
+    private long m_lastUse[] = null;
+
+    /**
+     * the number of frames in use
+     */
+    private int m_count = 0;
+
+    /**
+     * the next frame the hand will look at
+     */
+    private int m_hand = 0;
+
+    /**
+     * the size of the working set window (in instructions)
+     */
+    private int m_window = DEFAULT_WINDOW;
+
+    /**
+     * WorkingSetReplacement ctor
+     *
+     * @param numFrames the number of frames in RAM
+     */
+    public WorkingSetReplacement(int numFrames)
+    {
+        m_inUse = new boolean[numFrames];
+        m_lastUse = new long[numFrames];
+    }
+
+    /**
+     * setWindow
+     *
+     * @param instructions the size of the working set window
+     */
+    public void setWindow(int instructions)
+    {
+        m_window = instructions;
+    }
+
+    /**
+     * add
+     *
+     * @see ReplacementPolicy#add
+     */
+    public void add(int frame, long now)
+    {
+        if (!m_inUse[frame])
+        {
+            m_inUse[frame] = true;
+            m_count++;
+        }
+        m_lastUse[frame] = now;
+    }//add
+
+    /**
+     * remove
+     *
+     * @see ReplacementPolicy#remove
+     */
+    public void remove(int frame)
+    {
+        if (m_inUse[frame])
+        {
+            m_inUse[frame] = false;
+            m_count--;
+        }
+    }//remove
+
+    /**
+     * victim
+     *
+     * @see ReplacementPolicy#victim
+     */
+    public int victim(FrameTable frames, long now)
+    {
+        if (m_count == 0)
+        {
+            return -1;
+        }
+
+        int oldest = -1;
+        for(int i = 0; i < m_inUse.length; i++)
+        {
+            int frame = m_hand;
+            m_hand = (m_hand + 1) % m_inUse.length;
+            if (!m_inUse[frame])
+            {
+                continue;
+            }
+
+            if (frames.testAndClearReferenced(frame))
+            {
+                m_lastUse[frame] = now;
+            }
+            else if (now - m_lastUse[frame] > m_window)
+            {
+                remove(frame);
+                return frame;
+            }
+            if ((oldest < 0) || (m_lastUse[frame] < m_lastUse[oldest]))
+            {
+                oldest = frame;
+            }
+        }//for
+
+        remove(oldest);
+        return oldest;
+    }//victim
+
+    /**
+     * getName
+     *
+     * @see ReplacementPolicy#getName
+     */
+    public String getName()
+    {
+        return "Working set";
+    }
+
+};//class WorkingSetReplacement
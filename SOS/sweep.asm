@@ -0,0 +1,43 @@
+####################################################
+#This program touches a lot of memory.  Each pass
+#writes to a small "hot" region (logical addresses
+#256 to 511) and then reads through a large "cold"
+#one (512 to 1983).  It is used to compare page
+#replacement policies when the processes need more
+#memory than RAM holds, so it must be given an
+#address space of at least 2048 words.
+###################################################
+
+#Initialize the variables
+SET r4 0       #pass counter
+SET r0 0       #scratch
+
+#begin pass
+:pass
+SET r1 256     #address
+SET r2 16      #stride
+SET r3 512     #end of the hot region
+
+#write the hot region
+:hot
+SAVE r4 r1
+ADD r1 r2 r1
+BNE r1 r3 hot
+
+#read the cold region
+SET r3 1984    #end of the cold region
+:cold
+LOAD r0 r1
+ADD r1 r2 r1
+BNE r1 r3 cold
+
+#end of pass
+SET r2 1
+ADD r4 r2 r4
+SET r3 20      #number of passes
+BNE r4 r3 pass
+
+#exit syscall
+SET  r0 0      #EXIT system call id
+PUSH r0        #push sys call id on stack
+TRAP           #exit the program